@@ -20,7 +20,6 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.pm.LauncherActivityInfo;
 import android.content.pm.LauncherApps;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.UserHandle;
@@ -35,6 +34,7 @@ import com.farmerbb.taskbar.R;
 import com.farmerbb.taskbar.adapter.DesktopIconAppListAdapter;
 import com.farmerbb.taskbar.util.AppEntry;
 import com.farmerbb.taskbar.util.IconCache;
+import com.farmerbb.taskbar.util.TaskScheduler;
 import com.farmerbb.taskbar.util.U;
 
 import java.text.Collator;
@@ -46,7 +46,7 @@ import static com.farmerbb.taskbar.util.Constants.*;
 
 public abstract class AbstractSelectAppActivity extends AppCompatActivity {
 
-    private DesktopIconAppListGenerator appListGenerator;
+    private TaskScheduler.WorkToken appListGenerator;
     private ProgressBar progressBar;
     private ListView appList;
 
@@ -81,14 +81,14 @@ public abstract class AbstractSelectAppActivity extends AppCompatActivity {
         progressBar = findViewById(R.id.progress_bar);
         appList = findViewById(R.id.list);
 
-        appListGenerator = new DesktopIconAppListGenerator();
-        appListGenerator.execute();
+        DesktopIconAppListGenerator generator = new DesktopIconAppListGenerator();
+        appListGenerator = TaskScheduler.getInstance().io().submit(generator, generator);
     }
 
     @Override
     public void finish() {
-        if(appListGenerator != null && appListGenerator.getStatus() == AsyncTask.Status.RUNNING) {
-            appListGenerator.cancel(true);
+        if(appListGenerator != null) {
+            appListGenerator.cancel();
         }
 
         if(!isCollapsed) {
@@ -99,9 +99,9 @@ public abstract class AbstractSelectAppActivity extends AppCompatActivity {
 
     public abstract void selectApp(AppEntry entry);
 
-    private final class DesktopIconAppListGenerator extends AsyncTask<Void, Void, DesktopIconAppListAdapter> {
+    private final class DesktopIconAppListGenerator implements TaskScheduler.Task<DesktopIconAppListAdapter>, TaskScheduler.Callback<DesktopIconAppListAdapter> {
         @Override
-        protected DesktopIconAppListAdapter doInBackground(Void... params) {
+        public DesktopIconAppListAdapter run(TaskScheduler.WorkToken token) {
             UserManager userManager = (UserManager) getSystemService(Context.USER_SERVICE);
             LauncherApps launcherApps = (LauncherApps) getSystemService(Context.LAUNCHER_APPS_SERVICE);
 
@@ -149,7 +149,7 @@ public abstract class AbstractSelectAppActivity extends AppCompatActivity {
         }
 
         @Override
-        protected void onPostExecute(DesktopIconAppListAdapter adapter) {
+        public void onResult(DesktopIconAppListAdapter adapter) {
             progressBar.setVisibility(View.GONE);
             appList.setAdapter(adapter);
             setFinishOnTouchOutside(true);
@@ -17,11 +17,16 @@ package com.farmerbb.taskbar.activity;
 
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.JsonReader;
 import android.widget.TextView;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.farmerbb.taskbar.R;
 import com.farmerbb.taskbar.backup.BackupUtils;
 import com.farmerbb.taskbar.backup.JSONBackupAgent;
+import com.farmerbb.taskbar.backup.JsonReaderBackupAgent;
+import com.farmerbb.taskbar.util.TaskScheduler;
 import com.farmerbb.taskbar.util.U;
 
 import org.json.JSONObject;
@@ -32,9 +37,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 public class BackupRestoreActivity extends AbstractProgressActivity {
@@ -59,13 +68,13 @@ public class BackupRestoreActivity extends AbstractProgressActivity {
 
         if(savedInstanceState != null) return;
 
-        new Thread(() -> {
+        TaskScheduler.getInstance().io().execute(() -> {
             if(isExport) exportData(uri);
             if(isImport) importData(uri);
 
             finish();
             overridePendingTransition(enter, exit);
-        }).start();
+        });
     }
 
     @SuppressWarnings("ResultOfMethodCallIgnored")
@@ -91,15 +100,10 @@ public class BackupRestoreActivity extends AbstractProgressActivity {
                 if(customImage.exists()) {
                     output.putNextEntry(new ZipEntry("tb_images/" + filename));
 
-                    BufferedInputStream input = new BufferedInputStream(new FileInputStream(customImage));
-                    byte[] data = new byte[input.available()];
-
-                    if(data.length > 0) {
-                        input.read(data);
-                        input.close();
-                    }
+                    InputStream input = new FileInputStream(customImage);
+                    U.copyStream(input, output);
+                    input.close();
 
-                    output.write(data);
                     output.closeEntry();
                 }
             }
@@ -112,66 +116,64 @@ public class BackupRestoreActivity extends AbstractProgressActivity {
         }
     }
 
+    @VisibleForTesting
     @SuppressWarnings("ResultOfMethodCallIgnored")
-    private void importData(Uri uri) {
-        File importedFile = new File(getFilesDir(), "temp.zip");
+    void importData(Uri uri) {
         File statusFile = new File(getFilesDir(), "restore_in_progress");
+        File imagesDir = new File(getFilesDir(), "tb_images");
+        imagesDir.mkdirs();
 
+        List<String> imageFilenames = Arrays.asList(U.getImageFilenames());
         boolean pointOfNoReturn = false;
 
         try {
-            InputStream is = new BufferedInputStream(getContentResolver().openInputStream(uri));
-            byte[] zipData = new byte[is.available()];
-
-            if(zipData.length > 0) {
-                OutputStream os = new BufferedOutputStream(new FileOutputStream(importedFile));
-                is.read(zipData);
-                os.write(zipData);
-                is.close();
-                os.close();
-            }
+            InputStream is = getContentResolver().openInputStream(uri);
+            if(is == null) throw new Exception();
+
+            // Stream the archive in a single pass: backup.json is parsed as it is read,
+            // and images are copied to staging files so that nothing is held on the heap
+            JsonReaderBackupAgent agent = null;
+            ZipInputStream zipInput = new ZipInputStream(new BufferedInputStream(is));
+
+            try {
+                ZipEntry entry;
+                while((entry = zipInput.getNextEntry()) != null) {
+                    String name = entry.getName();
+
+                    if(name.equals("backup.json")) {
+                        JsonReader reader = new JsonReader(new InputStreamReader(zipInput, StandardCharsets.UTF_8));
+                        agent = new JsonReaderBackupAgent(reader);
+                    } else if(name.startsWith("tb_images/")
+                            && imageFilenames.contains(name.substring("tb_images/".length()))) {
+                        File stagedImage = getStagedImage(imagesDir, name.substring("tb_images/".length()));
+                        OutputStream output = new BufferedOutputStream(new FileOutputStream(stagedImage));
+                        U.copyStream(zipInput, output);
+                        output.close();
+                    }
 
-            ZipFile zipFile = new ZipFile(importedFile);
-            ZipEntry backupJsonEntry = zipFile.getEntry("backup.json");
+                    zipInput.closeEntry();
+                }
+            } finally {
+                zipInput.close();
+            }
 
-            if(backupJsonEntry == null) {
+            if(agent == null) {
                 // Backup file is invalid; fail immediately
                 throw new Exception();
             }
 
-            byte[] data = new byte[(int) backupJsonEntry.getSize()];
-            InputStream input = new BufferedInputStream(zipFile.getInputStream(backupJsonEntry));
-            input.read(data);
-            input.close();
-
-            JSONObject json = new JSONObject(new String(data));
-
             // We are at the point of no return.
             pointOfNoReturn = true;
             statusFile.createNewFile();
 
-            BackupUtils.restore(this, new JSONBackupAgent(json));
+            BackupUtils.restore(this, agent);
 
-            File imagesDir = new File(getFilesDir(), "tb_images");
-            imagesDir.mkdirs();
-
-            for(String filename : U.getImageFilenames()) {
+            for(String filename : imageFilenames) {
                 File customImage = new File(imagesDir, filename);
                 if(customImage.exists()) customImage.delete();
 
-                ZipEntry customImageEntry = zipFile.getEntry("tb_images/" + filename);
-                if(customImageEntry != null) {
-                    data = new byte[(int) customImageEntry.getSize()];
-                    input = new BufferedInputStream(zipFile.getInputStream(customImageEntry));
-                    input.read(data);
-                    input.close();
-
-                    BufferedOutputStream output = new BufferedOutputStream(new FileOutputStream(customImage));
-                    if(data.length > 0) {
-                        output.write(data);
-                        output.close();
-                    }
-                }
+                File stagedImage = getStagedImage(imagesDir, filename);
+                if(stagedImage.exists()) stagedImage.renameTo(customImage);
             }
 
             statusFile.renameTo(new File(getFilesDir(), "restore_successful"));
@@ -179,10 +181,17 @@ public class BackupRestoreActivity extends AbstractProgressActivity {
             if(!pointOfNoReturn)
                 setResult(R.string.tb_backup_file_invalid);
         } finally {
-            importedFile.delete();
+            for(String filename : imageFilenames) {
+                File stagedImage = getStagedImage(imagesDir, filename);
+                if(stagedImage.exists()) stagedImage.delete();
+            }
 
             if(pointOfNoReturn)
                 U.restartApp(this, false);
         }
     }
+
+    private File getStagedImage(File imagesDir, String filename) {
+        return new File(imagesDir, filename + "_restore");
+    }
 }
@@ -29,6 +29,7 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.LauncherApps;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.graphics.Color;
 import android.os.Build;
 import android.os.Bundle;
@@ -56,6 +57,7 @@ import android.widget.TextView;
 
 import com.farmerbb.taskbar.R;
 import com.farmerbb.taskbar.helper.DesktopModeInputController;
+import com.farmerbb.taskbar.helper.TraceHelper;
 import com.farmerbb.taskbar.helper.DisplayHelper;
 import com.farmerbb.taskbar.helper.GlobalHelper;
 import com.farmerbb.taskbar.util.Callbacks;
@@ -70,6 +72,7 @@ import com.farmerbb.taskbar.ui.ViewParams;
 import com.farmerbb.taskbar.ui.StartMenuController;
 import com.farmerbb.taskbar.ui.TaskbarController;
 import com.farmerbb.taskbar.util.AppEntry;
+import com.farmerbb.taskbar.util.CustomImageCache;
 import com.farmerbb.taskbar.util.DesktopIconInfo;
 import com.farmerbb.taskbar.util.DisplayInfo;
 import com.farmerbb.taskbar.util.FABWrapper;
@@ -657,6 +660,22 @@ public class HomeActivityDelegate extends AppCompatActivity implements UIHost {
             desktopModeInputController.detachTouchpad();
     }
 
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+
+        if(taskbarController != null) taskbarController.onConfigurationChanged(newConfig);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        if(taskbarController != null) taskbarController.onTrimMemory(level);
+        if(startMenuController != null) startMenuController.onTrimMemory(level);
+        if(dashboardController != null) dashboardController.onTrimMemory(level);
+    }
+
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         outState.putBoolean("icon_arrange_mode", iconArrangeMode);
@@ -757,6 +776,15 @@ public class HomeActivityDelegate extends AppCompatActivity implements UIHost {
     }
 
     private void refreshDesktopIcons() {
+        long traceToken = TraceHelper.getInstance().begin(TraceHelper.STAGE_REFRESH_DESKTOP_ICONS);
+        try {
+            refreshDesktopIconsInternal();
+        } finally {
+            TraceHelper.getInstance().end(TraceHelper.STAGE_REFRESH_DESKTOP_ICONS, traceToken);
+        }
+    }
+
+    private void refreshDesktopIconsInternal() {
         if(desktopIcons == null) return;
 
         boolean taskbarIsVertical = TaskbarPosition.isVertical(this);
@@ -1210,6 +1238,7 @@ public class HomeActivityDelegate extends AppCompatActivity implements UIHost {
     private void removeCustomWallpaper() {
         File file = new File(getFilesDir() + "/tb_images", "desktop_wallpaper");
         if(file.exists()) file.delete();
+        CustomImageCache.getInstance(this).remove(this, "desktop_wallpaper");
         if(wallpaper != null) wallpaper.setImageDrawable(null);
 
         getWindow().setNavigationBarColor(0);
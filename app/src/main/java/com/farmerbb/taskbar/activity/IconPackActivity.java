@@ -20,7 +20,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.os.AsyncTask;
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
@@ -29,6 +29,7 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
+import android.widget.CheckBox;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.ListView;
@@ -36,22 +37,25 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.farmerbb.taskbar.R;
+import com.farmerbb.taskbar.util.IconCache;
 import com.farmerbb.taskbar.util.IconPack;
 import com.farmerbb.taskbar.util.IconPackManager;
+import com.farmerbb.taskbar.util.IconPackPreviewRenderer;
+import com.farmerbb.taskbar.util.TaskScheduler;
 import com.farmerbb.taskbar.util.U;
 
-import java.text.Collator;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import static com.farmerbb.taskbar.util.Constants.*;
 
 public class IconPackActivity extends AppCompatActivity {
 
-    private AppListGenerator appListGenerator;
+    private TaskScheduler.WorkToken appListGenerator;
+    private IconPackPreviewRenderer previewRenderer;
     private ProgressBar progressBar;
     private ListView appList;
+    private boolean showPreviews = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -63,19 +67,27 @@ public class IconPackActivity extends AppCompatActivity {
 
         progressBar = findViewById(R.id.progress_bar);
         appList = findViewById(R.id.list);
+        previewRenderer = new IconPackPreviewRenderer(this);
 
-        appListGenerator = new AppListGenerator();
-        appListGenerator.execute();
+        AppListGenerator generator = new AppListGenerator();
+        appListGenerator = TaskScheduler.getInstance().io().submit(generator, generator);
     }
 
     @Override
     public void finish() {
-        if(appListGenerator != null && appListGenerator.getStatus() == AsyncTask.Status.RUNNING)
-            appListGenerator.cancel(true);
+        if(appListGenerator != null)
+            appListGenerator.cancel();
 
+        previewRenderer.cancelAll();
         super.finish();
     }
 
+    @Override
+    protected void onDestroy() {
+        IconPackManager.getInstance().unregisterReceiver();
+        super.onDestroy();
+    }
+
     private void openIconPackActivity(String packageName) {
         Intent intent = new Intent("org.adw.launcher.THEMES");
         intent.setPackage(packageName);
@@ -94,7 +106,7 @@ public class IconPackActivity extends AppCompatActivity {
         public @NonNull View getView(int position, View convertView, final @NonNull ViewGroup parent) {
             // Check if an existing view is being reused, otherwise inflate the view
             if(convertView == null)
-                convertView = LayoutInflater.from(getContext()).inflate(R.layout.tb_row, parent, false);
+                convertView = LayoutInflater.from(getContext()).inflate(R.layout.tb_row_icon_pack, parent, false);
 
             final IconPack entry = getItem(position);
             assert entry != null;
@@ -102,23 +114,33 @@ public class IconPackActivity extends AppCompatActivity {
             TextView textView = convertView.findViewById(R.id.name);
             textView.setText(entry.getName());
 
-            PackageManager pm = getPackageManager();
             ImageView imageView = convertView.findViewById(R.id.icon);
+            imageView.setTag(entry.getPackageName());
 
-            if(entry.getPackageName().equals(getPackageName())) {
+            if(entry.getPackageName().equals(getPackageName()))
                 imageView.setImageDrawable(null);
-            } else {
-                try {
-                    imageView.setImageDrawable(pm.getApplicationIcon(entry.getPackageName()));
-                } catch (PackageManager.NameNotFoundException e) {
-                    imageView.setImageDrawable(pm.getDefaultActivityIcon());
+            else {
+                Drawable icon = IconCache.getInstance(getContext()).getCachedApplicationIcon(entry.getPackageName());
+                imageView.setImageDrawable(icon);
+
+                if(icon == null) {
+                    PackageManager pm = getPackageManager();
+                    TaskScheduler.getInstance().io().submit(
+                            token -> IconCache.getInstance(getContext()).getApplicationIcon(getContext(), pm, entry.getPackageName()),
+                            loadedIcon -> {
+                                if(entry.getPackageName().equals(imageView.getTag()))
+                                    imageView.setImageDrawable(loadedIcon);
+                            });
                 }
             }
 
+            bindPreview(convertView.findViewById(R.id.preview), entry.getPackageName());
+
             LinearLayout layout = convertView.findViewById(R.id.entry);
             layout.setOnClickListener(view -> {
                 SharedPreferences pref = U.getSharedPreferences(IconPackActivity.this);
-                pref.edit().putString(PREF_ICON_PACK, entry.getPackageName()).apply();
+                IconCache.getInstance(IconPackActivity.this).switchIconPack(IconPackActivity.this,
+                        entry.getPackageName(), pref.getBoolean(PREF_ICON_PACK_USE_MASK, false));
                 setResult(RESULT_OK);
                 finish();
             });
@@ -138,12 +160,46 @@ public class IconPackActivity extends AppCompatActivity {
 
             return convertView;
         }
+
+        private void bindPreview(LinearLayout preview, String packageName) {
+            Object previousToken = preview.getTag();
+            if(previousToken instanceof TaskScheduler.WorkToken)
+                ((TaskScheduler.WorkToken) previousToken).cancel();
+
+            preview.setTag(null);
+            preview.setVisibility(showPreviews ? View.VISIBLE : View.GONE);
+            if(!showPreviews) return;
+
+            List<Drawable> icons = previewRenderer.getCachedPreview(packageName);
+            showPreview(preview, icons);
+
+            if(icons == null)
+                preview.setTag(previewRenderer.render(packageName, result -> {
+                    preview.setTag(null);
+                    showPreview(preview, result);
+                }));
+        }
+
+        private void showPreview(LinearLayout preview, List<Drawable> icons) {
+            int size = getResources().getDimensionPixelSize(R.dimen.tb_icon_pack_preview_size);
+
+            while(preview.getChildCount() < IconPackPreviewRenderer.SAMPLE_SIZE) {
+                ImageView imageView = new ImageView(getContext());
+                imageView.setPadding(0, 0, size / 4, 0);
+                preview.addView(imageView, new LinearLayout.LayoutParams(size + size / 4, size));
+            }
+
+            for(int i = 0; i < preview.getChildCount(); i++) {
+                ImageView imageView = (ImageView) preview.getChildAt(i);
+                imageView.setImageDrawable(icons != null && i < icons.size() ? icons.get(i) : null);
+            }
+        }
     }
 
-    private final class AppListGenerator extends AsyncTask<Void, Void, AppListAdapter> {
+    private final class AppListGenerator implements TaskScheduler.Task<AppListAdapter>, TaskScheduler.Callback<AppListAdapter> {
         @Override
-        protected AppListAdapter doInBackground(Void... params) {
-            List<IconPack> list = IconPackManager.getInstance().getAvailableIconPacks(IconPackActivity.this);
+        public AppListAdapter run(TaskScheduler.WorkToken token) {
+            List<IconPack> list = IconPackManager.getInstance().getCachedIconPacks(IconPackActivity.this);
             if(list.isEmpty())
                 return null;
             else {
@@ -152,23 +208,31 @@ public class IconPackActivity extends AppCompatActivity {
                 dummyIconPack.setPackageName(getPackageName());
                 dummyIconPack.setName(getString(R.string.tb_icon_pack_none));
 
-                Collections.sort(list, (ip1, ip2) -> Collator.getInstance().compare(ip1.getName(), ip2.getName()));
-
                 finalList.add(dummyIconPack);
                 finalList.addAll(list);
 
-                return new AppListAdapter(IconPackActivity.this, R.layout.tb_row, finalList);
+                return new AppListAdapter(IconPackActivity.this, R.layout.tb_row_icon_pack, finalList);
             }
         }
 
         @Override
-        protected void onPostExecute(AppListAdapter adapter) {
+        public void onResult(AppListAdapter adapter) {
             if(adapter == null) {
                 U.showToast(IconPackActivity.this, R.string.tb_no_icon_packs_installed);
                 setResult(RESULT_CANCELED);
                 finish();
             } else {
                 progressBar.setVisibility(View.GONE);
+
+                CheckBox previewToggle = (CheckBox) LayoutInflater.from(IconPackActivity.this)
+                        .inflate(R.layout.tb_icon_pack_preview_toggle, appList, false);
+                previewToggle.setChecked(showPreviews);
+                previewToggle.setOnCheckedChangeListener((buttonView, isChecked) -> {
+                    showPreviews = isChecked;
+                    adapter.notifyDataSetChanged();
+                });
+
+                appList.addHeaderView(previewToggle, null, false);
                 appList.setAdapter(adapter);
                 setFinishOnTouchOutside(true);
             }
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import com.farmerbb.taskbar.BuildConfig;
+import com.farmerbb.taskbar.backup.SettingsSyncUtils;
 import com.farmerbb.taskbar.util.U;
 
 import static com.farmerbb.taskbar.util.Constants.*;
@@ -44,6 +45,7 @@ public class ImportSettingsActivity extends AbstractProgressActivity {
         if(!broadcastSent) {
             Intent intent = new Intent(ACTION_RECEIVE_SETTINGS);
             intent.setPackage(BuildConfig.BASE_APPLICATION_ID);
+            SettingsSyncUtils.addSyncRequestExtras(this, intent);
             sendBroadcast(intent);
 
             broadcastSent = true;
@@ -24,8 +24,6 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.content.pm.ShortcutInfo;
 import android.content.pm.ShortcutManager;
 import android.graphics.drawable.Icon;
@@ -157,7 +155,7 @@ public class MainActivity extends AppCompatActivity {
 
         if(getPackageName().equals(BuildConfig.PAID_APPLICATION_ID)) {
             File file = new File(getFilesDir() + File.separator + "imported_successfully");
-            if(freeVersionInstalled() && !file.exists()) {
+            if(U.isFreeVersionInstalled(this) && !file.exists()) {
                 startActivity(new Intent(this, ImportSettingsActivity.class));
                 finish();
             } else
@@ -166,18 +164,6 @@ public class MainActivity extends AppCompatActivity {
             proceedWithAppLaunch(savedInstanceState);
     }
 
-    private boolean freeVersionInstalled() {
-        PackageManager pm = getPackageManager();
-        try {
-            PackageInfo pInfo = pm.getPackageInfo(BuildConfig.BASE_APPLICATION_ID, 0);
-            return pInfo.versionCode >= 68
-                    && pm.checkSignatures(BuildConfig.BASE_APPLICATION_ID, getPackageName())
-                    == PackageManager.SIGNATURE_MATCH;
-        } catch (PackageManager.NameNotFoundException e) {
-            return false;
-        }
-    }
-
     @SuppressWarnings("ResultOfMethodCallIgnored")
     private void proceedWithAppLaunch(Bundle savedInstanceState) {
         try {
@@ -249,7 +235,7 @@ public class MainActivity extends AppCompatActivity {
         } catch (IllegalAccessException | InstantiationException ignored) {}
 
         SharedPreferences pref = U.getSharedPreferences(this);
-        if(!getPackageName().equals(BuildConfig.BASE_APPLICATION_ID) && freeVersionInstalled()) {
+        if(!getPackageName().equals(BuildConfig.BASE_APPLICATION_ID) && U.isFreeVersionInstalled(this)) {
             if(!pref.getBoolean(PREF_DONT_SHOW_UNINSTALL_DIALOG, false)) {
                 AlertDialog.Builder builder = new AlertDialog.Builder(this);
                 builder.setTitle(R.string.tb_settings_imported_successfully)
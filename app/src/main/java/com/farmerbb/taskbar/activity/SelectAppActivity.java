@@ -20,7 +20,6 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.LauncherActivityInfo;
 import android.content.pm.LauncherApps;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.UserHandle;
@@ -46,6 +45,7 @@ import com.farmerbb.taskbar.fragment.SelectAppFragment;
 import com.farmerbb.taskbar.util.Blacklist;
 import com.farmerbb.taskbar.util.BlacklistEntry;
 import com.farmerbb.taskbar.util.TopApps;
+import com.farmerbb.taskbar.util.TaskScheduler;
 import com.farmerbb.taskbar.util.U;
 
 import java.text.Collator;
@@ -57,7 +57,7 @@ import static com.farmerbb.taskbar.util.Constants.*;
 
 public class SelectAppActivity extends AppCompatActivity {
 
-    private AppListGenerator appListGenerator;
+    private TaskScheduler.WorkToken appListGenerator;
     private ProgressBar progressBar;
     private AppListAdapter hiddenAdapter;
     private AppListAdapter topAppsAdapter;
@@ -122,8 +122,8 @@ public class SelectAppActivity extends AppCompatActivity {
             }
 
             progressBar = findViewById(R.id.progress_bar);
-            appListGenerator = new AppListGenerator();
-            appListGenerator.execute();
+            AppListGenerator generator = new AppListGenerator();
+            appListGenerator = TaskScheduler.getInstance().io().submit(generator, generator);
         } else {
             // Workaround for ViewPager disappearing on config change
             finish();
@@ -138,8 +138,8 @@ public class SelectAppActivity extends AppCompatActivity {
 
     @Override
     public void finish() {
-        if(appListGenerator != null && appListGenerator.getStatus() == AsyncTask.Status.RUNNING)
-            appListGenerator.cancel(true);
+        if(appListGenerator != null)
+            appListGenerator.cancel();
 
         if(!isCollapsed) {
             U.sendBroadcast(this, ACTION_SHOW_TASKBAR);
@@ -159,10 +159,10 @@ public class SelectAppActivity extends AppCompatActivity {
         return null;
     }
 
-    private final class AppListGenerator extends AsyncTask<Void, Void, AppListAdapter[]> {
+    private final class AppListGenerator implements TaskScheduler.Task<AppListAdapter[]>, TaskScheduler.Callback<AppListAdapter[]> {
         @SuppressWarnings("Convert2streamapi")
         @Override
-        protected AppListAdapter[] doInBackground(Void... params) {
+        public AppListAdapter[] run(TaskScheduler.WorkToken token) {
             UserManager userManager = (UserManager) getSystemService(Context.USER_SERVICE);
             LauncherApps launcherApps = (LauncherApps) getSystemService(Context.LAUNCHER_APPS_SERVICE);
 
@@ -247,7 +247,7 @@ public class SelectAppActivity extends AppCompatActivity {
         }
 
         @Override
-        protected void onPostExecute(AppListAdapter[] adapters) {
+        public void onResult(AppListAdapter[] adapters) {
             hiddenAdapter = adapters[U.HIDDEN];
             topAppsAdapter = adapters[U.TOP_APPS];
 
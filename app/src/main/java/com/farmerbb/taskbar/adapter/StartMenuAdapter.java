@@ -42,6 +42,7 @@ import android.widget.TextView;
 import com.farmerbb.taskbar.R;
 import com.farmerbb.taskbar.util.AppEntry;
 import com.farmerbb.taskbar.helper.FreeformHackHelper;
+import com.farmerbb.taskbar.util.TaskScheduler;
 import com.farmerbb.taskbar.util.TopApps;
 import com.farmerbb.taskbar.util.U;
 
@@ -99,12 +100,27 @@ public class StartMenuAdapter extends ArrayAdapter<AppEntry> implements SectionI
                 U.isDarkTheme(getContext()) ? R.color.tb_text_color_dark : R.color.tb_text_color));
 
         ImageView imageView = convertView.findViewById(R.id.icon);
-        imageView.setImageDrawable(entry.getIcon(getContext()));
+        imageView.setTag(entry);
+
+        // Icons released under memory pressure are loaded again off the main thread
+        if(entry.hasIcon())
+            imageView.setImageDrawable(entry.getIcon(getContext()));
+        else {
+            imageView.setImageDrawable(null);
+
+            Context context = getContext();
+            TaskScheduler.getInstance().io().submit(token -> entry.getIcon(context), icon -> {
+                if(imageView.getTag() == entry) imageView.setImageDrawable(icon);
+            });
+        }
 
         LinearLayout layout = convertView.findViewById(R.id.entry);
         layout.setOnClickListener(view -> {
             U.sendBroadcast(getContext(), ACTION_HIDE_START_MENU);
-            U.launchApp(getContext(), entry, null, false, false, view);
+            if(entry.getShortcut() != null)
+                U.startShortcut(getContext(), entry, entry.getShortcut(), view);
+            else
+                U.launchApp(getContext(), entry, null, false, false, view);
         });
 
         layout.setOnLongClickListener(view -> {
@@ -195,7 +211,7 @@ public class StartMenuAdapter extends ArrayAdapter<AppEntry> implements SectionI
         args.putInt("x", location[0]);
         args.putInt("y", location[1]);
 
-        U.newHandler().postDelayed(() -> U.startContextMenuActivity(getContext(), args), shouldDelay() ? 100 : 0);
+        U.startContextMenuActivity(getContext(), args, shouldDelay() ? 100 : 0);
     }
 
     private boolean shouldDelay() {
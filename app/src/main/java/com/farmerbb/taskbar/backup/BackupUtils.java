@@ -61,12 +61,80 @@ public class BackupUtils {
             "saved_window_sizes_window_sizes";
     private static final String BACKUP_KEY_PREFERENCE = "preferences";
 
+    public static final String SECTION_PINNED_BLOCKED_APPS = "pinned_blocked_apps";
+    public static final String SECTION_BLACKLIST = "blacklist";
+    public static final String SECTION_TOP_APPS = "top_apps";
+    public static final String SECTION_SAVED_WINDOW_SIZES = "saved_window_sizes";
+    public static final String SECTION_PREFERENCES = "preferences";
+
     private static final String BACKUP_DIR_SHARED_PREFS =
             File.separator + "shared_prefs" + File.separator;
 
     private BackupUtils() {}
 
+    public static String[] getSections() {
+        return new String[] {
+                SECTION_PINNED_BLOCKED_APPS,
+                SECTION_BLACKLIST,
+                SECTION_TOP_APPS,
+                SECTION_SAVED_WINDOW_SIZES,
+                SECTION_PREFERENCES
+        };
+    }
+
     public static void backup(Context context, BackupAgent agent) {
+        for(String section : getSections()) {
+            backup(context, agent, section);
+        }
+    }
+
+    public static void backup(Context context, BackupAgent agent, String section) {
+        switch(section) {
+            case SECTION_PINNED_BLOCKED_APPS:
+                backupPinnedBlockedApps(context, agent);
+                break;
+            case SECTION_BLACKLIST:
+                backupBlacklist(context, agent);
+                break;
+            case SECTION_TOP_APPS:
+                backupTopApps(context, agent);
+                break;
+            case SECTION_SAVED_WINDOW_SIZES:
+                backupSavedWindowSizes(context, agent);
+                break;
+            case SECTION_PREFERENCES:
+                backupPreferences(context, agent);
+                break;
+        }
+    }
+
+    public static void restore(Context context, BackupAgent agent) {
+        for(String section : getSections()) {
+            restore(context, agent, section);
+        }
+    }
+
+    public static void restore(Context context, BackupAgent agent, String section) {
+        switch(section) {
+            case SECTION_PINNED_BLOCKED_APPS:
+                restorePinnedBlockedApps(context, agent);
+                break;
+            case SECTION_BLACKLIST:
+                restoreBlacklist(context, agent);
+                break;
+            case SECTION_TOP_APPS:
+                restoreTopApps(context, agent);
+                break;
+            case SECTION_SAVED_WINDOW_SIZES:
+                restoreSavedWindowSizes(context, agent);
+                break;
+            case SECTION_PREFERENCES:
+                restorePreferences(context, agent);
+                break;
+        }
+    }
+
+    private static void backupPinnedBlockedApps(Context context, BackupAgent agent) {
         // Get pinned and blocked apps
         PinnedBlockedApps pba = PinnedBlockedApps.getInstance(context);
         List<AppEntry> pinnedAppsList = pba.getPinnedApps();
@@ -105,7 +173,9 @@ public class BackupUtils {
         agent.putStringArray(BACKUP_KEY_BLOCKED_APPS_PACKAGE_NAMES, blockedAppsPackageNames);
         agent.putStringArray(BACKUP_KEY_BLOCKED_APPS_COMPONENT_NAMES, blockedAppsComponentNames);
         agent.putStringArray(BACKUP_KEY_BLOCKED_APPS_LABELS, blockedAppsLabels);
+    }
 
+    private static void backupBlacklist(Context context, BackupAgent agent) {
         // Get blacklist
         Blacklist blacklist = Blacklist.getInstance(context);
         List<BlacklistEntry> blacklistList = blacklist.getBlockedApps();
@@ -121,7 +191,9 @@ public class BackupUtils {
 
         agent.putStringArray(BACKUP_KEY_BLACKLIST_PACKAGE_NAMES, blacklistPackageNames);
         agent.putStringArray(BACKUP_KEY_BLACKLIST_LABELS, blacklistLabels);
+    }
 
+    private static void backupTopApps(Context context, BackupAgent agent) {
         // Get top apps
         TopApps topApps = TopApps.getInstance(context);
         List<BlacklistEntry> topAppsList = topApps.getTopApps();
@@ -137,7 +209,9 @@ public class BackupUtils {
 
         agent.putStringArray(BACKUP_KEY_TOP_APPS_PACKAGE_NAMES, topAppsPackageNames);
         agent.putStringArray(BACKUP_KEY_TOP_APPS_LABELS, topAppsLabels);
+    }
 
+    private static void backupSavedWindowSizes(Context context, BackupAgent agent) {
         // Get saved window sizes
         if(U.canEnableFreeform(context)) {
             SavedWindowSizes savedWindowSizes = SavedWindowSizes.getInstance(context);
@@ -157,7 +231,9 @@ public class BackupUtils {
             agent.putStringArray(BACKUP_KEY_SAVED_WINDOW_SIZES_WINDOW_SIZES,
                     savedWindowSizesWindowSizes);
         }
+    }
 
+    private static void backupPreferences(Context context, BackupAgent agent) {
         // Get shared preferences
         StringBuilder preferences = new StringBuilder();
 
@@ -181,7 +257,7 @@ public class BackupUtils {
         agent.putString(BACKUP_KEY_PREFERENCE, preferences.toString());
     }
 
-    public static void restore(Context context, BackupAgent agent) {
+    private static void restorePinnedBlockedApps(Context context, BackupAgent agent) {
         // Get pinned and blocked apps
         PinnedBlockedApps pba = PinnedBlockedApps.getInstance(context);
         pba.clear(context);
@@ -238,7 +314,9 @@ public class BackupUtils {
                         false
                 ));
             }
+    }
 
+    private static void restoreBlacklist(Context context, BackupAgent agent) {
         // Get blacklist
         Blacklist blacklist = Blacklist.getInstance(context);
         blacklist.clear(context);
@@ -253,7 +331,9 @@ public class BackupUtils {
                         blacklistLabels[i]
                 ));
             }
+    }
 
+    private static void restoreTopApps(Context context, BackupAgent agent) {
         // Get top apps
         TopApps topApps = TopApps.getInstance(context);
         topApps.clear(context);
@@ -268,7 +348,9 @@ public class BackupUtils {
                         topAppsLabels[i]
                 ));
             }
+    }
 
+    private static void restoreSavedWindowSizes(Context context, BackupAgent agent) {
         // Get saved window sizes
         if(U.canEnableFreeform(context)) {
             SavedWindowSizes savedWindowSizes = SavedWindowSizes.getInstance(context);
@@ -287,10 +369,12 @@ public class BackupUtils {
                     );
                 }
         }
+    }
 
+    private static void restorePreferences(Context context, BackupAgent agent) {
         // Get shared preferences
         String contents = agent.getString(BACKUP_KEY_PREFERENCE);
-        if(contents.length() > 0)
+        if(contents != null && contents.length() > 0)
             try {
                 File file = new File(getSharedPreferencePath(context));
                 FileOutputStream output = new FileOutputStream(file);
@@ -0,0 +1,124 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.backup;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JsonReaderBackupAgent implements BackupAgent {
+
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<String, String[]> arrays = new HashMap<>();
+
+    public JsonReaderBackupAgent(JsonReader reader) throws IOException {
+        reader.beginObject();
+
+        while(reader.hasNext()) {
+            String key = reader.nextName();
+            JsonToken token = reader.peek();
+
+            if(token == JsonToken.BEGIN_ARRAY) {
+                List<String> values = new ArrayList<>();
+
+                reader.beginArray();
+                while(reader.hasNext()) {
+                    values.add(readScalar(reader));
+                }
+                reader.endArray();
+
+                arrays.put(key, values.toArray(new String[0]));
+            } else if(token == JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+            } else {
+                String value = readScalar(reader);
+                if(value != null) strings.put(key, value);
+            }
+        }
+
+        reader.endObject();
+    }
+
+    private String readScalar(JsonReader reader) throws IOException {
+        switch(reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return null;
+            case BOOLEAN:
+                return Boolean.toString(reader.nextBoolean());
+            case BEGIN_ARRAY:
+            case BEGIN_OBJECT:
+                reader.skipValue();
+                return null;
+            default:
+                return reader.nextString();
+        }
+    }
+
+    @Override
+    public void putString(String key, String value) {
+        strings.put(key, value);
+    }
+
+    @Override
+    public void putStringArray(String key, String[] value) {
+        arrays.put(key, value);
+    }
+
+    @Override
+    public void putLongArray(String key, long[] value) {
+        String[] array = new String[value.length];
+
+        for(int i = 0; i < value.length; i++) {
+            array[i] = Long.toString(value[i]);
+        }
+
+        arrays.put(key, array);
+    }
+
+    @Override
+    public String getString(String key) {
+        return strings.get(key);
+    }
+
+    @Override
+    public String[] getStringArray(String key) {
+        return arrays.get(key);
+    }
+
+    @Override
+    public long[] getLongArray(String key) {
+        String[] array = arrays.get(key);
+        if(array == null) return null;
+
+        try {
+            long[] returnValue = new long[array.length];
+
+            for(int i = 0; i < array.length; i++) {
+                returnValue[i] = Long.parseLong(array[i]);
+            }
+
+            return returnValue;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
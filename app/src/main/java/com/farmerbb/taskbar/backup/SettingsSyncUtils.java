@@ -0,0 +1,284 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.backup;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.JsonReader;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.core.content.FileProvider;
+
+import com.farmerbb.taskbar.util.U;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versioned settings sync between the free and paid versions.
+ *
+ * The requesting app sends the digests of every chunk it has already applied. The sending app
+ * only includes chunks whose digest has changed, and shares each chunk as a file through its
+ * FileProvider instead of packing the data into Intent extras. Digests are only recorded once
+ * every chunk in a response has been applied, so a failed import is sent in full next time.
+ */
+public class SettingsSyncUtils {
+    public static final int SYNC_PROTOCOL_VERSION = 2;
+
+    private static final String EXTRA_SYNC_VERSION = "sync_version";
+    private static final String EXTRA_SYNC_ACKED_DIGESTS = "sync_acked_digests";
+
+    @VisibleForTesting
+    static final String EXTRA_SYNC_ACKED_CHUNKS = "sync_acked_chunks";
+    @VisibleForTesting
+    static final String EXTRA_SYNC_CHUNKS = "sync_chunks";
+    @VisibleForTesting
+    static final String EXTRA_SYNC_DIGESTS = "sync_digests";
+    @VisibleForTesting
+    static final String EXTRA_SYNC_CHUNK_PREFIX = "sync_chunk_";
+
+    private static final String IMAGE_CHUNK_PREFIX = "image_";
+    private static final String SYNC_STATE_PREFS = "tb_settings_sync";
+    private static final String SYNC_DIR = "tb_sync";
+
+    private SettingsSyncUtils() {}
+
+    public static boolean isSyncIntent(Intent intent) {
+        return intent != null && intent.getIntExtra(EXTRA_SYNC_VERSION, 0) >= SYNC_PROTOCOL_VERSION;
+    }
+
+    public static void addSyncRequestExtras(Context context, Intent request) {
+        SharedPreferences state = getSyncState(context);
+        List<String> chunks = new ArrayList<>();
+        List<String> digests = new ArrayList<>();
+
+        for(String key : state.getAll().keySet()) {
+            String digest = state.getString(key, null);
+            if(digest != null) {
+                chunks.add(key);
+                digests.add(digest);
+            }
+        }
+
+        request.putExtra(EXTRA_SYNC_VERSION, SYNC_PROTOCOL_VERSION);
+        request.putExtra(EXTRA_SYNC_ACKED_CHUNKS, chunks.toArray(new String[0]));
+        request.putExtra(EXTRA_SYNC_ACKED_DIGESTS, digests.toArray(new String[0]));
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    public static void addSyncResponseExtras(Context context,
+                                             Intent request,
+                                             Intent response,
+                                             String targetPackage) throws IOException {
+        String[] ackedChunks = request.getStringArrayExtra(EXTRA_SYNC_ACKED_CHUNKS);
+        String[] ackedDigests = request.getStringArrayExtra(EXTRA_SYNC_ACKED_DIGESTS);
+
+        File syncDir = new File(context.getFilesDir(), SYNC_DIR);
+        syncDir.mkdirs();
+
+        File[] oldFiles = syncDir.listFiles();
+        if(oldFiles != null) {
+            for(File file : oldFiles) {
+                file.delete();
+            }
+        }
+
+        List<String> chunks = new ArrayList<>();
+        List<String> digests = new ArrayList<>();
+
+        for(String section : BackupUtils.getSections()) {
+            JSONObject json = new JSONObject();
+            BackupUtils.backup(context, new JSONBackupAgent(json), section);
+
+            byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+            String digest = digest(data);
+            if(digest.equals(getAckedDigest(section, ackedChunks, ackedDigests)))
+                continue;
+
+            File file = new File(syncDir, section + ".json");
+            OutputStream output = new FileOutputStream(file);
+            output.write(data);
+            output.close();
+
+            addChunk(context, response, targetPackage, section, digest, file, chunks, digests);
+        }
+
+        File imagesDir = new File(context.getFilesDir(), "tb_images");
+        for(String filename : U.getImageFilenames()) {
+            File file = new File(imagesDir, filename);
+            String chunk = IMAGE_CHUNK_PREFIX + filename;
+            String digest = file.exists() ? digest(file) : "";
+
+            if(digest.equals(getAckedDigest(chunk, ackedChunks, ackedDigests)))
+                continue;
+
+            if(file.exists())
+                addChunk(context, response, targetPackage, chunk, digest, file, chunks, digests);
+            else {
+                // An empty digest tells the receiver that the image was removed
+                chunks.add(chunk);
+                digests.add(digest);
+            }
+        }
+
+        response.putExtra(EXTRA_SYNC_VERSION, SYNC_PROTOCOL_VERSION);
+        response.putExtra(EXTRA_SYNC_CHUNKS, chunks.toArray(new String[0]));
+        response.putExtra(EXTRA_SYNC_DIGESTS, digests.toArray(new String[0]));
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    public static void applySyncResponse(Context context, Intent response) {
+        String[] chunks = response.getStringArrayExtra(EXTRA_SYNC_CHUNKS);
+        String[] digests = response.getStringArrayExtra(EXTRA_SYNC_DIGESTS);
+        if(chunks == null || digests == null || chunks.length != digests.length) return;
+
+        boolean allApplied = true;
+
+        for(int i = 0; i < chunks.length; i++) {
+            String chunk = chunks[i];
+            Uri uri = response.getParcelableExtra(EXTRA_SYNC_CHUNK_PREFIX + chunk);
+
+            if(chunk.startsWith(IMAGE_CHUNK_PREFIX)) {
+                String filename = chunk.substring(IMAGE_CHUNK_PREFIX.length());
+                boolean applied;
+
+                if(uri != null)
+                    applied = U.importImage(context, uri, filename);
+                else {
+                    File file = new File(new File(context.getFilesDir(), "tb_images"), filename);
+                    if(file.exists()) file.delete();
+                    applied = true;
+                }
+
+                allApplied &= applied;
+            } else
+                allApplied &= uri != null && applySection(context, uri, chunk);
+        }
+
+        if(!allApplied) return;
+
+        SharedPreferences.Editor editor = getSyncState(context).edit();
+        for(int i = 0; i < chunks.length; i++) {
+            editor.putString(chunks[i], digests[i]);
+        }
+
+        editor.commit();
+    }
+
+    private static boolean applySection(Context context, Uri uri, String section) {
+        try {
+            InputStream input = context.getContentResolver().openInputStream(uri);
+            if(input == null) return false;
+
+            JsonReaderBackupAgent agent;
+            try {
+                agent = new JsonReaderBackupAgent(
+                        new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+            } finally {
+                input.close();
+            }
+
+            BackupUtils.restore(context, agent, section);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static void addChunk(Context context,
+                                 Intent response,
+                                 String targetPackage,
+                                 String chunk,
+                                 String digest,
+                                 File file,
+                                 List<String> chunks,
+                                 List<String> digests) {
+        Uri uri = FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", file);
+        context.grantUriPermission(targetPackage, uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        response.putExtra(EXTRA_SYNC_CHUNK_PREFIX + chunk, uri);
+        chunks.add(chunk);
+        digests.add(digest);
+    }
+
+    private static String getAckedDigest(String chunk, String[] ackedChunks, String[] ackedDigests) {
+        if(ackedChunks == null || ackedDigests == null) return null;
+
+        for(int i = 0; i < ackedChunks.length && i < ackedDigests.length; i++) {
+            if(chunk.equals(ackedChunks[i]))
+                return ackedDigests[i];
+        }
+
+        return null;
+    }
+
+    private static String digest(byte[] data) {
+        return toHex(newMessageDigest().digest(data));
+    }
+
+    private static String digest(File file) throws IOException {
+        MessageDigest messageDigest = newMessageDigest();
+        InputStream input = new FileInputStream(file);
+
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = input.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+            }
+        } finally {
+            input.close();
+        }
+
+        return toHex(messageDigest.digest());
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available on every Android version
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder builder = new StringBuilder();
+        for(byte b : hash) {
+            builder.append(String.format("%02x", b));
+        }
+
+        return builder.toString();
+    }
+
+    private static SharedPreferences getSyncState(Context context) {
+        return context.getSharedPreferences(SYNC_STATE_PREFS, Context.MODE_PRIVATE);
+    }
+}
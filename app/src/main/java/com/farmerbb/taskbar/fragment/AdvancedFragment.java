@@ -24,6 +24,7 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
+import android.graphics.Typeface;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -37,6 +38,9 @@ import android.view.View;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
 import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.ScrollView;
+import android.widget.TextView;
 
 import com.farmerbb.taskbar.BuildConfig;
 import com.farmerbb.taskbar.R;
@@ -44,9 +48,16 @@ import com.farmerbb.taskbar.activity.KeyboardShortcutActivityLockDevice;
 import com.farmerbb.taskbar.activity.NavigationBarButtonsActivity;
 import com.farmerbb.taskbar.activity.HomeActivity;
 import com.farmerbb.taskbar.activity.KeyboardShortcutActivity;
+import com.farmerbb.taskbar.helper.StartupTimingHelper;
+import com.farmerbb.taskbar.helper.TraceHelper;
 import com.farmerbb.taskbar.util.DependencyUtils;
+import com.farmerbb.taskbar.util.MemoryPolicy;
+import com.farmerbb.taskbar.util.TaskScheduler;
 import com.farmerbb.taskbar.util.U;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import static com.farmerbb.taskbar.util.Constants.*;
 
 public class AdvancedFragment extends SettingsFragment {
@@ -136,6 +147,21 @@ public class AdvancedFragment extends SettingsFragment {
         ActionBar actionBar = activity.getSupportActionBar();
         if(actionBar != null)
             actionBar.setDisplayHomeAsUpEnabled(true);
+
+        // Long-pressing the dashboard preference opens the hidden performance stats screen
+        View rootView = getView();
+        if(rootView != null) {
+            ListView list = rootView.findViewById(android.R.id.list);
+            if(list != null) list.setOnItemLongClickListener((parent, view, position, id) -> {
+                Object item = parent.getItemAtPosition(position);
+                if(item instanceof Preference && PREF_DASHBOARD.equals(((Preference) item).getKey())) {
+                    showPerformanceStats();
+                    return true;
+                }
+
+                return false;
+            });
+        }
     }
 
     @Override
@@ -303,6 +329,63 @@ public class AdvancedFragment extends SettingsFragment {
         return super.onPreferenceClick(p);
     }
 
+    private void showPerformanceStats() {
+        TraceHelper helper = TraceHelper.getInstance();
+        String stats = helper.toText();
+        if(!stats.isEmpty())
+            stats += "\n" + TaskScheduler.getInstance().getQueueStats();
+
+        String trimStats = MemoryPolicy.getInstance(getActivity()).getTrimStats();
+        if(!trimStats.isEmpty())
+            stats += (stats.isEmpty() ? "" : "\n") + trimStats;
+
+        StartupTimingHelper startupHelper = StartupTimingHelper.getInstance();
+        String startupStats = startupHelper.toText();
+        if(!startupStats.isEmpty())
+            stats = startupStats + (stats.isEmpty() ? "" : "\n") + stats;
+
+        TextView textView = new TextView(getActivity());
+        textView.setText(stats.isEmpty() ? getString(R.string.tb_performance_stats_empty) : stats);
+        textView.setTypeface(Typeface.MONOSPACE);
+        textView.setTextIsSelectable(true);
+
+        int padding = getResources().getDimensionPixelSize(R.dimen.tb_performance_stats_padding);
+        textView.setPadding(padding, padding, padding, padding);
+
+        ScrollView scrollView = new ScrollView(getActivity());
+        scrollView.addView(textView);
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setTitle(R.string.tb_performance_stats)
+                .setView(scrollView)
+                .setPositiveButton(R.string.tb_action_share, (dialog, which) -> {
+                    JSONObject jsonObject = helper.toJson();
+                    try {
+                        jsonObject.put("startup", startupHelper.toJson());
+                    } catch (JSONException ignored) {}
+
+                    String json;
+                    try {
+                        json = jsonObject.toString(2);
+                    } catch (JSONException e) {
+                        json = jsonObject.toString();
+                    }
+
+                    Intent intent = new Intent(Intent.ACTION_SEND);
+                    intent.setType("text/plain");
+                    intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.tb_performance_stats));
+                    intent.putExtra(Intent.EXTRA_TEXT, json);
+
+                    try {
+                        startActivity(Intent.createChooser(intent, null));
+                    } catch (ActivityNotFoundException ignored) {}
+                })
+                .setNeutralButton(R.string.tb_action_reset, (dialog, which) -> helper.reset())
+                .setNegativeButton(R.string.tb_action_close, null);
+
+        builder.create().show();
+    }
+
     private void updateDashboardGridSize(boolean restartTaskbar) {
         int width = U.getIntPrefWithDefault(getActivity(), PREF_DASHBOARD_WIDTH);
         int height = U.getIntPrefWithDefault(getActivity(), PREF_DASHBOARD_HEIGHT);
@@ -165,11 +165,6 @@ public class AppearanceFragment extends SettingsFragment {
         if(resultCode != Activity.RESULT_OK)
             return;
 
-        if(requestCode == 123) {
-            U.refreshPinnedIcons(getActivity());
-            U.restartTaskbar(getActivity());
-        }
-
         if(requestCode == U.IMAGE_REQUEST_CODE) {
             if(data.getData() == null)
                 return;
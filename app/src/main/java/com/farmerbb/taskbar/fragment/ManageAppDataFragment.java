@@ -26,8 +26,10 @@ import android.preference.Preference;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.farmerbb.taskbar.BuildConfig;
 import com.farmerbb.taskbar.R;
 import com.farmerbb.taskbar.activity.BackupRestoreActivity;
+import com.farmerbb.taskbar.activity.ImportSettingsActivity;
 import com.farmerbb.taskbar.util.U;
 
 import java.text.SimpleDateFormat;
@@ -49,6 +51,12 @@ public class ManageAppDataFragment extends SettingsFragment {
         findPreference(PREF_BACKUP_SETTINGS).setOnPreferenceClickListener(this);
         findPreference(PREF_RESTORE_SETTINGS).setOnPreferenceClickListener(this);
         findPreference(PREF_CLEAR_PINNED_APPS).setOnPreferenceClickListener(this);
+
+        if(getActivity().getPackageName().equals(BuildConfig.PAID_APPLICATION_ID)
+                && U.isFreeVersionInstalled(getActivity()))
+            findPreference(PREF_IMPORT_FREE_SETTINGS).setOnPreferenceClickListener(this);
+        else
+            getPreferenceScreen().removePreference(findPreference(PREF_IMPORT_FREE_SETTINGS));
     }
 
     @Override
@@ -89,6 +97,9 @@ public class ManageAppDataFragment extends SettingsFragment {
                     U.showToastLong(getActivity(), R.string.tb_backup_restore_not_available);
                 }
                 break;
+            case PREF_IMPORT_FREE_SETTINGS:
+                startActivity(new Intent(getActivity(), ImportSettingsActivity.class));
+                break;
         }
 
         return super.onPreferenceClick(p);
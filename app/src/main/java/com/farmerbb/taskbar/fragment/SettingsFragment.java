@@ -38,6 +38,7 @@ import com.farmerbb.taskbar.activity.ClearDataActivity;
 import com.farmerbb.taskbar.activity.MainActivity;
 import com.farmerbb.taskbar.helper.FreeformHackHelper;
 import com.farmerbb.taskbar.helper.LauncherHelper;
+import com.farmerbb.taskbar.util.IconCache;
 import com.farmerbb.taskbar.util.U;
 
 import java.util.HashMap;
@@ -177,6 +178,14 @@ public abstract class SettingsFragment extends PreferenceFragment implements Pre
                             U.showToast(getActivity(), R.string.tb_unable_to_apply_density_change);
                         }
 
+                        shouldRestart = false;
+                        break;
+                    case PREF_ICON_PACK_USE_MASK:
+                        SharedPreferences pref3 = U.getSharedPreferences(getActivity());
+                        IconCache.getInstance(getActivity()).switchIconPack(getActivity(),
+                                pref3.getString(PREF_ICON_PACK, getActivity().getPackageName()),
+                                Boolean.parseBoolean(stringValue));
+
                         shouldRestart = false;
                         break;
                     case PREF_HIDE_ICON_LABELS:
@@ -24,7 +24,10 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.hardware.input.InputManager;
+import android.os.Build;
 import android.util.TypedValue;
+import android.view.Choreographer;
 import android.view.Display;
 import android.view.Gravity;
 import android.view.MotionEvent;
@@ -51,8 +54,10 @@ public class DesktopModeInputController {
     private static DesktopModeInputController theInstance;
 
     private WeakReference<View> cursorView = new WeakReference<>(null);
+    private WeakReference<View> cursorWindowView = new WeakReference<>(null);
     private WeakReference<WindowManager> cursorWindowManager = new WeakReference<>(null);
     private WindowManager.LayoutParams cursorLayoutParams;
+    private int cursorSize;
     private int cursorBoundsWidth;
     private int cursorBoundsHeight;
     private int cursorDisplayId = Display.DEFAULT_DISPLAY;
@@ -78,6 +83,12 @@ public class DesktopModeInputController {
     private SensorEventListener gyroListener;
     private long lastGyroTimestamp;
 
+    private boolean cursorFrameScheduled;
+    private long pendingInputTimeNanos;
+    private String pendingDebugMessage;
+
+    private final Choreographer.FrameCallback cursorFrameCallback = this::onCursorFrame;
+
     private DesktopModeInputController() {}
 
     public static DesktopModeInputController getInstance() {
@@ -101,10 +112,13 @@ public class DesktopModeInputController {
         }
 
         int size = context.getResources().getDimensionPixelSize(R.dimen.tb_desktop_cursor_size);
+        cursorSize = size;
 
+        // The cursor is drawn inside a fullscreen, non-touchable overlay and moved using view
+        // translation, so that cursor movement never requires a window relayout
         cursorLayoutParams = new WindowManager.LayoutParams(
-                size,
-                size,
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.MATCH_PARENT,
                 U.getOverlayType(),
                 WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
                         | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
@@ -113,25 +127,39 @@ public class DesktopModeInputController {
                 PixelFormat.TRANSLUCENT
         );
         cursorLayoutParams.gravity = Gravity.TOP | Gravity.START;
+        U.applyDisplayCutoutModeTo(cursorLayoutParams);
+
+        // Untrusted overlays must stay at or below the maximum obscuring opacity,
+        // otherwise touches passing through the fullscreen cursor window are blocked
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            InputManager im = (InputManager) context.getSystemService(Context.INPUT_SERVICE);
+            if(im != null)
+                cursorLayoutParams.alpha = Math.min(1f, im.getMaximumObscuringOpacityForTouch());
+        }
+
+        FrameLayout cursorWindow = new FrameLayout(context);
+        cursorWindow.setClipChildren(false);
 
         View cursor = buildCursorView(context, size);
+        cursorWindow.addView(cursor, new FrameLayout.LayoutParams(size, size, Gravity.TOP | Gravity.START));
 
         updateCursorBounds(context, size);
         if(!hasCursorLocation) centerCursor();
 
-        cursorLayoutParams.x = Math.round(cursorX);
-        cursorLayoutParams.y = Math.round(cursorY);
+        cursor.setTranslationX(Math.round(cursorX));
+        cursor.setTranslationY(Math.round(cursorY));
         cursorDisplayId = windowManager.getDefaultDisplay().getDisplayId();
 
         try {
-            windowManager.addView(cursor, cursorLayoutParams);
+            windowManager.addView(cursorWindow, cursorLayoutParams);
             cursorView = new WeakReference<>(cursor);
+            cursorWindowView = new WeakReference<>(cursorWindow);
             cursorWindowManager = new WeakReference<>(windowManager);
         } catch (IllegalStateException | IllegalArgumentException ignored) {}
     }
 
     public synchronized void detachCursor() {
-        View view = cursorView.get();
+        View view = cursorWindowView.get();
         WindowManager wm = cursorWindowManager.get();
         if(view != null && wm != null) {
             try {
@@ -139,9 +167,16 @@ public class DesktopModeInputController {
             } catch (IllegalArgumentException ignored) {}
         }
 
+        if(cursorFrameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(cursorFrameCallback);
+            cursorFrameScheduled = false;
+        }
+
         cursorView = new WeakReference<>(null);
+        cursorWindowView = new WeakReference<>(null);
         cursorWindowManager = new WeakReference<>(null);
         cursorLayoutParams = null;
+        cursorSize = 0;
         cursorBoundsWidth = 0;
         cursorBoundsHeight = 0;
         cursorDisplayId = Display.DEFAULT_DISPLAY;
@@ -239,10 +274,9 @@ public class DesktopModeInputController {
                     float dy = event.getY() - lastTouchY;
                     lastTouchX = event.getX();
                     lastTouchY = event.getY();
-                    if(!gyroEnabled) {
-                        moveCursorBy(context, dx, dy);
-                        updateDebug("touch move dx=" + Math.round(dx) + " dy=" + Math.round(dy));
-                    } else {
+                    if(!gyroEnabled)
+                        moveCursorBy(context, dx, dy, event.getEventTime() * 1_000_000L);
+                    else {
                         if(!isDragging && shouldStartDrag(dx, dy)) {
                             isDragging = ShizukuInputHelper.startDrag(cursorDisplayId, swipeX, swipeY);
                             suppressGyro = true;
@@ -256,8 +290,7 @@ public class DesktopModeInputController {
                             // Keep on-screen cursor indicator in sync with swipe location for accuracy.
                             cursorX = sendX;
                             cursorY = sendY;
-                            applyCursorPosition();
-                            updateDebug("swipe drag x=" + Math.round(sendX) + " y=" + Math.round(sendY));
+                            scheduleCursorUpdate(event.getEventTime() * 1_000_000L);
                         }
                     }
 
@@ -271,7 +304,7 @@ public class DesktopModeInputController {
                         ShizukuInputHelper.endDrag(cursorDisplayId, endX, endY);
                         cursorX = endX;
                         cursorY = endY;
-                        applyCursorPosition();
+                        scheduleCursorUpdate(event.getEventTime() * 1_000_000L);
                     } else
                         performClick(context);
                     isDragging = false;
@@ -304,8 +337,8 @@ public class DesktopModeInputController {
     }
 
     public synchronized void updateCursorBounds(Context context) {
-        int size = cursorLayoutParams != null
-                ? cursorLayoutParams.width
+        int size = cursorSize > 0
+                ? cursorSize
                 : context.getResources().getDimensionPixelSize(R.dimen.tb_desktop_cursor_size);
         updateCursorBounds(context, size);
     }
@@ -344,18 +377,17 @@ public class DesktopModeInputController {
         hasCursorLocation = true;
     }
 
-    private void moveCursorBy(Context context, float dx, float dy) {
+    private void moveCursorBy(Context context, float dx, float dy, long inputTimeNanos) {
         if(cursorLayoutParams == null) {
             int size = context.getResources().getDimensionPixelSize(R.dimen.tb_desktop_cursor_size);
             updateCursorBounds(context, size);
         } else if(cursorBoundsWidth == 0 || cursorBoundsHeight == 0)
-            updateCursorBounds(context, cursorLayoutParams.width);
+            updateCursorBounds(context, cursorSize);
 
         cursorX = clamp(cursorX + (dx * CURSOR_SPEED_MULTIPLIER), 0, cursorBoundsWidth);
         cursorY = clamp(cursorY + (dy * CURSOR_SPEED_MULTIPLIER), 0, cursorBoundsHeight);
 
-        applyCursorPosition();
-        updateDebug("cursor " + Math.round(cursorX) + "," + Math.round(cursorY));
+        scheduleCursorUpdate(inputTimeNanos);
     }
 
     private boolean shouldStartDrag() {
@@ -369,19 +401,42 @@ public class DesktopModeInputController {
     }
 
     private void performClick(Context context) {
-        ShizukuInputHelper.click(cursorDisplayId, cursorX, cursorY);
+        ShizukuInputHelper.click(cursorDisplayId, cursorX, cursorY,
+                success -> updateDebug(success ? "click" : "click failed"));
+    }
+
+    private void scheduleCursorUpdate(long inputTimeNanos) {
+        if(cursorFrameScheduled)
+            return;
+
+        // Latency is measured from the oldest input that the next frame will reflect
+        pendingInputTimeNanos = inputTimeNanos;
+        cursorFrameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(cursorFrameCallback);
+    }
+
+    private synchronized void onCursorFrame(long frameTimeNanos) {
+        cursorFrameScheduled = false;
+        applyCursorPosition();
+
+        long latency = Math.max(0, frameTimeNanos - pendingInputTimeNanos);
+        TraceHelper.getInstance().record(TraceHelper.STAGE_CURSOR_LATENCY, latency);
+
+        if(debugView != null) {
+            String message = pendingDebugMessage != null
+                    ? pendingDebugMessage
+                    : "cursor " + Math.round(cursorX) + "," + Math.round(cursorY);
+
+            debugView.setText(message + " | " + (latency / 1_000_000L) + " ms");
+            pendingDebugMessage = null;
+        }
     }
 
     private void applyCursorPosition() {
-        WindowManager wm = cursorWindowManager.get();
         View view = cursorView.get();
-        if(wm != null && view != null && cursorLayoutParams != null) {
-            cursorLayoutParams.x = Math.round(cursorX);
-            cursorLayoutParams.y = Math.round(cursorY);
-
-            try {
-                wm.updateViewLayout(view, cursorLayoutParams);
-            } catch (IllegalArgumentException ignored) {}
+        if(view != null) {
+            view.setTranslationX(Math.round(cursorX));
+            view.setTranslationY(Math.round(cursorY));
         }
     }
 
@@ -434,7 +489,11 @@ public class DesktopModeInputController {
 
     private void updateDebug(String message) {
         if(debugView == null) return;
-        debugView.post(() -> debugView.setText(message));
+
+        if(cursorFrameScheduled)
+            pendingDebugMessage = message;
+        else
+            debugView.post(() -> debugView.setText(message));
     }
 
     public synchronized void setGyroEnabled(Context context, boolean enabled) {
@@ -469,8 +528,7 @@ public class DesktopModeInputController {
                     float dx = -event.values[2] * GYRO_SPEED_MULTIPLIER * dt;
                     // Tilt phone forward/back (pitch around X) moves cursor up/down (invert to match natural feel).
                     float dy = -event.values[0] * GYRO_SPEED_MULTIPLIER * dt;
-                    moveCursorBy(context, dx, dy);
-                    updateDebug("gyro dx=" + String.format("%.2f", dx) + " dy=" + String.format("%.2f", dy));
+                    moveCursorBy(context, dx, dy, System.nanoTime());
                 }
                 lastGyroTimestamp = event.timestamp;
             }
@@ -18,6 +18,7 @@ package com.farmerbb.taskbar.helper;
 import android.content.Context;
 import android.view.Display;
 
+import com.farmerbb.taskbar.util.DisplayInfoCache;
 import com.farmerbb.taskbar.util.U;
 
 public class LauncherHelper {
@@ -68,6 +69,8 @@ public class LauncherHelper {
     public void setOnSecondaryHomeScreen(boolean value, int displayId) {
         onSecondaryHomeScreen = value;
         secondaryDisplayId = value ? displayId : -1;
+
+        DisplayInfoCache.getInstance().clear();
     }
 
     public int getSecondaryDisplayId() {
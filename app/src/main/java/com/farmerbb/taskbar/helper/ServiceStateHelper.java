@@ -0,0 +1,77 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.helper;
+
+import android.app.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ServiceStateHelper {
+
+    public interface Listener {
+        void onServiceStateChanged(String className, boolean running);
+    }
+
+    private final Set<String> runningServices = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private static ServiceStateHelper theInstance;
+
+    private ServiceStateHelper() {}
+
+    public static ServiceStateHelper getInstance() {
+        if(theInstance == null) theInstance = new ServiceStateHelper();
+
+        return theInstance;
+    }
+
+    public void onServiceCreated(Service service) {
+        setRunning(service.getClass().getName(), true);
+    }
+
+    public void onServiceDestroyed(Service service) {
+        setRunning(service.getClass().getName(), false);
+    }
+
+    public boolean isServiceRunning(Class<? extends Service> cls) {
+        return isServiceRunning(cls.getName());
+    }
+
+    public boolean isServiceRunning(String className) {
+        return runningServices.contains(className);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void setRunning(String className, boolean running) {
+        boolean changed = running ? runningServices.add(className) : runningServices.remove(className);
+        if(!changed) return;
+
+        for(Listener listener : listeners) {
+            listener.onServiceStateChanged(className, running);
+        }
+    }
+}
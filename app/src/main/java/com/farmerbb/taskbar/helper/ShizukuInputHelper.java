@@ -17,10 +17,15 @@ package com.farmerbb.taskbar.helper;
 
 import android.os.Build;
 import android.os.IBinder;
+import android.os.Process;
 import android.os.SystemClock;
 import android.view.InputEvent;
 import android.view.MotionEvent;
 
+import com.farmerbb.taskbar.util.TaskScheduler;
+
+import java.lang.reflect.Method;
+
 import rikka.shizuku.Shizuku;
 import rikka.shizuku.ShizukuBinderWrapper;
 import rikka.shizuku.SystemServiceHelper;
@@ -31,97 +36,191 @@ public class ShizukuInputHelper {
     private static long dragDownTime;
     private static boolean dragging;
 
-    private ShizukuInputHelper() {}
+    // Resolved once and reused until the Shizuku binder dies
+    private static Object iInputManager;
+    private static Method injectMethod;
+    private static Method setDisplayIdMethod;
+    private static boolean deathListenerRegistered;
 
-    public static boolean click(int displayId, float x, float y) {
-        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return false;
-        if(!Shizuku.pingBinder()) return false;
+    private static final Shizuku.OnBinderDeadListener binderDeadListener = ShizukuInputHelper::invalidate;
 
-        try {
-            IBinder inputBinder = new ShizukuBinderWrapper(SystemServiceHelper.getSystemService("input"));
+    // All injection happens in order on a single thread; intermediate drag moves are coalesced.
+    // Input runs at display priority so that it isn't queued behind background work
+    private static final TaskScheduler.Lane injectionQueue =
+            TaskScheduler.getInstance().lane(TaskScheduler.LANE_SHIZUKU_INPUT, Process.THREAD_PRIORITY_DISPLAY);
+    private static final Object moveLock = new Object();
+    private static boolean movePending;
+    private static int pendingMoveDisplayId;
+    private static float pendingMoveX;
+    private static float pendingMoveY;
 
-            Class<?> stubClass = Class.forName("android.hardware.input.IInputManager$Stub");
-            Object iInputManager = stubClass
-                    .getMethod("asInterface", IBinder.class)
-                    .invoke(null, inputBinder);
+    private static long injectedEvents;
+    private static long coalescedEvents;
+    private static long droppedEvents;
 
-            Class<?> iInputManagerClass = Class.forName("android.hardware.input.IInputManager");
-            java.lang.reflect.Method injectMethod = iInputManagerClass.getMethod("injectInputEvent", InputEvent.class, int.class);
+    private ShizukuInputHelper() {}
+
+    /**
+     * Injects a tap. Whether it was actually injected is passed to the callback (if any) on the
+     * main thread once the injection has run, or right away if Shizuku isn't available.
+     */
+    public static void click(int displayId, float x, float y, TaskScheduler.Callback<Boolean> callback) {
+        if(!ensureInputManager()) {
+            if(callback != null) callback.onResult(false);
+            return;
+        }
 
+        injectionQueue.submit(token -> {
             long now = SystemClock.uptimeMillis();
-            MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
-            MotionEvent up = MotionEvent.obtain(now, now + 10, MotionEvent.ACTION_UP, x, y, 0);
+            return inject(displayId, now, now, MotionEvent.ACTION_DOWN, x, y)
+                    && inject(displayId, now, now + 10, MotionEvent.ACTION_UP, x, y);
+        }, callback);
+    }
 
-            setDisplayIdIfPossible(down, displayId);
-            setDisplayIdIfPossible(up, displayId);
+    public static boolean startDrag(int displayId, float x, float y) {
+        if(!ensureInputManager()) {
+            dragging = false;
+            return false;
+        }
 
-            injectMethod.invoke(iInputManager, down, INJECT_INPUT_EVENT_MODE_ASYNC);
-            injectMethod.invoke(iInputManager, up, INJECT_INPUT_EVENT_MODE_ASYNC);
+        long now = SystemClock.uptimeMillis();
+        dragDownTime = now;
+        dragging = true;
 
-            down.recycle();
-            up.recycle();
-            return true;
-        } catch (Throwable t) {
-            return false;
+        injectionQueue.execute(() -> inject(displayId, now, now, MotionEvent.ACTION_DOWN, x, y));
+        return true;
+    }
+
+    public static void moveDrag(int displayId, float x, float y) {
+        if(!dragging) return;
+
+        long downTime = dragDownTime;
+        synchronized(moveLock) {
+            pendingMoveDisplayId = displayId;
+            pendingMoveX = x;
+            pendingMoveY = y;
+
+            if(movePending) {
+                coalescedEvents++;
+                return;
+            }
+
+            movePending = true;
         }
+
+        injectionQueue.execute(() -> flushPendingMove(downTime));
     }
 
-    public static boolean startDrag(int displayId, float x, float y) {
-        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return false;
-        if(!Shizuku.pingBinder()) return false;
+    public static void endDrag(int displayId, float x, float y) {
+        if(!dragging) return;
+
+        long downTime = dragDownTime;
+        dragging = false;
+
+        injectionQueue.execute(() -> {
+            flushPendingMove(downTime);
+            inject(displayId, downTime, SystemClock.uptimeMillis(), MotionEvent.ACTION_UP, x, y);
+        });
+    }
+
+    /**
+     * Returns injection statistics as {injected, coalesced, dropped} event counts.
+     */
+    public static long[] getInjectionStats() {
+        synchronized(moveLock) {
+            return new long[] { injectedEvents, coalescedEvents, droppedEvents };
+        }
+    }
+
+    private static void flushPendingMove(long downTime) {
+        int displayId;
+        float x;
+        float y;
+
+        synchronized(moveLock) {
+            if(!movePending) return;
+
+            movePending = false;
+            displayId = pendingMoveDisplayId;
+            x = pendingMoveX;
+            y = pendingMoveY;
+        }
+
+        inject(displayId, downTime, SystemClock.uptimeMillis(), MotionEvent.ACTION_MOVE, x, y);
+    }
+
+    private static boolean inject(int displayId, long downTime, long eventTime, int action, float x, float y) {
+        Object manager;
+        Method method;
+
+        synchronized(ShizukuInputHelper.class) {
+            manager = iInputManager;
+            method = injectMethod;
+        }
+
+        if(manager == null || method == null) {
+            countDropped();
+            return false;
+        }
+
+        MotionEvent ev = MotionEvent.obtain(downTime, eventTime, action, x, y, 0);
         try {
-            IBinder inputBinder = new ShizukuBinderWrapper(SystemServiceHelper.getSystemService("input"));
-            Class<?> stubClass = Class.forName("android.hardware.input.IInputManager$Stub");
-            Object iInputManager = stubClass
-                    .getMethod("asInterface", IBinder.class)
-                    .invoke(null, inputBinder);
-            Class<?> iInputManagerClass = Class.forName("android.hardware.input.IInputManager");
-            java.lang.reflect.Method injectMethod = iInputManagerClass.getMethod("injectInputEvent", InputEvent.class, int.class);
+            setDisplayIdIfPossible(ev, displayId);
+            method.invoke(manager, ev, INJECT_INPUT_EVENT_MODE_ASYNC);
 
-            long now = SystemClock.uptimeMillis();
-            MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
-            setDisplayIdIfPossible(down, displayId);
-            injectMethod.invoke(iInputManager, down, INJECT_INPUT_EVENT_MODE_ASYNC);
-            down.recycle();
+            synchronized(moveLock) {
+                injectedEvents++;
+            }
 
-            dragDownTime = now;
-            dragging = true;
             return true;
         } catch (Throwable t) {
-            dragging = false;
+            countDropped();
+            invalidate();
             return false;
+        } finally {
+            ev.recycle();
         }
     }
 
-    public static void moveDrag(int displayId, float x, float y) {
-        if(!dragging) return;
-        injectMotion(displayId, MotionEvent.ACTION_MOVE, x, y);
+    private static void countDropped() {
+        synchronized(moveLock) {
+            droppedEvents++;
+        }
     }
 
-    public static void endDrag(int displayId, float x, float y) {
-        if(!dragging) return;
-        injectMotion(displayId, MotionEvent.ACTION_UP, x, y);
-        dragging = false;
-    }
+    private static synchronized boolean ensureInputManager() {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return false;
+        if(iInputManager != null && injectMethod != null) return true;
+        if(!Shizuku.pingBinder()) return false;
 
-    private static void injectMotion(int displayId, int action, float x, float y) {
-        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return;
-        if(!Shizuku.pingBinder()) return;
         try {
             IBinder inputBinder = new ShizukuBinderWrapper(SystemServiceHelper.getSystemService("input"));
+
             Class<?> stubClass = Class.forName("android.hardware.input.IInputManager$Stub");
-            Object iInputManager = stubClass
+            Object manager = stubClass
                     .getMethod("asInterface", IBinder.class)
                     .invoke(null, inputBinder);
+
             Class<?> iInputManagerClass = Class.forName("android.hardware.input.IInputManager");
-            java.lang.reflect.Method injectMethod = iInputManagerClass.getMethod("injectInputEvent", InputEvent.class, int.class);
+            injectMethod = iInputManagerClass.getMethod("injectInputEvent", InputEvent.class, int.class);
+            iInputManager = manager;
 
-            long now = SystemClock.uptimeMillis();
-            MotionEvent ev = MotionEvent.obtain(dragDownTime, now, action, x, y, 0);
-            setDisplayIdIfPossible(ev, displayId);
-            injectMethod.invoke(iInputManager, ev, INJECT_INPUT_EVENT_MODE_ASYNC);
-            ev.recycle();
-        } catch (Throwable ignored) {}
+            if(!deathListenerRegistered) {
+                Shizuku.addBinderDeadListener(binderDeadListener);
+                deathListenerRegistered = true;
+            }
+
+            return true;
+        } catch (Throwable t) {
+            iInputManager = null;
+            injectMethod = null;
+            return false;
+        }
+    }
+
+    private static synchronized void invalidate() {
+        iInputManager = null;
+        injectMethod = null;
     }
 
     private static void setDisplayIdIfPossible(MotionEvent event, int displayId) {
@@ -129,7 +228,10 @@ public class ShizukuInputHelper {
 
         if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             try {
-                MotionEvent.class.getMethod("setDisplayId", int.class).invoke(event, displayId);
+                if(setDisplayIdMethod == null)
+                    setDisplayIdMethod = MotionEvent.class.getMethod("setDisplayId", int.class);
+
+                setDisplayIdMethod.invoke(event, displayId);
             } catch (Throwable ignored) {}
         }
     }
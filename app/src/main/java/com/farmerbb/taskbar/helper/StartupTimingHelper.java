@@ -0,0 +1,155 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.helper;
+
+import android.os.SystemClock;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records when each part of the taskbar becomes ready after it is started, so that the most
+ * recent startup can be inspected from the hidden performance screen in the settings.
+ *
+ * Each milestone is recorded once per startup, with its offset from the start and, where it
+ * makes sense, how long the step itself took on the main thread.
+ */
+public class StartupTimingHelper {
+
+    public static final String MILESTONE_NOTIFICATION_SERVICE = "NotificationService.onCreate";
+    public static final String MILESTONE_DRAW_TASKBAR = "TaskbarController.drawTaskbar";
+    public static final String MILESTONE_FIRST_RECENT_APPS = "TaskbarController.firstRecentApps";
+    public static final String MILESTONE_DRAW_START_MENU = "StartMenuController.drawStartMenu";
+    public static final String MILESTONE_DRAW_DASHBOARD = "DashboardController.drawDashboard";
+
+    public static class Milestone {
+        public final String name;
+        public final long offsetNanos;
+        public final long durationNanos;
+
+        Milestone(String name, long offsetNanos, long durationNanos) {
+            this.name = name;
+            this.offsetNanos = offsetNanos;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    private final Map<String, Milestone> milestones = new LinkedHashMap<>();
+
+    private long startNanos = 0;
+    private boolean coldStart = true;
+
+    private static StartupTimingHelper theInstance;
+
+    private StartupTimingHelper() {}
+
+    public static StartupTimingHelper getInstance() {
+        if(theInstance == null) theInstance = new StartupTimingHelper();
+
+        return theInstance;
+    }
+
+    /**
+     * Starts a new startup timeline, replacing the previous one. Only the first startup in a
+     * process counts as a cold start.
+     */
+    public synchronized void begin() {
+        if(startNanos != 0) coldStart = false;
+
+        startNanos = SystemClock.elapsedRealtimeNanos();
+        milestones.clear();
+    }
+
+    /**
+     * Returns a token to pass to {@link #end(String, long)} once the step is done.
+     */
+    public long start() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public void end(String milestone, long token) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        record(milestone, now, now - token);
+    }
+
+    public void mark(String milestone) {
+        record(milestone, SystemClock.elapsedRealtimeNanos(), -1);
+    }
+
+    public synchronized boolean hasMilestone(String milestone) {
+        return milestones.containsKey(milestone);
+    }
+
+    private synchronized void record(String milestone, long timeNanos, long durationNanos) {
+        if(startNanos == 0) startNanos = timeNanos - Math.max(0, durationNanos);
+        if(milestones.containsKey(milestone)) return;
+
+        milestones.put(milestone, new Milestone(milestone, timeNanos - startNanos, durationNanos));
+    }
+
+    public synchronized List<Milestone> getMilestones() {
+        return new ArrayList<>(milestones.values());
+    }
+
+    public synchronized JSONObject toJson() {
+        JSONObject json = new JSONObject();
+
+        try {
+            json.put("cold_start", coldStart);
+
+            JSONObject milestonesJson = new JSONObject();
+            for(Milestone milestone : milestones.values()) {
+                JSONObject milestoneJson = new JSONObject();
+                milestoneJson.put("offset_ms", toMillis(milestone.offsetNanos));
+                if(milestone.durationNanos >= 0)
+                    milestoneJson.put("duration_ms", toMillis(milestone.durationNanos));
+
+                milestonesJson.put(milestone.name, milestoneJson);
+            }
+
+            json.put("milestones", milestonesJson);
+        } catch (JSONException ignored) {}
+
+        return json;
+    }
+
+    public synchronized String toText() {
+        if(milestones.isEmpty()) return "";
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(coldStart ? "Startup (cold)" : "Startup (warm)").append('\n');
+
+        for(Milestone milestone : milestones.values()) {
+            builder.append(String.format(Locale.US, "  %s  +%.2f ms", milestone.name, toMillis(milestone.offsetNanos)));
+            if(milestone.durationNanos >= 0)
+                builder.append(String.format(Locale.US, "  (%.2f ms)", toMillis(milestone.durationNanos)));
+
+            builder.append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
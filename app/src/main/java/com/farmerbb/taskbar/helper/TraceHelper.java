@@ -0,0 +1,212 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.helper;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wraps hot paths in android.os.Trace sections and keeps rolling timing statistics for each
+ * stage, so that they can be inspected from the hidden performance screen in the settings.
+ */
+public class TraceHelper {
+
+    public static final String STAGE_UPDATE_RECENT_APPS = "TaskbarController.updateRecentApps";
+    public static final String STAGE_REFRESH_APPS = "StartMenuController.refreshApps";
+    public static final String STAGE_SHOW_START_MENU = "StartMenuController.showStartMenu";
+    public static final String STAGE_DRAW_DASHBOARD = "DashboardController.drawDashboard";
+    public static final String STAGE_REFRESH_DESKTOP_ICONS = "HomeActivityDelegate.refreshDesktopIcons";
+    public static final String STAGE_GET_ICON = "IconCache.getIcon";
+    public static final String STAGE_LAUNCH_APP = "U.launchApp";
+    public static final String STAGE_CURSOR_LATENCY = "DesktopModeInputController.cursorLatency";
+
+    private static final int WINDOW_SIZE = 256;
+
+    private static class Stage {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int next;
+        private int size;
+        private long count;
+        private long max;
+
+        synchronized void add(long durationNanos) {
+            samples[next] = durationNanos;
+            next = (next + 1) % WINDOW_SIZE;
+            if(size < WINDOW_SIZE) size++;
+
+            count++;
+            if(durationNanos > max) max = durationNanos;
+        }
+
+        synchronized Snapshot snapshot(String name) {
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+
+            return new Snapshot(name, count, percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), max);
+        }
+
+        private static long percentile(long[] sorted, int percentile) {
+            if(sorted.length == 0) return 0;
+
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+
+    public static class Snapshot {
+        public final String name;
+        public final long count;
+        public final long p50Nanos;
+        public final long p95Nanos;
+        public final long p99Nanos;
+        public final long maxNanos;
+
+        Snapshot(String name, long count, long p50Nanos, long p95Nanos, long p99Nanos, long maxNanos) {
+            this.name = name;
+            this.count = count;
+            this.p50Nanos = p50Nanos;
+            this.p95Nanos = p95Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+    }
+
+    private final Map<String, Stage> stages = new TreeMap<>();
+
+    private static TraceHelper theInstance;
+
+    private TraceHelper() {}
+
+    public static TraceHelper getInstance() {
+        if(theInstance == null) theInstance = new TraceHelper();
+
+        return theInstance;
+    }
+
+    /**
+     * Starts a trace section for the given stage. The returned token must be passed to
+     * {@link #end(String, long)} on the same thread.
+     */
+    public long begin(String stage) {
+        Trace.beginSection(stage);
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public void end(String stage, long token) {
+        Trace.endSection();
+        record(stage, SystemClock.elapsedRealtimeNanos() - token);
+    }
+
+    public Runnable wrap(String stage, Runnable runnable) {
+        return () -> {
+            long token = begin(stage);
+            try {
+                runnable.run();
+            } finally {
+                end(stage, token);
+            }
+        };
+    }
+
+    public void record(String stage, long durationNanos) {
+        getStage(stage).add(durationNanos);
+    }
+
+    public List<Snapshot> getSnapshots() {
+        List<Snapshot> snapshots = new ArrayList<>();
+
+        synchronized(stages) {
+            for(Map.Entry<String, Stage> entry : stages.entrySet()) {
+                snapshots.add(entry.getValue().snapshot(entry.getKey()));
+            }
+        }
+
+        return snapshots;
+    }
+
+    public void reset() {
+        synchronized(stages) {
+            stages.clear();
+        }
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+
+        try {
+            json.put("timestamp", System.currentTimeMillis());
+            json.put("uptime_ms", SystemClock.elapsedRealtime());
+
+            JSONObject stagesJson = new JSONObject();
+            for(Snapshot snapshot : getSnapshots()) {
+                JSONObject stageJson = new JSONObject();
+                stageJson.put("count", snapshot.count);
+                stageJson.put("p50_ms", toMillis(snapshot.p50Nanos));
+                stageJson.put("p95_ms", toMillis(snapshot.p95Nanos));
+                stageJson.put("p99_ms", toMillis(snapshot.p99Nanos));
+                stageJson.put("max_ms", toMillis(snapshot.maxNanos));
+
+                stagesJson.put(snapshot.name, stageJson);
+            }
+
+            json.put("stages", stagesJson);
+        } catch (JSONException ignored) {}
+
+        return json;
+    }
+
+    public String toText() {
+        StringBuilder builder = new StringBuilder();
+
+        for(Snapshot snapshot : getSnapshots()) {
+            builder.append(snapshot.name).append('\n');
+            builder.append(String.format(Locale.US, "  n=%d  p50=%.2f  p95=%.2f  p99=%.2f  max=%.2f ms%n",
+                    snapshot.count,
+                    toMillis(snapshot.p50Nanos),
+                    toMillis(snapshot.p95Nanos),
+                    toMillis(snapshot.p99Nanos),
+                    toMillis(snapshot.maxNanos)));
+        }
+
+        return builder.toString();
+    }
+
+    private Stage getStage(String name) {
+        synchronized(stages) {
+            Stage stage = stages.get(name);
+            if(stage == null) {
+                stage = new Stage();
+                stages.put(name, stage);
+            }
+
+            return stage;
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -24,6 +24,7 @@ import android.text.InputType;
 import android.view.inputmethod.EditorInfo;
 
 import com.farmerbb.taskbar.R;
+import com.farmerbb.taskbar.helper.ServiceStateHelper;
 import com.farmerbb.taskbar.util.U;
 
 public class DisableKeyboardService extends InputMethodService {
@@ -61,6 +62,8 @@ public class DisableKeyboardService extends InputMethodService {
     public void onCreate() {
         super.onCreate();
 
+        ServiceStateHelper.getInstance().onServiceCreated(this);
+
         DisplayManager manager = (DisplayManager) getSystemService(DISPLAY_SERVICE);
         manager.registerDisplayListener(listener, null);
     }
@@ -70,6 +73,7 @@ public class DisableKeyboardService extends InputMethodService {
         DisplayManager manager = (DisplayManager) getSystemService(DISPLAY_SERVICE);
         manager.unregisterDisplayListener(listener);
 
+        ServiceStateHelper.getInstance().onServiceDestroyed(this);
         super.onDestroy();
     }
 
@@ -18,69 +18,149 @@ package com.farmerbb.taskbar.service;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
 
 import androidx.annotation.VisibleForTesting;
 import androidx.core.app.NotificationCompat;
 
+import com.farmerbb.taskbar.helper.ServiceStateHelper;
 import com.farmerbb.taskbar.util.U;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import static com.farmerbb.taskbar.util.Constants.*;
 
 public class NotificationCountService extends NotificationListenerService {
 
+    private static final long FRAME_INTERVAL_MS = 16;
+    private static final long RESYNC_INTERVAL_MS = 5 * 60 * 1000;
+
+    private final Set<String> countedKeys = new HashSet<>();
+    private final Handler handler = U.newHandler();
+    private final Runnable broadcastRunnable = () -> {
+        broadcastPending = false;
+
+        int count = getValidCount(countedKeys.size());
+        if(count != lastBroadcastCount)
+            broadcastNotificationCount(count);
+    };
+
+    private long lastResyncTime;
+    private long lastBroadcastTime;
+    private int lastBroadcastCount = -1;
+    private boolean broadcastPending;
+
     private final BroadcastReceiver requestCountReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            broadcastNotificationCount();
+            broadcastNotificationCount(getValidCount(countedKeys.size()));
         }
     };
 
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        ServiceStateHelper.getInstance().onServiceCreated(this);
+    }
+
+    @Override
+    public void onDestroy() {
+        handler.removeCallbacks(broadcastRunnable);
+        ServiceStateHelper.getInstance().onServiceDestroyed(this);
+        super.onDestroy();
+    }
+
     @Override
     public void onListenerConnected() {
         U.registerReceiver(this, requestCountReceiver, ACTION_REQUEST_NOTIFICATION_COUNT);
-        broadcastNotificationCount();
+
+        resync();
+        broadcastNotificationCount(getValidCount(countedKeys.size()));
     }
 
     @Override
     public void onListenerDisconnected() {
         U.unregisterReceiver(this, requestCountReceiver);
+
+        handler.removeCallbacks(broadcastRunnable);
+        broadcastPending = false;
+        countedKeys.clear();
+
         broadcastNotificationCount(0);
     }
 
     @Override
     public void onNotificationPosted(StatusBarNotification sbn) {
-        broadcastNotificationCount();
+        if(needsResync())
+            resync();
+        else if(sbn != null) {
+            if(isCounted(sbn))
+                countedKeys.add(sbn.getKey());
+            else
+                countedKeys.remove(sbn.getKey());
+        }
+
+        scheduleBroadcast();
     }
 
     @Override
     public void onNotificationRemoved(StatusBarNotification sbn) {
-        broadcastNotificationCount();
+        if(needsResync())
+            resync();
+        else if(sbn != null)
+            countedKeys.remove(sbn.getKey());
+
+        scheduleBroadcast();
     }
 
-    private void broadcastNotificationCount() {
-        int count = 0;
+    private boolean isCounted(StatusBarNotification notification) {
+        return (notification.getNotification().flags & NotificationCompat.FLAG_GROUP_SUMMARY) == 0
+                && notification.isClearable();
+    }
+
+    private boolean needsResync() {
+        return SystemClock.elapsedRealtime() - lastResyncTime > RESYNC_INTERVAL_MS;
+    }
+
+    // Rebuilds the counter from scratch; only done on connect and when the last resync is stale
+    private void resync() {
+        lastResyncTime = SystemClock.elapsedRealtime();
 
         StatusBarNotification[] notifications;
         try {
             notifications = getActiveNotifications();
         } catch (Exception e) {
-            notifications = new StatusBarNotification[0];
+            notifications = null;
         }
 
+        if(notifications == null) return;
+
+        countedKeys.clear();
         for(StatusBarNotification notification : notifications) {
-            if(notification != null
-                    && (notification.getNotification().flags & NotificationCompat.FLAG_GROUP_SUMMARY) == 0
-                    && notification.isClearable()) count++;
+            if(notification != null && isCounted(notification))
+                countedKeys.add(notification.getKey());
         }
+    }
+
+    // Coalesces bursts of notification events into at most one broadcast per frame
+    private void scheduleBroadcast() {
+        if(broadcastPending) return;
 
-        broadcastNotificationCount(count);
+        broadcastPending = true;
+        long delay = lastBroadcastTime + FRAME_INTERVAL_MS - SystemClock.uptimeMillis();
+        handler.postDelayed(broadcastRunnable, Math.max(0, delay));
     }
 
     private void broadcastNotificationCount(int count) {
+        lastBroadcastTime = SystemClock.uptimeMillis();
+        lastBroadcastCount = count;
+
         Intent intent = new Intent(ACTION_NOTIFICATION_COUNT_CHANGED);
-        intent.putExtra(EXTRA_COUNT, getValidCount(count));
+        intent.putExtra(EXTRA_COUNT, count);
         U.sendBroadcast(this, intent);
     }
 
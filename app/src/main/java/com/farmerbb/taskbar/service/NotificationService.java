@@ -34,6 +34,8 @@ import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 import com.farmerbb.taskbar.activity.MainActivity;
 import com.farmerbb.taskbar.R;
+import com.farmerbb.taskbar.helper.ServiceStateHelper;
+import com.farmerbb.taskbar.helper.StartupTimingHelper;
 import com.farmerbb.taskbar.util.DependencyUtils;
 import com.farmerbb.taskbar.util.U;
 
@@ -84,9 +86,13 @@ public class NotificationService extends Service {
     public void onCreate() {
         super.onCreate();
 
+        ServiceStateHelper.getInstance().onServiceCreated(this);
+
         SharedPreferences pref = U.getSharedPreferences(this);
         if(pref.getBoolean(PREF_TASKBAR_ACTIVE, false)) {
             if(U.canDrawOverlays(this)) {
+                StartupTimingHelper.getInstance().begin();
+
                 isHidden = U.getSharedPreferences(this).getBoolean(PREF_IS_HIDDEN, false);
 
                 Intent intent = new Intent(this, MainActivity.class);
@@ -158,6 +164,8 @@ public class NotificationService extends Service {
                     registerReceiver(userForegroundReceiver, new IntentFilter(Intent.ACTION_USER_FOREGROUND));
                     registerReceiver(userBackgroundReceiver, new IntentFilter(Intent.ACTION_USER_BACKGROUND));
                 }
+
+                StartupTimingHelper.getInstance().mark(StartupTimingHelper.MILESTONE_NOTIFICATION_SERVICE);
             } else {
                 pref.edit().putBoolean(PREF_TASKBAR_ACTIVE, false).apply();
 
@@ -168,6 +176,8 @@ public class NotificationService extends Service {
 
     @Override
     public void onDestroy() {
+        ServiceStateHelper.getInstance().onServiceDestroyed(this);
+
         SharedPreferences pref = U.getSharedPreferences(this);
         if(pref.getBoolean(PREF_IS_RESTARTING, false))
             pref.edit().remove(PREF_IS_RESTARTING).apply();
@@ -22,6 +22,7 @@ import android.content.Intent;
 import android.view.accessibility.AccessibilityEvent;
 
 import com.farmerbb.taskbar.R;
+import com.farmerbb.taskbar.helper.ServiceStateHelper;
 import com.farmerbb.taskbar.util.U;
 
 import static com.farmerbb.taskbar.util.Constants.*;
@@ -47,6 +48,7 @@ public class PowerMenuService extends AccessibilityService {
     public void onCreate() {
         super.onCreate();
 
+        ServiceStateHelper.getInstance().onServiceCreated(this);
         U.registerReceiver(this, powerMenuReceiver, ACTION_ACCESSIBILITY_ACTION);
     }
 
@@ -54,6 +56,7 @@ public class PowerMenuService extends AccessibilityService {
     public void onDestroy() {
         super.onDestroy();
 
+        ServiceStateHelper.getInstance().onServiceDestroyed(this);
         U.unregisterReceiver(this, powerMenuReceiver);
     }
 }
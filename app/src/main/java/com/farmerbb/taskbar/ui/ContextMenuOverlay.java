@@ -0,0 +1,239 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.ui;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.drawable.Drawable;
+import android.os.Bundle;
+import android.view.Gravity;
+import android.view.KeyEvent;
+import android.view.LayoutInflater;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import com.farmerbb.taskbar.R;
+import com.farmerbb.taskbar.helper.FreeformHackHelper;
+import com.farmerbb.taskbar.helper.MenuHelper;
+import com.farmerbb.taskbar.util.ContextMenuModel;
+import com.farmerbb.taskbar.util.U;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.farmerbb.taskbar.util.Constants.*;
+
+/**
+ * Draws context menus directly in the taskbar's overlay window instead of starting
+ * ContextMenuActivity. The items and their actions come from the same ContextMenuModel that the
+ * activity uses, and the layout is inflated once per host so that a menu can appear within a
+ * single frame.
+ *
+ * Anything that needs a real activity (desktop icons, the secondary home screen) still goes
+ * through ContextMenuActivity; see U.startContextMenuActivity().
+ */
+public class ContextMenuOverlay implements ContextMenuModel.Host {
+
+    private final Context context;
+    private final UIHost host;
+    private final LayoutInflater inflater;
+    private final FrameLayout layout;
+    private final LinearLayout menu;
+    private final List<TextView> rows = new ArrayList<>();
+
+    private ContextMenuModel model;
+    private boolean showing = false;
+
+    private final BroadcastReceiver showReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Bundle args = intent.getBundleExtra("args");
+            if(args != null) show(args);
+        }
+    };
+
+    private final BroadcastReceiver dashboardOrStartMenuAppearingReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if(model != null) model.onDashboardOrStartMenuAppearing();
+            dismiss();
+        }
+    };
+
+    private final BroadcastReceiver hideReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            dismiss();
+        }
+    };
+
+    public ContextMenuOverlay(Context context, UIHost host) {
+        this.context = context;
+        this.host = host;
+
+        inflater = LayoutInflater.from(U.wrapContext(context));
+        layout = (FrameLayout) inflater.inflate(R.layout.tb_context_menu_overlay, null);
+        menu = layout.findViewById(R.id.context_menu);
+
+        layout.setOnClickListener(v -> dismiss());
+        layout.setOnKeyListener((v, keyCode, event) -> {
+            if(keyCode != KeyEvent.KEYCODE_BACK) return false;
+
+            if(event.getAction() == KeyEvent.ACTION_UP && !model.onBackPressed()) dismiss();
+            return true;
+        });
+
+        U.registerReceiver(context, showReceiver, ACTION_SHOW_CONTEXT_MENU_OVERLAY);
+    }
+
+    public void destroy() {
+        dismiss();
+        U.unregisterReceiver(context, showReceiver);
+    }
+
+    private void show(Bundle args) {
+        dismiss();
+
+        ContextMenuModel newModel = new ContextMenuModel(context, this, args);
+        if(!newModel.hasContent()) return;
+
+        model = newModel;
+        model.onMenuOpened();
+        model.generateMenu();
+
+        WindowManager.LayoutParams position = new WindowManager.LayoutParams();
+        U.applyContextMenuPosition(context, args, position);
+
+        FrameLayout.LayoutParams menuParams = new FrameLayout.LayoutParams(
+                position.width, FrameLayout.LayoutParams.WRAP_CONTENT, position.gravity);
+
+        if((position.gravity & Gravity.HORIZONTAL_GRAVITY_MASK) == Gravity.RIGHT)
+            menuParams.rightMargin = position.x;
+        else
+            menuParams.leftMargin = position.x;
+
+        if((position.gravity & Gravity.VERTICAL_GRAVITY_MASK) == Gravity.BOTTOM)
+            menuParams.bottomMargin = position.y;
+        else
+            menuParams.topMargin = position.y;
+
+        menu.setLayoutParams(menuParams);
+
+        try {
+            host.addView(layout, new ViewParams(
+                    WindowManager.LayoutParams.MATCH_PARENT,
+                    WindowManager.LayoutParams.MATCH_PARENT,
+                    -1,
+                    0,
+                    -1
+            ));
+        } catch (RuntimeException e) {
+            MenuHelper.getInstance().setContextMenuOpen(false);
+            U.launchContextMenuActivity(context, args);
+            return;
+        }
+
+        showing = true;
+        layout.requestFocus();
+
+        U.registerReceiver(context, dashboardOrStartMenuAppearingReceiver,
+                ACTION_START_MENU_APPEARING,
+                ACTION_DASHBOARD_APPEARING);
+
+        U.registerReceiver(context, hideReceiver, ACTION_HIDE_CONTEXT_MENU);
+    }
+
+    private void dismiss() {
+        if(!showing) return;
+        showing = false;
+
+        try {
+            host.removeView(layout);
+        } catch (IllegalArgumentException ignored) {}
+
+        U.unregisterReceiver(context, dashboardOrStartMenuAppearingReceiver);
+        U.unregisterReceiver(context, hideReceiver);
+
+        model.onMenuClosed();
+    }
+
+    @Override
+    public void showMenu(List<ContextMenuModel.Item> items, CharSequence title) {
+        int count = items.size() + (title != null ? 1 : 0);
+        while(rows.size() < count) {
+            rows.add((TextView) inflater.inflate(R.layout.tb_context_menu_overlay_row, menu, false));
+        }
+
+        menu.removeAllViews();
+
+        // There is no window title to use, so a title is drawn as the menu's header
+        int index = 0;
+        if(title != null)
+            bindHeader(rows.get(index++), title);
+
+        for(ContextMenuModel.Item item : items) {
+            TextView row = rows.get(index++);
+
+            if(item.isHeader) {
+                bindHeader(row, item.title);
+                continue;
+            }
+
+            row.setText(item.title);
+            setRowIcon(row, item.icon);
+            row.setEnabled(true);
+            row.setAlpha(1);
+            row.setOnClickListener(v -> {
+                if(model.onItemClick(item.key, v)) dismiss();
+            });
+
+            row.setOnLongClickListener(v -> model.onItemLongClick(item.key));
+            menu.addView(row);
+        }
+    }
+
+    @Override
+    public boolean isInMultiWindowMode() {
+        return FreeformHackHelper.getInstance().isInFreeformWorkspace();
+    }
+
+    private void bindHeader(TextView row, CharSequence title) {
+        row.setText(title);
+        setRowIcon(row, null);
+        row.setEnabled(false);
+        row.setAlpha(0.6f);
+        row.setOnClickListener(null);
+        row.setOnLongClickListener(null);
+        menu.addView(row);
+    }
+
+    private void setRowIcon(TextView row, Drawable icon) {
+        if(icon != null) {
+            // Cached icons are shared, so each row draws its own copy with its own bounds
+            Drawable.ConstantState state = icon.getConstantState();
+            if(state != null) icon = state.newDrawable(context.getResources()).mutate();
+
+            int size = context.getResources().getDimensionPixelSize(R.dimen.tb_context_menu_icon_size);
+            icon.setBounds(0, 0, size, size);
+            row.setCompoundDrawablePadding(size / 2);
+        }
+
+        row.setCompoundDrawablesRelative(icon, null, null, null);
+    }
+}
@@ -27,6 +27,7 @@ import android.appwidget.AppWidgetHostView;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProviderInfo;
 import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
@@ -34,9 +35,6 @@ import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
 import android.graphics.Color;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
-import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Process;
@@ -58,19 +56,24 @@ import android.widget.Toast;
 import com.farmerbb.taskbar.R;
 import com.farmerbb.taskbar.activity.DashboardActivity;
 import com.farmerbb.taskbar.helper.LauncherHelper;
+import com.farmerbb.taskbar.helper.StartupTimingHelper;
+import com.farmerbb.taskbar.helper.TraceHelper;
 import com.farmerbb.taskbar.util.TaskbarPosition;
 import com.farmerbb.taskbar.helper.DashboardHelper;
 import com.farmerbb.taskbar.widget.DashboardCell;
 import com.farmerbb.taskbar.helper.FreeformHackHelper;
+import com.farmerbb.taskbar.util.DisplayInfo;
 import com.farmerbb.taskbar.util.U;
+import com.farmerbb.taskbar.util.WidgetPreviewCache;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.farmerbb.taskbar.util.Constants.*;
 
 public class DashboardController extends UIController {
     private AppWidgetManager appWidgetManager;
-    private AppWidgetHost appWidgetHost;
+    private DashboardWidgetHost appWidgetHost;
 
     private LinearLayout layout;
 
@@ -84,6 +87,9 @@ public class DashboardController extends UIController {
     private int maxSize;
     private int previouslySelectedCell = -1;
 
+    private boolean widgetsMaterialized = false;
+    private List<AppWidgetProviderInfo> installedProviders;
+
     private final View.OnClickListener ocl = view -> toggleDashboard();
 
     private final View.OnClickListener cellOcl = view -> cellClick(view, true);
@@ -156,14 +162,25 @@ public class DashboardController extends UIController {
     public void onCreateHost(UIHost host) {
         U.newHandler().postDelayed(() -> {
             if(U.getBooleanPrefWithDefault(context, PREF_DASHBOARD))
-                init(context, host, () -> drawDashboard(host));
+                init(context, host, () -> drawWhenIdle(() -> drawDashboard(host), toggleReceiver, ACTION_TOGGLE_DASHBOARD));
             else
                 host.terminate();
         }, 250);
     }
 
-    @SuppressLint("RtlHardcoded")
     private void drawDashboard(UIHost host) {
+        long traceToken = TraceHelper.getInstance().begin(TraceHelper.STAGE_DRAW_DASHBOARD);
+        long startupToken = StartupTimingHelper.getInstance().start();
+        try {
+            drawDashboardInternal(host);
+        } finally {
+            TraceHelper.getInstance().end(TraceHelper.STAGE_DRAW_DASHBOARD, traceToken);
+            StartupTimingHelper.getInstance().end(StartupTimingHelper.MILESTONE_DRAW_DASHBOARD, startupToken);
+        }
+    }
+
+    @SuppressLint("RtlHardcoded")
+    private void drawDashboardInternal(UIHost host) {
         final ViewParams params = new ViewParams(
                 WindowManager.LayoutParams.MATCH_PARENT,
                 WindowManager.LayoutParams.MATCH_PARENT,
@@ -178,7 +195,6 @@ public class DashboardController extends UIController {
         layout.setVisibility(View.GONE);
         layout.setAlpha(0);
 
-        SharedPreferences pref = U.getSharedPreferences(context);
         int width = U.getIntPrefWithDefault(context, PREF_DASHBOARD_WIDTH);
         int height = U.getIntPrefWithDefault(context, PREF_DASHBOARD_HEIGHT);
 
@@ -236,21 +252,14 @@ public class DashboardController extends UIController {
         }
 
         appWidgetManager = AppWidgetManager.getInstance(context);
-        appWidgetHost = new AppWidgetHost(context, APPWIDGET_HOST_ID);
-        appWidgetHost.startListening();
+        appWidgetHost = new DashboardWidgetHost(context, APPWIDGET_HOST_ID);
 
-        for(int i = 0; i < maxSize; i++) {
-            int appWidgetId = pref.getInt(PREF_DASHBOARD_WIDGET_PREFIX + i, -1);
-            if(appWidgetId != -1) {
-                addWidget(appWidgetId, i, false);
-            } else if(pref.getBoolean(generateProviderPlaceholderPrefKey(i), false)) {
-                addPlaceholder(i);
-            }
-        }
+        // Widget host views are created the first time the dashboard is shown
+        widgets.clear();
+        widgetsMaterialized = false;
+        installedProviders = null;
 
-        try {
-            appWidgetHost.stopListening();
-        } catch (Exception ignored) {}
+        prefetchPlaceholders();
 
         U.registerReceiver(context, toggleReceiver, ACTION_TOGGLE_DASHBOARD);
         U.registerReceiver(context, addWidgetReceiver, ACTION_ADD_WIDGET_COMPLETED);
@@ -376,11 +385,106 @@ public class DashboardController extends UIController {
             }
 
             previouslySelectedCell = -1;
+            installedProviders = null;
+        }
+    }
+
+    private void materializeWidgets() {
+        if(widgetsMaterialized) return;
+
+        widgetsMaterialized = true;
+
+        SharedPreferences pref = U.getSharedPreferences(context);
+        for(int i = 0; i < maxSize; i++) {
+            int appWidgetId = pref.getInt(PREF_DASHBOARD_WIDGET_PREFIX + i, -1);
+            if(appWidgetId != -1) {
+                addWidget(appWidgetId, i, false);
+            } else if(pref.getBoolean(generateProviderPlaceholderPrefKey(i), false)) {
+                addPlaceholder(i);
+            }
+        }
+    }
+
+    /**
+     * Drops every widget view while the dashboard is hidden; they are created again from the
+     * saved widget IDs the next time it is shown.
+     */
+    private void releaseWidgets() {
+        if(!widgetsMaterialized) return;
+
+        try {
+            appWidgetHost.stopListening();
+        } catch (Exception ignored) {}
+
+        appWidgetHost.releaseViews();
+
+        for(int i = 0; i < maxSize; i++) {
+            DashboardCell cellLayout = cells.get(i);
+
+            LinearLayout linearLayout = cellLayout.findViewById(R.id.dashboard);
+            linearLayout.removeAllViews();
+
+            ImageView imageView = cellLayout.findViewById(R.id.placeholder_image);
+            imageView.setImageDrawable(null);
+            cellLayout.findViewById(R.id.placeholder).setVisibility(View.GONE);
+        }
+
+        widgets.clear();
+        installedProviders = null;
+        widgetsMaterialized = false;
+    }
+
+    private void prefetchPlaceholders() {
+        SharedPreferences pref = U.getSharedPreferences(context);
+        List<ComponentName> providers = new ArrayList<>();
+
+        for(int i = 0; i < maxSize; i++) {
+            if(pref.getInt(PREF_DASHBOARD_WIDGET_PREFIX + i, -1) == -1
+                    && pref.getBoolean(generateProviderPlaceholderPrefKey(i), false)) {
+                String providerName = pref.getString(generateProviderPrefKey(i), PREF_DEFAULT_NULL);
+                if(!providerName.equals(PREF_DEFAULT_NULL))
+                    providers.add(ComponentName.unflattenFromString(providerName));
+            }
         }
+
+        DisplayInfo display = U.getDisplayInfo(context);
+        WidgetPreviewCache.getInstance(context).prefetch(context, providers,
+                getPlaceholderWidth(display), getPlaceholderHeight(display));
+    }
+
+    private int getPlaceholderWidth(DisplayInfo display) {
+        int width = display.width;
+        if(TaskbarPosition.isVertical(context))
+            width -= context.getResources().getDimensionPixelSize(R.dimen.tb_icon_size);
+
+        return getPaddedCellSize(context, width, columns);
+    }
+
+    private int getPlaceholderHeight(DisplayInfo display) {
+        int height = display.height - Math.max(0, getBottomMargin(context));
+        if(!TaskbarPosition.isVertical(context))
+            height -= context.getResources().getDimensionPixelSize(R.dimen.tb_icon_size);
+
+        return getPaddedCellSize(context, height, rows);
+    }
+
+    // The placeholder image is inset by its frame's margin and its own padding on both sides
+    @VisibleForTesting
+    int getPaddedCellSize(Context context, int size, int cellCount) {
+        int padding = context.getResources().getDimensionPixelSize(R.dimen.tb_dashboard_placeholder_padding);
+        return Math.max(1, size / Math.max(1, cellCount) - padding * 4);
+    }
+
+    private List<AppWidgetProviderInfo> getInstalledProviders() {
+        if(installedProviders == null)
+            installedProviders = appWidgetManager.getInstalledProvidersForProfile(Process.myUserHandle());
+
+        return installedProviders;
     }
 
     private void fadeIn() {
         appWidgetHost.startListening();
+        materializeWidgets();
 
         DashboardHelper.getInstance().setDashboardOpen(true);
 
@@ -431,8 +535,18 @@ public class DashboardController extends UIController {
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        if(layout != null
+                && layout.getVisibility() == View.GONE
+                && level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            releaseWidgets();
+    }
+
     @Override
     public void onDestroyHost(UIHost host) {
+        cancelDeferredDraw();
+
         if(layout != null) {
             try {
                 host.removeView(layout);
@@ -646,17 +760,21 @@ public class DashboardController extends UIController {
             ImageView imageView = placeholder.findViewById(R.id.placeholder_image);
             ComponentName componentName = ComponentName.unflattenFromString(providerName);
 
-            List<AppWidgetProviderInfo> providerInfoList = appWidgetManager.getInstalledProvidersForProfile(Process.myUserHandle());
-            for(AppWidgetProviderInfo info : providerInfoList) {
-                if(info.provider.equals(componentName)) {
-                    Drawable drawable = info.loadPreviewImage(context, -1);
-                    if(drawable == null) drawable = info.loadIcon(context, -1);
-
-                    ColorMatrix matrix = new ColorMatrix();
-                    matrix.setSaturation(0);
+            DisplayInfo display = U.getDisplayInfo(context);
+            int width = getPlaceholderWidth(display);
+            int height = getPlaceholderHeight(display);
 
-                    imageView.setImageDrawable(drawable);
-                    imageView.setColorFilter(new ColorMatrixColorFilter(matrix));
+            for(AppWidgetProviderInfo info : getInstalledProviders()) {
+                if(info.provider.equals(componentName)) {
+                    String key = WidgetPreviewCache.getKey(info.provider, width, height);
+                    imageView.setTag(key);
+                    imageView.setImageDrawable(null);
+
+                    // Previews are rendered already desaturated, off the UI thread
+                    WidgetPreviewCache.getInstance(context).loadPreview(context, info, width, height, preview -> {
+                        if(key.equals(imageView.getTag()))
+                            imageView.setImageDrawable(preview);
+                    });
                     break;
                 }
             }
@@ -664,4 +782,17 @@ public class DashboardController extends UIController {
 
         placeholder.setVisibility(View.VISIBLE);
     }
+
+    /**
+     * AppWidgetHost keeps every view it creates; clearViews() lets released widgets be collected.
+     */
+    private static class DashboardWidgetHost extends AppWidgetHost {
+        DashboardWidgetHost(Context context, int hostId) {
+            super(context, hostId);
+        }
+
+        void releaseViews() {
+            clearViews();
+        }
+    }
 }
@@ -27,12 +27,12 @@ import android.content.SharedPreferences;
 import android.content.pm.LauncherActivityInfo;
 import android.content.pm.LauncherApps;
 import android.content.pm.PackageManager;
+import android.content.pm.ShortcutInfo;
 import android.content.res.Configuration;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
 import android.os.UserHandle;
 import android.os.UserManager;
 
@@ -63,7 +63,15 @@ import com.farmerbb.taskbar.util.TaskbarPosition;
 import com.farmerbb.taskbar.util.AppEntry;
 import com.farmerbb.taskbar.util.Blacklist;
 import com.farmerbb.taskbar.helper.FreeformHackHelper;
+import com.farmerbb.taskbar.helper.StartupTimingHelper;
+import com.farmerbb.taskbar.helper.TraceHelper;
 import com.farmerbb.taskbar.util.IconCache;
+import com.farmerbb.taskbar.util.LaunchHistory;
+import com.farmerbb.taskbar.util.MemoryPolicy;
+import com.farmerbb.taskbar.util.LaunchPlanCache;
+import com.farmerbb.taskbar.util.ShortcutCache;
+import com.farmerbb.taskbar.util.ShortcutSearchIndex;
+import com.farmerbb.taskbar.util.TaskScheduler;
 import com.farmerbb.taskbar.helper.LauncherHelper;
 import com.farmerbb.taskbar.helper.MenuHelper;
 import com.farmerbb.taskbar.util.TopApps;
@@ -74,11 +82,16 @@ import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.farmerbb.taskbar.util.Constants.*;
 
-public class StartMenuController extends UIController {
+public class StartMenuController extends UIController implements MemoryPolicy.Trimmable {
+
+    private static final int MAX_SHORTCUT_RESULTS = 8;
+    private static final double FRECENCY_WEIGHT = 1.5;
 
     private StartMenuLayout layout;
     private GridView startMenu;
@@ -87,8 +100,7 @@ public class StartMenuController extends UIController {
     private PackageManager pm;
     private StartMenuAdapter adapter;
 
-    private Handler handler;
-    private Thread thread;
+    private TaskScheduler.WorkToken refreshToken;
 
     private boolean hasSubmittedQuery = false;
     private boolean hasHardwareKeyboard = false;
@@ -140,6 +152,17 @@ public class StartMenuController extends UIController {
         }
     };
 
+    private final BroadcastReceiver iconThemeChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Forgetting the current IDs makes the next refresh redraw every icon
+            currentStartMenuIds = new ArrayList<>();
+
+            String query = searchView.getQuery().toString();
+            refreshApps(query.isEmpty() ? null : query, false);
+        }
+    };
+
     private final Comparator<LauncherActivityInfo> comparator = (ai1, ai2) -> {
         String label1;
         String label2;
@@ -165,12 +188,13 @@ public class StartMenuController extends UIController {
     @Override
     public void onCreateHost(UIHost host) {
         hasHardwareKeyboard = context.getResources().getConfiguration().keyboard != Configuration.KEYBOARD_NOKEYS;
+        MemoryPolicy.getInstance(context).register(this);
 
-        init(context, host, () -> drawStartMenu(host));
+        init(context, host, () -> drawWhenIdle(() -> drawStartMenu(host), toggleReceiver, ACTION_TOGGLE_START_MENU));
     }
 
     private void drawStartMenu(UIHost host) {
-        IconCache.getInstance(context).clearCache();
+        long startupToken = StartupTimingHelper.getInstance().start();
 
         final SharedPreferences pref = U.getSharedPreferences(context);
         boolean shouldShowSearchBox = shouldShowSearchBox(pref, hasHardwareKeyboard);
@@ -346,11 +370,12 @@ public class StartMenuController extends UIController {
         U.registerReceiver(context, showSpaceReceiver, ACTION_SHOW_START_MENU_SPACE);
         U.registerReceiver(context, hideSpaceReceiver, ACTION_HIDE_START_MENU_SPACE);
         U.registerReceiver(context, resetReceiver, ACTION_RESET_START_MENU);
+        U.registerReceiver(context, iconThemeChangedReceiver, ACTION_ICON_THEME_CHANGED);
 
-        handler = U.newHandler();
         refreshApps(true);
 
         host.addView(layout, params);
+        StartupTimingHelper.getInstance().end(StartupTimingHelper.MILESTONE_DRAW_START_MENU, startupToken);
     }
 
     @VisibleForTesting
@@ -447,130 +472,235 @@ public class StartMenuController extends UIController {
     }
 
     private void refreshApps(final String query, final boolean firstDraw) {
-        if(thread != null) thread.interrupt();
+        if(refreshToken != null) refreshToken.cancel();
 
-        handler = U.newHandler();
-        thread = new Thread(() -> {
-            if(pm == null) pm = context.getPackageManager();
+        TaskScheduler.Lane lane = TaskScheduler.getInstance().lane(TaskScheduler.LANE_START_MENU);
+        refreshToken = lane.submit(token -> {
+            TraceHelper helper = TraceHelper.getInstance();
+            long traceToken = helper.begin(TraceHelper.STAGE_REFRESH_APPS);
+            try {
+                return generateStartMenuEntries(token, query, firstDraw);
+            } finally {
+                helper.end(TraceHelper.STAGE_REFRESH_APPS, traceToken);
+            }
+        }, entries -> {
+            if(entries == null) return;
+
+            String queryText = searchView.getQuery().toString();
+            if(query == null && queryText.length() == 0
+                    || query != null && query.equals(queryText)) {
+
+                if(firstDraw) {
+                    SharedPreferences pref = U.getSharedPreferences(context);
+                    if(pref.getString(PREF_START_MENU_LAYOUT, "grid").equals("grid")) {
+                        startMenu.setNumColumns(context.getResources().getInteger(R.integer.tb_start_menu_columns));
+                        adapter = new StartMenuAdapter(context, R.layout.tb_row_alt, entries);
+                    } else
+                        adapter = new StartMenuAdapter(context, R.layout.tb_row, entries);
+
+                    startMenu.setAdapter(adapter);
+                }
 
-            UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
-            LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
+                int position = startMenu.getFirstVisiblePosition();
 
-            final List<UserHandle> userHandles = userManager.getUserProfiles();
-            final List<LauncherActivityInfo> unfilteredList = new ArrayList<>();
+                if(!firstDraw && adapter != null)
+                    adapter.updateList(entries);
 
-            for(UserHandle handle : userHandles) {
-                unfilteredList.addAll(launcherApps.getActivityList(null, handle));
-            }
+                startMenu.setSelection(position);
 
-            final List<LauncherActivityInfo> topAppsList = new ArrayList<>();
-            final List<LauncherActivityInfo> allAppsList = new ArrayList<>();
-            final List<LauncherActivityInfo> list = new ArrayList<>();
-
-            TopApps topApps = TopApps.getInstance(context);
-            for(LauncherActivityInfo appInfo : unfilteredList) {
-                String userSuffix = ":" + userManager.getSerialNumberForUser(appInfo.getUser());
-                if(topApps.isTopApp(appInfo.getComponentName().flattenToString() + userSuffix)
-                        || topApps.isTopApp(appInfo.getComponentName().flattenToString())
-                        || topApps.isTopApp(appInfo.getName()))
-                    topAppsList.add(appInfo);
+                if(adapter != null && adapter.getCount() > 0)
+                    textView.setText(null);
+                else if(query != null)
+                    textView.setText(context.getString(Patterns.WEB_URL.matcher(query).matches() ? R.string.tb_press_enter_alt : R.string.tb_press_enter));
+                else
+                    textView.setText(context.getString(R.string.tb_nothing_to_see_here));
             }
+        });
+    }
 
-            Blacklist blacklist = Blacklist.getInstance(context);
-            for(LauncherActivityInfo appInfo : unfilteredList) {
-                String userSuffix = ":" + userManager.getSerialNumberForUser(appInfo.getUser());
-                if(!(blacklist.isBlocked(appInfo.getComponentName().flattenToString() + userSuffix)
-                        || blacklist.isBlocked(appInfo.getComponentName().flattenToString())
-                        || blacklist.isBlocked(appInfo.getName()))
-                        && !(topApps.isTopApp(appInfo.getComponentName().flattenToString() + userSuffix)
-                        || topApps.isTopApp(appInfo.getComponentName().flattenToString())
-                        || topApps.isTopApp(appInfo.getName())))
-                    allAppsList.add(appInfo);
-            }
+    /**
+     * Returns the entries to show in the start menu, or null if the menu doesn't need redrawing.
+     */
+    private List<AppEntry> generateStartMenuEntries(TaskScheduler.WorkToken token, String query, boolean firstDraw) {
+        if(pm == null) pm = context.getPackageManager();
 
-            Collections.sort(topAppsList, comparator);
-            Collections.sort(allAppsList, comparator);
+        UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
+        LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
 
-            list.addAll(topAppsList);
-            list.addAll(allAppsList);
+        final List<UserHandle> userHandles = userManager.getUserProfiles();
+        final List<LauncherActivityInfo> unfilteredList = new ArrayList<>();
 
-            topAppsList.clear();
-            allAppsList.clear();
+        for(UserHandle handle : userHandles) {
+            unfilteredList.addAll(launcherApps.getActivityList(null, handle));
+        }
 
-            List<LauncherActivityInfo> queryList;
-            if(query == null)
-                queryList = list;
-            else {
-                queryList = new ArrayList<>();
-                for(LauncherActivityInfo appInfo : list) {
-                    if(appInfo.getLabel().toString().toLowerCase().contains(query.toLowerCase()))
-                        queryList.add(appInfo);
-                }
+        token.throwIfCancelled();
+
+        final List<LauncherActivityInfo> topAppsList = new ArrayList<>();
+        final List<LauncherActivityInfo> allAppsList = new ArrayList<>();
+        final List<LauncherActivityInfo> list = new ArrayList<>();
+
+        TopApps topApps = TopApps.getInstance(context);
+        for(LauncherActivityInfo appInfo : unfilteredList) {
+            String userSuffix = ":" + userManager.getSerialNumberForUser(appInfo.getUser());
+            if(topApps.isTopApp(appInfo.getComponentName().flattenToString() + userSuffix)
+                    || topApps.isTopApp(appInfo.getComponentName().flattenToString())
+                    || topApps.isTopApp(appInfo.getName()))
+                topAppsList.add(appInfo);
+        }
+
+        Blacklist blacklist = Blacklist.getInstance(context);
+        for(LauncherActivityInfo appInfo : unfilteredList) {
+            String userSuffix = ":" + userManager.getSerialNumberForUser(appInfo.getUser());
+            if(!(blacklist.isBlocked(appInfo.getComponentName().flattenToString() + userSuffix)
+                    || blacklist.isBlocked(appInfo.getComponentName().flattenToString())
+                    || blacklist.isBlocked(appInfo.getName()))
+                    && !(topApps.isTopApp(appInfo.getComponentName().flattenToString() + userSuffix)
+                    || topApps.isTopApp(appInfo.getComponentName().flattenToString())
+                    || topApps.isTopApp(appInfo.getName())))
+                allAppsList.add(appInfo);
+        }
+
+        Collections.sort(topAppsList, comparator);
+        Collections.sort(allAppsList, comparator);
+
+        list.addAll(topAppsList);
+        list.addAll(allAppsList);
+
+        topAppsList.clear();
+        allAppsList.clear();
+
+        token.throwIfCancelled();
+
+        List<LauncherActivityInfo> queryList;
+        if(query == null)
+            queryList = list;
+        else {
+            queryList = new ArrayList<>();
+            for(LauncherActivityInfo appInfo : list) {
+                if(appInfo.getLabel().toString().toLowerCase().contains(query.toLowerCase()))
+                    queryList.add(appInfo);
             }
+        }
 
-            // Now that we've generated the list of apps,
-            // we need to determine if we need to redraw the start menu or not
-            boolean shouldRedrawStartMenu = false;
-            List<String> finalApplicationIds = new ArrayList<>();
+        // Now that we've generated the list of apps,
+        // we need to determine if we need to redraw the start menu or not
+        boolean shouldRedrawStartMenu = false;
+        List<String> finalApplicationIds = new ArrayList<>();
 
-            if(query == null && !firstDraw) {
-                for(LauncherActivityInfo appInfo : queryList) {
-                    finalApplicationIds.add(appInfo.getApplicationInfo().packageName);
-                }
+        if(query == null && !firstDraw) {
+            for(LauncherActivityInfo appInfo : queryList) {
+                finalApplicationIds.add(appInfo.getApplicationInfo().packageName);
+            }
 
-                if(finalApplicationIds.size() != currentStartMenuIds.size())
-                    shouldRedrawStartMenu = true;
-                else {
-                    for(int i = 0; i < finalApplicationIds.size(); i++) {
-                        if(!finalApplicationIds.get(i).equals(currentStartMenuIds.get(i))) {
-                            shouldRedrawStartMenu = true;
-                            break;
-                        }
+            if(finalApplicationIds.size() != currentStartMenuIds.size())
+                shouldRedrawStartMenu = true;
+            else {
+                for(int i = 0; i < finalApplicationIds.size(); i++) {
+                    if(!finalApplicationIds.get(i).equals(currentStartMenuIds.get(i))) {
+                        shouldRedrawStartMenu = true;
+                        break;
                     }
                 }
-            } else shouldRedrawStartMenu = true;
+            }
+        } else shouldRedrawStartMenu = true;
 
-            if(shouldRedrawStartMenu) {
-                if(query == null) currentStartMenuIds = finalApplicationIds;
+        if(!shouldRedrawStartMenu) return null;
 
-                final List<AppEntry> entries =
-                        generateAppEntries(context, userManager, pm, queryList);
+        token.throwIfCancelled();
+        if(query == null) currentStartMenuIds = finalApplicationIds;
 
-                handler.post(() -> {
-                    String queryText = searchView.getQuery().toString();
-                    if(query == null && queryText.length() == 0
-                            || query != null && query.equals(queryText)) {
+        List<AppEntry> entries = generateAppEntries(context, userManager, pm, queryList);
+        if(query == null) {
+            LaunchPlanCache.getInstance().prefetch(context, entries);
+            ShortcutCache.getInstance().prefetch(context, entries);
+        } else {
+            token.throwIfCancelled();
+            entries = rankSearchResults(context, userManager, pm, query, list, entries);
+        }
 
-                        if(firstDraw) {
-                            SharedPreferences pref = U.getSharedPreferences(context);
-                            if(pref.getString(PREF_START_MENU_LAYOUT, "grid").equals("grid")) {
-                                startMenu.setNumColumns(context.getResources().getInteger(R.integer.tb_start_menu_columns));
-                                adapter = new StartMenuAdapter(context, R.layout.tb_row_alt, entries);
-                            } else
-                                adapter = new StartMenuAdapter(context, R.layout.tb_row, entries);
+        return entries;
+    }
 
-                            startMenu.setAdapter(adapter);
-                        }
+    /**
+     * Merges matching apps and app shortcuts into one list, ranked by how well their labels
+     * match the query and by how often and how recently they have been launched.
+     * Apps are listed before shortcuts that rank equally.
+     */
+    private List<AppEntry> rankSearchResults(Context context,
+                                             UserManager userManager,
+                                             PackageManager pm,
+                                             String query,
+                                             List<LauncherActivityInfo> list,
+                                             List<AppEntry> appEntries) {
+        List<AppEntry> entries = new ArrayList<>(appEntries);
+        Map<AppEntry, Integer> matchQuality = new HashMap<>();
+
+        String normalizedQuery = ShortcutSearchIndex.normalize(query);
+        for(AppEntry entry : appEntries) {
+            matchQuality.put(entry, ShortcutSearchIndex.getMatchQuality(
+                    ShortcutSearchIndex.normalize(entry.getLabel()), normalizedQuery));
+        }
 
-                        int position = startMenu.getFirstVisiblePosition();
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N_MR1) {
+            Map<String, LauncherActivityInfo> apps = new HashMap<>();
+            for(LauncherActivityInfo appInfo : list) {
+                apps.put(ShortcutSearchIndex.getActivityKey(appInfo.getComponentName().flattenToString(),
+                        userManager.getSerialNumberForUser(appInfo.getUser())), appInfo);
+            }
 
-                        if(!firstDraw && adapter != null)
-                            adapter.updateList(entries);
+            List<ShortcutSearchIndex.Result> shortcutResults =
+                    ShortcutSearchIndex.getInstance().search(query, apps.keySet(), MAX_SHORTCUT_RESULTS);
 
-                        startMenu.setSelection(position);
+            for(ShortcutSearchIndex.Result result : shortcutResults) {
+                AppEntry entry = generateShortcutEntry(context, userManager, pm,
+                        result.getShortcut(), apps.get(result.getActivityKey()));
 
-                        if(adapter != null && adapter.getCount() > 0)
-                            textView.setText(null);
-                        else if(query != null)
-                            textView.setText(context.getString(Patterns.WEB_URL.matcher(query).matches() ? R.string.tb_press_enter_alt : R.string.tb_press_enter));
-                        else
-                            textView.setText(context.getString(R.string.tb_nothing_to_see_here));
-                    }
-                });
+                entries.add(entry);
+                matchQuality.put(entry, result.getMatchQuality());
             }
-        });
+        }
+
+        LaunchHistory history = LaunchHistory.getInstance(context);
+        Map<AppEntry, Double> rank = new HashMap<>();
+        for(AppEntry entry : entries) {
+            rank.put(entry, getSearchRank(matchQuality.get(entry), history.getScore(entry)));
+        }
 
-        thread.start();
+        // The sort is stable, so apps stay ahead of shortcuts and keep their usual order on ties
+        Collections.sort(entries, (e1, e2) -> Double.compare(rank.get(e2), rank.get(e1)));
+        return entries;
+    }
+
+    /**
+     * Combines match quality with a launch frecency score. Frecency is scaled into
+     * [0, FRECENCY_WEIGHT), so a frequently used app can move up one match quality tier
+     * but never two.
+     */
+    @VisibleForTesting
+    static double getSearchRank(int matchQuality, double frecency) {
+        return matchQuality + FRECENCY_WEIGHT * frecency / (frecency + 1);
+    }
+
+    @TargetApi(Build.VERSION_CODES.N_MR1)
+    private AppEntry generateShortcutEntry(Context context,
+                                           UserManager userManager,
+                                           PackageManager pm,
+                                           ShortcutInfo shortcut,
+                                           LauncherActivityInfo appInfo) {
+        Drawable icon = ShortcutCache.getInstance().getIcon(shortcut);
+        if(icon == null) icon = IconCache.getInstance(context).getIcon(context, pm, appInfo);
+
+        AppEntry entry = new AppEntry(
+                shortcut.getPackage(),
+                appInfo.getComponentName().flattenToString(),
+                shortcut.getShortLabel().toString(),
+                icon,
+                false);
+
+        entry.setUserId(userManager.getSerialNumberForUser(appInfo.getUser()));
+        entry.setShortcut(shortcut);
+        return entry;
     }
 
     @VisibleForTesting
@@ -613,8 +743,17 @@ public class StartMenuController extends UIController {
             hideStartMenu(true);
     }
 
-    @TargetApi(Build.VERSION_CODES.N)
     private void showStartMenu() {
+        long traceToken = TraceHelper.getInstance().begin(TraceHelper.STAGE_SHOW_START_MENU);
+        try {
+            showStartMenuInternal();
+        } finally {
+            TraceHelper.getInstance().end(TraceHelper.STAGE_SHOW_START_MENU, traceToken);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private void showStartMenuInternal() {
         if(layout.getVisibility() == View.GONE) {
             layout.setOnClickListener(ocl);
             layout.setVisibility(View.VISIBLE);
@@ -735,6 +874,8 @@ public class StartMenuController extends UIController {
 
     @Override
     public void onDestroyHost(UIHost host) {
+        cancelDeferredDraw();
+
         if(layout != null)
             try {
                 host.removeView(layout);
@@ -746,10 +887,32 @@ public class StartMenuController extends UIController {
         U.unregisterReceiver(context, showSpaceReceiver);
         U.unregisterReceiver(context, hideSpaceReceiver);
         U.unregisterReceiver(context, resetReceiver);
+        U.unregisterReceiver(context, iconThemeChangedReceiver);
+
+        if(refreshToken != null) refreshToken.cancel();
 
+        MemoryPolicy.getInstance(context).unregister(this);
         U.sendBroadcast(context, ACTION_START_MENU_DISAPPEARING);
     }
 
+    @Override
+    public void trimMemory(int tier) {
+        if(adapter == null || tier < MemoryPolicy.TIER_SHRINK_MORE) return;
+
+        // Icons for rows that are on screen stay; the adapter loads the rest again when they're scrolled to
+        int first = 0;
+        int last = -1;
+        if(layout != null && layout.getVisibility() == View.VISIBLE) {
+            first = startMenu.getFirstVisiblePosition();
+            last = startMenu.getLastVisiblePosition();
+        }
+
+        for(int i = 0; i < adapter.getCount(); i++) {
+            if(i < first || i > last)
+                adapter.getItem(i).releaseIcon();
+        }
+    }
+
     @TargetApi(Build.VERSION_CODES.M)
     @Override
     public void onRecreateHost(UIHost host) {
@@ -778,7 +941,7 @@ public class StartMenuController extends UIController {
         args.putInt("x", location[0]);
         args.putInt("y", location[1]);
 
-        U.newHandler().postDelayed(() -> U.startContextMenuActivity(context, args), shouldDelay() ? 100 : 0);
+        U.startContextMenuActivity(context, args, shouldDelay() ? 100 : 0);
     }
 
     private boolean shouldDelay() {
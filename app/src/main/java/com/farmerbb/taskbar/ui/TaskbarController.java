@@ -34,13 +34,18 @@ import android.content.pm.LauncherActivityInfo;
 import android.content.pm.LauncherApps;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.Point;
 import android.graphics.Typeface;
+import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
+import android.net.NetworkRequest;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.os.BatteryManager;
@@ -69,6 +74,7 @@ import android.view.MotionEvent;
 import android.view.PointerIcon;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.Button;
@@ -98,9 +104,15 @@ import com.farmerbb.taskbar.util.TaskbarPosition;
 import com.farmerbb.taskbar.util.AppEntry;
 import com.farmerbb.taskbar.util.DisplayInfo;
 import com.farmerbb.taskbar.helper.FreeformHackHelper;
+import com.farmerbb.taskbar.helper.StartupTimingHelper;
+import com.farmerbb.taskbar.helper.TraceHelper;
 import com.farmerbb.taskbar.util.IconCache;
+import com.farmerbb.taskbar.util.LaunchPlanCache;
+import com.farmerbb.taskbar.util.TaskScheduler;
+import com.farmerbb.taskbar.util.TaskbarSnapshot;
 import com.farmerbb.taskbar.helper.LauncherHelper;
 import com.farmerbb.taskbar.util.PinnedBlockedApps;
+import com.farmerbb.taskbar.util.ShortcutCache;
 import com.farmerbb.taskbar.helper.MenuHelper;
 import com.farmerbb.taskbar.util.U;
 
@@ -123,19 +135,20 @@ public class TaskbarController extends UIController {
     private TextView notificationCountText;
 
     private Handler handler;
-    private Handler handler2;
-    private Thread thread;
-    private Thread thread2;
+    private TaskScheduler.WorkToken refreshToken;
+    private TaskScheduler.Lane refreshLane;
+    private ContextMenuOverlay contextMenuOverlay;
 
     private boolean isShowingRecents = true;
     private boolean shouldRefreshRecents = true;
     private boolean taskbarShownTemporarily = false;
     private boolean taskbarHiddenTemporarily = false;
-    private boolean isRefreshingRecents = false;
     private boolean isFirstStart = true;
 
-    private boolean startThread2 = false;
-    private boolean stopThread2 = false;
+    private boolean monitoringPositionChanges = false;
+    private boolean positionCheckPending = false;
+    private int navBarSize = -1;
+    private View.OnApplyWindowInsetsListener marginFixListener;
 
     private int refreshInterval = -1;
     private long searchInterval = -1;
@@ -151,8 +164,14 @@ public class TaskbarController extends UIController {
 
     private List<String> currentTaskbarIds = new ArrayList<>();
     private int numOfPinnedApps = -1;
+    private boolean shouldRestoreSnapshot = false;
 
     private int cellStrength = -1;
+    private boolean sysTrayIndicatorsRegistered = false;
+    private final Map<Integer, Integer> sysTrayIconIds = new HashMap<>();
+    private String currentClockText;
+    private java.text.DateFormat timeFormat;
+    private java.text.DateFormat dateFormat;
     private int notificationCount = 0;
     private int numOfSysTrayIcons = 0;
 
@@ -209,10 +228,25 @@ public class TaskbarController extends UIController {
         }
     };
 
+    private final BroadcastReceiver iconThemeChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Forgetting the current IDs makes the next refresh redraw every icon
+            getLane().execute(() -> {
+                currentTaskbarIds = new ArrayList<>();
+                updateRecentApps(false);
+            });
+        }
+    };
+
     private final BroadcastReceiver notificationCountReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            notificationCount = intent.getIntExtra(EXTRA_COUNT, 0);
+            int count = intent.getIntExtra(EXTRA_COUNT, 0);
+            if(count != notificationCount) {
+                notificationCount = count;
+                updateNotificationCountIndicator();
+            }
         }
     };
 
@@ -220,26 +254,100 @@ public class TaskbarController extends UIController {
     private final PhoneStateListener listener = new PhoneStateListener() {
         @Override
         public void onSignalStrengthsChanged(SignalStrength signalStrength) {
+            int strength;
             try {
-                cellStrength = signalStrength.getLevel();
+                strength = signalStrength.getLevel();
             } catch (SecurityException e) {
-                cellStrength = -1;
+                strength = -1;
             }
+
+            if(strength != cellStrength) {
+                cellStrength = strength;
+                updateCellularIndicator();
+            }
+        }
+    };
+
+    private final BroadcastReceiver batteryReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            updateBatteryIndicator(intent);
+        }
+    };
+
+    private final BroadcastReceiver sysTrayStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if(intent.getAction() == null) return;
+
+            switch(intent.getAction()) {
+                case BluetoothAdapter.ACTION_STATE_CHANGED:
+                    updateBluetoothIndicator();
+                    break;
+                case Intent.ACTION_AIRPLANE_MODE_CHANGED:
+                    updateCellularIndicator();
+                    break;
+                case WifiManager.RSSI_CHANGED_ACTION:
+                    updateWifiIndicator();
+                    break;
+                case Intent.ACTION_TIME_CHANGED:
+                case Intent.ACTION_TIMEZONE_CHANGED:
+                case Intent.ACTION_LOCALE_CHANGED:
+                    timeFormat = null;
+                    dateFormat = null;
+                    updateClock();
+                    break;
+                case Intent.ACTION_TIME_TICK:
+                    updateClock();
+                    break;
+            }
+        }
+    };
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            U.newHandler().post(() -> updateWifiIndicator());
+        }
+
+        @Override
+        public void onLost(Network network) {
+            U.newHandler().post(() -> updateWifiIndicator());
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+            U.newHandler().post(() -> updateWifiIndicator());
         }
     };
 
+    private final ViewTreeObserver.OnGlobalLayoutListener positionListener = this::schedulePositionCheck;
+
     public TaskbarController(Context context) {
         super(context);
     }
 
     @Override
     public void onCreateHost(UIHost host) {
-        init(context, host, () -> drawTaskbar(host));
+        init(context, host, () -> {
+            long startupToken = StartupTimingHelper.getInstance().start();
+            drawTaskbar(host);
+            StartupTimingHelper.getInstance().end(StartupTimingHelper.MILESTONE_DRAW_TASKBAR, startupToken);
+        });
     }
 
-    private void drawTaskbar(UIHost host) {
-        IconCache.getInstance(context).clearCache();
+    /**
+     * Each display's taskbar refreshes on its own lane, so one taskbar's work never waits behind another's.
+     */
+    private TaskScheduler.Lane getLane() {
+        if(refreshLane == null)
+            refreshLane = TaskScheduler.getInstance().lane(TaskScheduler.LANE_TASKBAR + "_" + U.getTaskbarDisplayID(context));
+
+        return refreshLane;
+    }
 
+    private void drawTaskbar(UIHost host) {
         // Initialize layout params
         WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
         TaskbarPosition.setCachedRotation(windowManager.getDefaultDisplay().getRotation());
@@ -339,7 +447,8 @@ public class TaskbarController extends UIController {
         );
         button.setTextColor(accentColor);
 
-        applyMarginFix(host, layout, params);
+        marginFixListener = applyMarginFix(host, layout, params);
+        shouldRestoreSnapshot = true;
 
         if(isFirstStart && FreeformHackHelper.getInstance().isInFreeformWorkspace())
             showTaskbar(false);
@@ -361,10 +470,12 @@ public class TaskbarController extends UIController {
         U.registerReceiver(context, tempHideReceiver, ACTION_TEMP_HIDE_TASKBAR);
         U.registerReceiver(context, startMenuAppearReceiver, ACTION_START_MENU_APPEARING);
         U.registerReceiver(context, startMenuDisappearReceiver, ACTION_START_MENU_DISAPPEARING);
+        U.registerReceiver(context, iconThemeChangedReceiver, ACTION_ICON_THEME_CHANGED);
+
+        stopSystemTrayIndicators();
 
         if(sysTrayEnabled) {
-            TelephonyManager manager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
-            manager.listen(listener, PhoneStateListener.LISTEN_SIGNAL_STRENGTHS);
+            startSystemTrayIndicators();
 
             U.registerReceiver(context, notificationCountReceiver, ACTION_NOTIFICATION_COUNT_CHANGED);
             U.sendBroadcast(context, ACTION_REQUEST_NOTIFICATION_COUNT);
@@ -392,6 +503,9 @@ public class TaskbarController extends UIController {
 
         host.addView(layout, params);
 
+        if(contextMenuOverlay != null) contextMenuOverlay.destroy();
+        contextMenuOverlay = host instanceof UIHostService ? new ContextMenuOverlay(context, host) : null;
+
         isFirstStart = false;
     }
 
@@ -471,7 +585,8 @@ public class TaskbarController extends UIController {
                 padding = context.getResources().getDimensionPixelSize(R.dimen.tb_app_drawer_icon_padding_alt);
                 break;
             case PREF_START_BUTTON_IMAGE_CUSTOM:
-                U.applyCustomImage(context, "custom_image", startButton, allAppsIcon);
+                int iconSize = context.getResources().getDimensionPixelSize(R.dimen.tb_icon_size);
+                U.applyCustomImage(context, "custom_image", startButton, allAppsIcon, iconSize, iconSize);
                 padding = context.getResources().getDimensionPixelSize(R.dimen.tb_app_drawer_icon_padding);
                 break;
         }
@@ -735,64 +850,125 @@ public class TaskbarController extends UIController {
         sysTrayIconStates.put(R.id.notification_count, false);
     }
 
+    // The taskbar window is pushed up when the keyboard appears, so watch for layout and
+    // insets changes instead of polling the window position
+    @VisibleForTesting
+    void watchPositionChanges() {
+        if(layout == null) return;
+
+        navBarSize = -1;
+
+        layout.getViewTreeObserver().removeOnGlobalLayoutListener(positionListener);
+        layout.setOnApplyWindowInsetsListener(marginFixListener);
+
+        if(!showHideAutomagically || positionIsVertical) return;
+
+        layout.getViewTreeObserver().addOnGlobalLayoutListener(positionListener);
+        layout.setOnApplyWindowInsetsListener((v, insets) -> {
+            // The navigation bar can appear or disappear along with the insets
+            navBarSize = -1;
+            schedulePositionCheck();
+
+            return marginFixListener != null
+                    ? marginFixListener.onApplyWindowInsets(v, insets)
+                    : v.onApplyWindowInsets(insets);
+        });
+    }
+
+    // Not every window move comes with a layout or insets pass, so recheck the position
+    // whenever the configuration changes as well
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        navBarSize = -1;
+        schedulePositionCheck();
+    }
+
+    private void schedulePositionCheck() {
+        if(positionCheckPending) return;
+
+        positionCheckPending = true;
+        U.newHandler().post(() -> {
+            positionCheckPending = false;
+            onPositionChanged();
+        });
+    }
+
+    private void onPositionChanged() {
+        if(!showHideAutomagically || positionIsVertical || layout == null || isScreenOff())
+            return;
+
+        if(monitoringPositionChanges) {
+            if(checkPositionChange()) monitoringPositionChanges = false;
+            return;
+        }
+
+        if(MenuHelper.getInstance().isStartMenuOpen()) return;
+
+        int[] location = new int[2];
+        layout.getLocationOnScreen(location);
+
+        if(location[1] != 0) {
+            if(location[1] > currentTaskbarPosition) {
+                currentTaskbarPosition = location[1];
+            } else if(location[1] < currentTaskbarPosition) {
+                if(currentTaskbarPosition - location[1] == getNavBarSize())
+                    currentTaskbarPosition = location[1];
+                else
+                    tempHideTaskbar(true);
+            }
+        }
+    }
+
     private void startRefreshingRecents() {
-        if(thread != null) thread.interrupt();
-        stopThread2 = true;
+        if(refreshToken != null) refreshToken.cancel();
+        monitoringPositionChanges = false;
 
         SharedPreferences pref = U.getSharedPreferences(context);
         showHideAutomagically = pref.getBoolean(PREF_HIDE_WHEN_KEYBOARD_SHOWN, false);
 
+        watchPositionChanges();
+
         currentTaskbarIds.clear();
 
-        handler = U.newHandler();
-        thread = new Thread(() -> {
-            updateRecentApps(true);
-
-            if(!isRefreshingRecents) {
-                isRefreshingRecents = true;
-
-                while(shouldRefreshRecents) {
-                    updateRecentApps(false);
-
-                    if(showHideAutomagically && !positionIsVertical && !MenuHelper.getInstance().isStartMenuOpen()) {
-                        handler.post(() -> {
-                            if(layout != null) {
-                                int[] location = new int[2];
-                                layout.getLocationOnScreen(location);
-
-                                if(location[1] != 0) {
-                                    if(location[1] > currentTaskbarPosition) {
-                                        currentTaskbarPosition = location[1];
-                                    } else if(location[1] < currentTaskbarPosition) {
-                                        if(currentTaskbarPosition - location[1] == getNavBarSize())
-                                            currentTaskbarPosition = location[1];
-                                        else if(!startThread2) {
-                                            startThread2 = true;
-                                            tempHideTaskbar(true);
-                                        }
-                                    }
-                                }
-                            }
-                        });
-                    }
+        boolean restoreSnapshot = shouldRestoreSnapshot;
+        shouldRestoreSnapshot = false;
 
-                    SystemClock.sleep(refreshInterval);
-                }
+        handler = U.newHandler();
 
-                isRefreshingRecents = false;
-            }
+        TaskScheduler.Lane lane = getLane();
+        TaskScheduler.WorkToken token = lane.execute(() -> {
+            // Start from the apps shown when the taskbar was last drawn, if there are any;
+            // the next refresh then only redraws what has changed
+            if(!restoreSnapshot || !restoreSnapshot()) updateRecentApps(true);
         });
+        refreshToken = token;
 
-        thread.start();
+        scheduleRecentsRefresh(lane, token, 0);
+    }
+
+    private void scheduleRecentsRefresh(TaskScheduler.Lane lane, TaskScheduler.WorkToken token, long delay) {
+        lane.schedule(token, () -> {
+            if(!shouldRefreshRecents) return;
+
+            updateRecentApps(false);
+            scheduleRecentsRefresh(lane, token, refreshInterval);
+        }, delay);
+    }
+
+    private void updateRecentApps(final boolean firstRefresh) {
+        long traceToken = TraceHelper.getInstance().begin(TraceHelper.STAGE_UPDATE_RECENT_APPS);
+        try {
+            updateRecentAppsInternal(firstRefresh);
+        } finally {
+            TraceHelper.getInstance().end(TraceHelper.STAGE_UPDATE_RECENT_APPS, traceToken);
+        }
     }
 
     @SuppressWarnings("Convert2streamapi")
     @TargetApi(Build.VERSION_CODES.LOLLIPOP_MR1)
-    private void updateRecentApps(final boolean firstRefresh) {
+    private void updateRecentAppsInternal(final boolean firstRefresh) {
         if(isScreenOff()) return;
 
-        updateSystemTray();
-
         SharedPreferences pref = U.getSharedPreferences(context);
         final PackageManager pm = context.getPackageManager();
         final List<AppEntry> entries = new ArrayList<>();
@@ -933,12 +1109,16 @@ public class TaskbarController extends UIController {
                 }
             }
 
+            saveSnapshotIfChanged(entries, launcherAppCache, realNumOfPinnedApps);
+
             if(shouldRedrawTaskbar) {
                 currentTaskbarIds = finalApplicationIds;
                 numOfPinnedApps = realNumOfPinnedApps;
                 numOfSysTrayIcons = realNumOfSysTrayIcons;
 
                 populateAppEntries(context, pm, entries, launcherAppCache);
+                LaunchPlanCache.getInstance().prefetch(context, entries);
+                ShortcutCache.getInstance().prefetch(context, entries);
 
                 final int numOfEntries = Math.min(entries.size(), maxNumOfEntries);
 
@@ -962,7 +1142,7 @@ public class TaskbarController extends UIController {
                         if(runningAppsOnly)
                             updateRunningAppIndicators(pinnedApps, usageStatsList, entries);
 
-                        isShowingRecents = true;
+                        onRecentAppsShown();
                         if(shouldRefreshRecents && scrollView.getVisibility() != View.VISIBLE) {
                             if(firstRefresh)
                                 scrollView.setVisibility(View.INVISIBLE);
@@ -988,15 +1168,169 @@ public class TaskbarController extends UIController {
                 });
             } else if(runningAppsOnly)
                 handler.post(() -> updateRunningAppIndicators(pinnedApps, usageStatsList, entries));
-        } else if(firstRefresh || currentTaskbarIds.size() > 0) {
-            currentTaskbarIds.clear();
-            handler.post(() -> {
-                isShowingRecents = false;
-                scrollView.setVisibility(View.GONE);
-            });
+        } else {
+            saveSnapshotIfChanged(new ArrayList<>(), new ArrayList<>(), 0);
+
+            if(firstRefresh || currentTaskbarIds.size() > 0) {
+                currentTaskbarIds.clear();
+
+                handler.post(() -> {
+                    isShowingRecents = false;
+                    scrollView.setVisibility(View.GONE);
+                });
+            }
         }
     }
 
+    /**
+     * Shows the apps that were on the taskbar when it was last drawn, so that it isn't empty
+     * until the first full refresh finishes. Runs on the taskbar lane; icons that are no longer
+     * cached are drawn blank at first and filled in as they load.
+     */
+    @VisibleForTesting
+    boolean restoreSnapshot() {
+        List<TaskbarSnapshot.Entry> snapshot = TaskbarSnapshot.load(context, getDisplayId());
+        if(snapshot.isEmpty() || snapshot.size() > U.getMaxNumOfEntries(context)) return false;
+
+        IconCache iconCache = IconCache.getInstance(context);
+        List<AppEntry> entries = new ArrayList<>();
+        List<Integer> missingIcons = new ArrayList<>();
+        List<String> applicationIds = new ArrayList<>();
+        int pinnedApps = 0;
+
+        for(int i = 0; i < snapshot.size(); i++) {
+            TaskbarSnapshot.Entry snapshotEntry = snapshot.get(i);
+            Drawable icon = iconCache.getCachedIcon(snapshotEntry.iconKey);
+            if(icon == null) {
+                icon = new ColorDrawable(Color.TRANSPARENT);
+                missingIcons.add(i);
+            }
+
+            AppEntry entry = new AppEntry(
+                    snapshotEntry.packageName,
+                    snapshotEntry.componentName,
+                    snapshotEntry.label,
+                    icon,
+                    false);
+
+            entry.setUserId(snapshotEntry.userId);
+            entries.add(entry);
+            applicationIds.add(snapshotEntry.packageName);
+
+            if(snapshotEntry.pinned) pinnedApps++;
+        }
+
+        currentTaskbarIds = applicationIds;
+        numOfPinnedApps = pinnedApps;
+
+        List<ImageView> iconViews = new ArrayList<>();
+        handler.post(() -> {
+            SharedPreferences pref = U.getSharedPreferences(context);
+            ViewGroup.LayoutParams params = scrollView.getLayoutParams();
+            calculateScrollViewParams(context, pref, params, pref.getBoolean(PREF_FULL_LENGTH, true), entries.size());
+            scrollView.setLayoutParams(params);
+
+            taskbar.removeAllViews();
+            for(int i = 0; i < entries.size(); i++) {
+                View view = getView(entries, i);
+                iconViews.add(view.findViewById(R.id.icon));
+                taskbar.addView(view);
+            }
+
+            onRecentAppsShown();
+            if(shouldRefreshRecents && scrollView.getVisibility() != View.VISIBLE)
+                scrollView.setVisibility(View.INVISIBLE);
+
+            U.newHandler().post(
+                    () -> scrollTaskbar(
+                            scrollView,
+                            taskbar,
+                            TaskbarPosition.getTaskbarPosition(context),
+                            sortOrder,
+                            shouldRefreshRecents
+                    )
+            );
+        });
+
+        for(int index : missingIcons) {
+            AppEntry entry = entries.get(index);
+            AppEntry iconLoader = new AppEntry(
+                    entry.getPackageName(),
+                    entry.getComponentName(),
+                    entry.getLabel(),
+                    null,
+                    false);
+
+            iconLoader.setUserId(entry.getUserId(context));
+            Drawable icon = iconLoader.getIcon(context);
+            handler.post(() -> iconViews.get(index).setImageDrawable(icon));
+        }
+
+        return true;
+    }
+
+    // Only the first call after startup is recorded, whether it comes from a refresh or a snapshot
+    private void onRecentAppsShown() {
+        isShowingRecents = true;
+        StartupTimingHelper.getInstance().mark(StartupTimingHelper.MILESTONE_FIRST_RECENT_APPS);
+    }
+
+    /**
+     * Saves the given entries as the taskbar's snapshot if they differ from the last saved one.
+     * Entries that haven't been populated yet take their component and label from
+     * launcherAppCache, in the same order as populateAppEntries() does, without loading icons.
+     */
+    @VisibleForTesting
+    boolean saveSnapshotIfChanged(List<AppEntry> entries,
+                                  List<LauncherActivityInfo> launcherAppCache,
+                                  int realNumOfPinnedApps) {
+        UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
+        boolean isVertical = TaskbarPosition.isVertical(context);
+        int iconSize = IconCache.getIconSize(context);
+        List<TaskbarSnapshot.Entry> snapshot = new ArrayList<>();
+        int launcherAppCachePos = -1;
+
+        for(int i = 0; i < entries.size(); i++) {
+            AppEntry entry = entries.get(i);
+            String componentName = entry.getComponentName();
+            String label = entry.getLabel();
+            long userId = entry.getUserId(context);
+
+            if(componentName == null) {
+                launcherAppCachePos++;
+                if(launcherAppCachePos >= launcherAppCache.size()) return false;
+
+                LauncherActivityInfo appInfo = launcherAppCache.get(launcherAppCachePos);
+                componentName = appInfo.getComponentName().flattenToString();
+                label = appInfo.getLabel().toString();
+                userId = userManager.getSerialNumberForUser(appInfo.getUser());
+            }
+
+            boolean pinned = isVertical
+                    ? i >= entries.size() - realNumOfPinnedApps
+                    : i < realNumOfPinnedApps;
+
+            snapshot.add(new TaskbarSnapshot.Entry(
+                    entry.getPackageName(),
+                    componentName,
+                    label == null ? "" : label,
+                    userId,
+                    pinned,
+                    IconCache.getIconKey(componentName, userId, iconSize)));
+        }
+
+        int displayId = getDisplayId();
+        if(snapshot.equals(TaskbarSnapshot.load(context, displayId))) return false;
+
+        TaskbarSnapshot.save(context, displayId, snapshot);
+        return true;
+    }
+
+    private int getDisplayId() {
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        return windowManager.getDefaultDisplay().getDisplayId();
+    }
+
     @VisibleForTesting
     void calculateScrollViewParams(Context context,
                                    SharedPreferences pref,
@@ -1393,7 +1727,7 @@ public class TaskbarController extends UIController {
                 sysTrayParentLayout.setVisibility(View.GONE);
 
             shouldRefreshRecents = false;
-            if(thread != null) thread.interrupt();
+            if(refreshToken != null) refreshToken.cancel();
 
             SharedPreferences pref = U.getSharedPreferences(context);
             pref.edit().putBoolean(PREF_COLLAPSED, false).apply();
@@ -1437,24 +1771,8 @@ public class TaskbarController extends UIController {
         if(taskbarShownTemporarily)
             taskbarShownTemporarily = false;
 
-        if(monitorPositionChanges && showHideAutomagically && !positionIsVertical) {
-            if(thread2 != null) thread2.interrupt();
-
-            handler2 = U.newHandler();
-            thread2 = new Thread(() -> {
-                stopThread2 = false;
-
-                while(!stopThread2) {
-                    SystemClock.sleep(refreshInterval);
-
-                    handler2.post(() -> stopThread2 = checkPositionChange());
-                }
-
-                startThread2 = false;
-            });
-
-            thread2.start();
-        }
+        if(monitorPositionChanges && showHideAutomagically && !positionIsVertical)
+            monitoringPositionChanges = true;
     }
 
     private boolean checkPositionChange() {
@@ -1485,6 +1803,8 @@ public class TaskbarController extends UIController {
     }
 
     private int getNavBarSize() {
+        if(navBarSize != -1) return navBarSize;
+
         Point size = new Point();
         Point realSize = new Point();
 
@@ -1493,12 +1813,15 @@ public class TaskbarController extends UIController {
         display.getSize(size);
         display.getRealSize(realSize);
 
-        return realSize.y - size.y;
+        navBarSize = realSize.y - size.y;
+        return navBarSize;
     }
 
     @Override
     public void onDestroyHost(UIHost host) {
         shouldRefreshRecents = false;
+        if(refreshToken != null) refreshToken.cancel();
+        monitoringPositionChanges = false;
 
         if(layout != null)
             try {
@@ -1517,12 +1840,16 @@ public class TaskbarController extends UIController {
         U.unregisterReceiver(context, tempHideReceiver);
         U.unregisterReceiver(context, startMenuAppearReceiver);
         U.unregisterReceiver(context, startMenuDisappearReceiver);
+        U.unregisterReceiver(context, iconThemeChangedReceiver);
 
-        if(sysTrayEnabled) {
-            TelephonyManager manager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
-            manager.listen(listener, PhoneStateListener.LISTEN_NONE);
-
+        if(sysTrayEnabled)
             U.unregisterReceiver(context, notificationCountReceiver);
+
+        stopSystemTrayIndicators();
+
+        if(contextMenuOverlay != null) {
+            contextMenuOverlay.destroy();
+            contextMenuOverlay = null;
         }
 
         isFirstStart = true;
@@ -1746,60 +2073,104 @@ public class TaskbarController extends UIController {
         return !pm.isInteractive();
     }
 
-    @SuppressLint("SetTextI18n")
-    private void updateSystemTray() {
-        if(!sysTrayEnabled) return;
+    @VisibleForTesting
+    @TargetApi(Build.VERSION_CODES.M)
+    void startSystemTrayIndicators() {
+        sysTrayIconIds.clear();
+        currentClockText = null;
+        timeFormat = null;
+        dateFormat = null;
 
-        handler.post(() -> {
-            Map<Integer, Drawable> drawables = new HashMap<>();
-            drawables.put(R.id.battery, getBatteryDrawable());
-            drawables.put(R.id.wifi, getWifiDrawable());
-            drawables.put(R.id.bluetooth, getBluetoothDrawable());
-            drawables.put(R.id.cellular, getCellularDrawable());
-
-            for(Integer key : drawables.keySet()) {
-                ImageView view = sysTrayLayout.findViewById(key);
-                Drawable drawable = drawables.get(key);
-
-                if(drawable != null) view.setImageDrawable(drawable);
-                sysTrayIconStates.put(key, drawable != null);
-            }
+        BatteryManager bm = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        if(bm.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY) != Integer.MIN_VALUE) {
+            Intent batteryStatus = context.registerReceiver(batteryReceiver, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            if(batteryStatus != null) updateBatteryIndicator(batteryStatus);
+        }
 
-            if(notificationCount > 0) {
-                int color = ColorUtils.setAlphaComponent(U.getBackgroundTint(context), 255);
-                notificationCountText.setTextColor(color);
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
+        filter.addAction(Intent.ACTION_AIRPLANE_MODE_CHANGED);
+        filter.addAction(WifiManager.RSSI_CHANGED_ACTION);
+        filter.addAction(Intent.ACTION_TIME_TICK);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        context.registerReceiver(sysTrayStateReceiver, filter);
+
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        try {
+            connectivityManager.registerNetworkCallback(new NetworkRequest.Builder().build(), networkCallback);
+        } catch (SecurityException ignored) {}
 
-                Drawable drawable = ContextCompat.getDrawable(context, R.drawable.tb_circle);
-                drawable.setTint(U.getAccentColor(context));
+        TelephonyManager manager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        manager.listen(listener, PhoneStateListener.LISTEN_SIGNAL_STRENGTHS);
 
-                notificationCountCircle.setImageDrawable(drawable);
-                notificationCountText.setText(Integer.toString(notificationCount));
-                sysTrayIconStates.put(R.id.notification_count, true);
-            } else
-                sysTrayIconStates.put(R.id.notification_count, false);
+        sysTrayIndicatorsRegistered = true;
 
-            time.setText(context.getString(R.string.tb_systray_clock,
-                    DateFormat.getTimeFormat(context).format(new Date()),
-                    DateFormat.getDateFormat(context).format(new Date())));
-            time.setTextColor(U.getAccentColor(context));
-        });
+        updateWifiIndicator();
+        updateBluetoothIndicator();
+        updateCellularIndicator();
+        updateNotificationCountIndicator();
+        updateClock();
     }
 
-    @TargetApi(Build.VERSION_CODES.M)
-    private Drawable getBatteryDrawable() {
-        BatteryManager bm = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
-        int batLevel = bm.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+    @VisibleForTesting
+    void stopSystemTrayIndicators() {
+        if(!sysTrayIndicatorsRegistered) return;
 
-        if(batLevel == Integer.MIN_VALUE)
-            return null;
+        sysTrayIndicatorsRegistered = false;
 
-        IntentFilter ifilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
-        Intent batteryStatus = context.registerReceiver(null, ifilter);
+        try {
+            context.unregisterReceiver(batteryReceiver);
+        } catch (IllegalArgumentException ignored) {}
+
+        try {
+            context.unregisterReceiver(sysTrayStateReceiver);
+        } catch (IllegalArgumentException ignored) {}
+
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        try {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        } catch (IllegalArgumentException ignored) {}
+
+        TelephonyManager manager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        manager.listen(listener, PhoneStateListener.LISTEN_NONE);
+    }
+
+    // Only touches the ImageView when the icon for the indicator actually changes
+    private void setSysTrayIcon(int viewId, int drawableId) {
+        if(!sysTrayIndicatorsRegistered || sysTrayLayout == null) return;
+
+        Integer currentId = sysTrayIconIds.get(viewId);
+        if(currentId != null && currentId == drawableId) return;
+
+        sysTrayIconIds.put(viewId, drawableId);
+
+        Drawable drawable = drawableId == 0 ? null : getDrawableForSysTray(drawableId);
+        if(drawable != null) {
+            ImageView view = sysTrayLayout.findViewById(viewId);
+            view.setImageDrawable(drawable);
+        }
+
+        sysTrayIconStates.put(viewId, drawable != null);
+    }
+
+    private void updateBatteryIndicator(Intent batteryStatus) {
+        int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if(level < 0 || scale <= 0) {
+            setSysTrayIcon(R.id.battery, 0);
+            return;
+        }
 
         int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
         boolean isCharging = status == BatteryManager.BATTERY_STATUS_CHARGING ||
                 status == BatteryManager.BATTERY_STATUS_FULL;
 
+        setSysTrayIcon(R.id.battery, getBatteryResId(level * 100 / scale, isCharging));
+    }
+
+    private int getBatteryResId(int batLevel, boolean isCharging) {
         String batDrawable;
         if(batLevel < 10 && !isCharging)
             batDrawable = "alert";
@@ -1825,22 +2196,24 @@ public class TaskbarController extends UIController {
             charging = "";
 
         String batRes = "tb_battery_" + charging + batDrawable;
-        int id = getResourceIdFor(batRes);
-
-        return getDrawableForSysTray(id);
+        return getResourceIdFor(batRes);
     }
 
     @TargetApi(Build.VERSION_CODES.M)
-    private Drawable getWifiDrawable() {
+    private void updateWifiIndicator() {
         ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
 
         NetworkInfo ethernet = manager.getNetworkInfo(ConnectivityManager.TYPE_ETHERNET);
-        if(ethernet != null && ethernet.isConnected())
-            return getDrawableForSysTray(R.drawable.tb_settings_ethernet);
+        if(ethernet != null && ethernet.isConnected()) {
+            setSysTrayIcon(R.id.wifi, R.drawable.tb_settings_ethernet);
+            return;
+        }
 
         NetworkInfo wifi = manager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
-        if(wifi == null || !wifi.isConnected())
-            return null;
+        if(wifi == null || !wifi.isConnected()) {
+            setSysTrayIcon(R.id.wifi, 0);
+            return;
+        }
 
         WifiManager wifiManager = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
         int numberOfLevels = 5;
@@ -1849,31 +2222,64 @@ public class TaskbarController extends UIController {
         int level = WifiManager.calculateSignalLevel(wifiInfo.getRssi(), numberOfLevels);
 
         String wifiRes = "tb_signal_wifi_" + level + "_bar";
-        int id = getResourceIdFor(wifiRes);
-
-        return getDrawableForSysTray(id);
+        setSysTrayIcon(R.id.wifi, getResourceIdFor(wifiRes));
     }
 
-    private Drawable getBluetoothDrawable() {
+    private void updateBluetoothIndicator() {
         BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
-        if(adapter != null && adapter.isEnabled())
-            return getDrawableForSysTray(R.drawable.tb_bluetooth);
-
-        return null;
+        setSysTrayIcon(R.id.bluetooth, adapter != null && adapter.isEnabled() ? R.drawable.tb_bluetooth : 0);
     }
 
     @TargetApi(Build.VERSION_CODES.M)
-    private Drawable getCellularDrawable() {
-        if(Settings.Global.getInt(context.getContentResolver(), Settings.Global.AIRPLANE_MODE_ON, 0) != 0)
-            return getDrawableForSysTray(R.drawable.tb_airplanemode_active);
+    private void updateCellularIndicator() {
+        if(Settings.Global.getInt(context.getContentResolver(), Settings.Global.AIRPLANE_MODE_ON, 0) != 0) {
+            setSysTrayIcon(R.id.cellular, R.drawable.tb_airplanemode_active);
+            return;
+        }
 
-        if(cellStrength == -1)
-            return null;
+        if(cellStrength == -1) {
+            setSysTrayIcon(R.id.cellular, 0);
+            return;
+        }
 
         String cellRes = "tb_signal_cellular_" + cellStrength + "_bar";
-        int id = getResourceIdFor(cellRes);
+        setSysTrayIcon(R.id.cellular, getResourceIdFor(cellRes));
+    }
+
+    @SuppressLint("SetTextI18n")
+    private void updateNotificationCountIndicator() {
+        if(!sysTrayIndicatorsRegistered || notificationCountText == null) return;
+
+        if(notificationCount > 0) {
+            int color = ColorUtils.setAlphaComponent(U.getBackgroundTint(context), 255);
+            notificationCountText.setTextColor(color);
+
+            Drawable drawable = ContextCompat.getDrawable(context, R.drawable.tb_circle);
+            drawable.setTint(U.getAccentColor(context));
+
+            notificationCountCircle.setImageDrawable(drawable);
+            notificationCountText.setText(Integer.toString(notificationCount));
+            sysTrayIconStates.put(R.id.notification_count, true);
+        } else
+            sysTrayIconStates.put(R.id.notification_count, false);
+    }
+
+    private void updateClock() {
+        if(!sysTrayIndicatorsRegistered || time == null) return;
+
+        if(timeFormat == null) timeFormat = DateFormat.getTimeFormat(context);
+        if(dateFormat == null) dateFormat = DateFormat.getDateFormat(context);
+
+        Date now = new Date();
+        String clockText = context.getString(R.string.tb_systray_clock,
+                timeFormat.format(now),
+                dateFormat.format(now));
+
+        if(clockText.equals(currentClockText)) return;
 
-        return getDrawableForSysTray(id);
+        currentClockText = clockText;
+        time.setText(clockText);
+        time.setTextColor(U.getAccentColor(context));
     }
 
     private Drawable getDrawableForSysTray(int id) {
@@ -15,8 +15,13 @@
 
 package com.farmerbb.taskbar.ui;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.provider.Settings;
 import android.view.View;
 
@@ -33,6 +38,48 @@ import static com.farmerbb.taskbar.util.Constants.*;
 public abstract class UIController {
     protected Context context;
     private boolean prevImeVisibility;
+    private DeferredDraw deferredDraw;
+
+    /**
+     * Runs a drawing step once the main thread goes idle, unless the user asks for the UI first.
+     */
+    private final class DeferredDraw extends BroadcastReceiver implements MessageQueue.IdleHandler {
+        private final Runnable draw;
+        private final BroadcastReceiver firstUseReceiver;
+        private boolean done = false;
+
+        private DeferredDraw(Runnable draw, BroadcastReceiver firstUseReceiver) {
+            this.draw = draw;
+            this.firstUseReceiver = firstUseReceiver;
+        }
+
+        @Override
+        public boolean queueIdle() {
+            run(null);
+            return false;
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            run(intent);
+        }
+
+        private void run(Intent intent) {
+            if(done) return;
+
+            cancel();
+            draw.run();
+
+            if(intent != null)
+                firstUseReceiver.onReceive(context, intent);
+        }
+
+        private void cancel() {
+            done = true;
+            U.unregisterReceiver(context, this);
+            Looper.myQueue().removeIdleHandler(this);
+        }
+    }
 
     public UIController(Context context) {
         this.context = U.getDisplayContext(context);
@@ -42,6 +89,10 @@ public abstract class UIController {
     abstract void onRecreateHost(UIHost host);
     abstract void onDestroyHost(UIHost host);
 
+    public void onTrimMemory(int level) {}
+
+    public void onConfigurationChanged(Configuration newConfig) {}
+
     protected void init(Context context, UIHost host, Runnable runnable) {
         SharedPreferences pref = U.getSharedPreferences(context);
         LauncherHelper helper = LauncherHelper.getInstance();
@@ -64,6 +115,27 @@ public abstract class UIController {
             host.terminate();
     }
 
+    /**
+     * Defers a drawing step that isn't needed right away, so that it doesn't hold up the taskbar
+     * while it starts. The step runs once the main thread is idle, or as soon as one of the
+     * given actions is broadcast, in which case the broadcast is then passed on to
+     * firstUseReceiver. Must be called from the main thread.
+     */
+    protected void drawWhenIdle(Runnable draw, BroadcastReceiver firstUseReceiver, String... firstUseActions) {
+        cancelDeferredDraw();
+
+        deferredDraw = new DeferredDraw(draw, firstUseReceiver);
+        U.registerReceiver(context, deferredDraw, firstUseActions);
+        Looper.myQueue().addIdleHandler(deferredDraw);
+    }
+
+    protected void cancelDeferredDraw() {
+        if(deferredDraw == null) return;
+
+        deferredDraw.cancel();
+        deferredDraw = null;
+    }
+
     protected int getBottomMargin(Context context) {
         return U.getDisplayInfo(context).displayDefaultsToFreeform
                 && U.getCurrentApiVersion() < 33.0f
@@ -72,11 +144,11 @@ public abstract class UIController {
                 && TaskbarPosition.isBottom(context) ? U.getNavbarHeight(context) : -1;
     }
 
-    protected void applyMarginFix(UIHost host, View layout, ViewParams params) {
+    protected View.OnApplyWindowInsetsListener applyMarginFix(UIHost host, View layout, ViewParams params) {
         if(U.getCurrentApiVersion() <= 29.0 || !U.getDisplayInfo(context).displayDefaultsToFreeform)
-            return;
+            return null;
 
-        layout.setOnApplyWindowInsetsListener((v, insets) -> {
+        View.OnApplyWindowInsetsListener listener = (v, insets) -> {
             boolean isImeVisible = CompatUtils.isImeVisible(v);
             if(isImeVisible != prevImeVisibility) {
                 prevImeVisibility = isImeVisible;
@@ -94,7 +166,10 @@ public abstract class UIController {
             }
 
             return insets;
-        });
+        };
+
+        layout.setOnApplyWindowInsetsListener(listener);
+        return listener;
     }
 
     protected boolean isImeFixDisabled() {
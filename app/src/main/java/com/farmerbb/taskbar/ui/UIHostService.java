@@ -22,6 +22,8 @@ import android.os.IBinder;
 import android.view.View;
 import android.view.WindowManager;
 
+import com.farmerbb.taskbar.helper.ServiceStateHelper;
+import com.farmerbb.taskbar.util.DisplayInfoCache;
 import com.farmerbb.taskbar.util.U;
 
 public abstract class UIHostService extends Service implements UIHost {
@@ -44,6 +46,8 @@ public abstract class UIHostService extends Service implements UIHost {
     public void onCreate() {
         super.onCreate();
 
+        ServiceStateHelper.getInstance().onServiceCreated(this);
+
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
         configString = U.getConfigString(this);
 
@@ -53,6 +57,9 @@ public abstract class UIHostService extends Service implements UIHost {
 
     @Override
     public void onConfigurationChanged(Configuration newConfig) {
+        DisplayInfoCache.getInstance().clear();
+        controller.onConfigurationChanged(newConfig);
+
         String newConfigString = U.getConfigString(this);
         if(newConfigString.equals(configString)) return;
 
@@ -60,9 +67,16 @@ public abstract class UIHostService extends Service implements UIHost {
         controller.onRecreateHost(this);
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        controller.onTrimMemory(level);
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
+        ServiceStateHelper.getInstance().onServiceDestroyed(this);
         controller.onDestroyHost(this);
     }
 
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.LauncherActivityInfo;
 import android.content.pm.LauncherApps;
+import android.content.pm.ShortcutInfo;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.drawable.BitmapDrawable;
@@ -39,7 +40,8 @@ public class AppEntry implements Serializable {
     private Long userId;
     private Long lastTimeUsed;
     private Long totalTimeInForeground;
-    private transient Drawable icon;
+    private transient volatile Drawable icon;
+    private transient ShortcutInfo shortcut;
     private byte[] iconByteArray;
 
     public AppEntry(String packageName, String componentName, String label, Drawable icon, boolean shouldCompress) {
@@ -99,6 +101,35 @@ public class AppEntry implements Serializable {
         return icon;
     }
 
+    /**
+     * Returns whether getIcon() can return without loading anything.
+     */
+    public boolean hasIcon() {
+        return icon != null;
+    }
+
+    /**
+     * Drops the icon so that its bitmap can be garbage collected once the icon cache lets go of
+     * it too; getIcon() loads it again when it is next needed. Returns whether it was dropped.
+     */
+    public boolean releaseIcon() {
+        // Shortcut icons and entries without a component or user can't be loaded again
+        if(shortcut != null || (iconByteArray == null && (componentName == null || userId == null)))
+            return false;
+        if(icon == null) return false;
+
+        icon = null;
+        return true;
+    }
+
+    public ShortcutInfo getShortcut() {
+        return shortcut;
+    }
+
+    public void setShortcut(ShortcutInfo shortcut) {
+        this.shortcut = shortcut;
+    }
+
     public long getLastTimeUsed() {
         return lastTimeUsed == null ? 0 : lastTimeUsed;
     }
@@ -53,6 +53,8 @@ public class Constants {
     public static final String ACTION_RESET_START_MENU = "com.farmerbb.taskbar.RESET_START_MENU";
     public static final String ACTION_RESTART = "com.farmerbb.taskbar.RESTART";
     public static final String ACTION_SEND_SETTINGS = "com.farmerbb.taskbar.SEND_SETTINGS";
+    public static final String ACTION_SHOW_CONTEXT_MENU_OVERLAY = "com.farmerbb.taskbar.SHOW_CONTEXT_MENU_OVERLAY";
+    public static final String ACTION_ICON_THEME_CHANGED = "com.farmerbb.taskbar.ICON_THEME_CHANGED";
     public static final String ACTION_SHOW_HIDE_TASKBAR = "com.farmerbb.taskbar.SHOW_HIDE_TASKBAR";
     public static final String ACTION_SHOW_START_MENU_SPACE = "com.farmerbb.taskbar.SHOW_START_MENU_SPACE";
     public static final String ACTION_SHOW_TASKBAR = "com.farmerbb.taskbar.SHOW_TASKBAR";
@@ -106,6 +108,7 @@ public class Constants {
     public static final String PREF_CHROME_OS_CONTEXT_MENU_FIX = "chrome_os_context_menu_fix";
     public static final String PREF_CLEAR_PINNED_APPS = "clear_pinned_apps";
     public static final String PREF_COLLAPSED = "collapsed";
+    public static final String PREF_CONTEXT_MENU_OVERLAY = "context_menu_overlay";
     public static final String PREF_DASHBOARD = "dashboard";
     public static final String PREF_DASHBOARD_GRID_SIZE = "dashboard_grid_size";
     public static final String PREF_DASHBOARD_HEIGHT = "dashboard_height";
@@ -152,6 +155,7 @@ public class Constants {
     public static final String PREF_ICON_PACK = "icon_pack";
     public static final String PREF_ICON_PACK_LIST = "icon_pack_list";
     public static final String PREF_ICON_PACK_USE_MASK = "icon_pack_use_mask";
+    public static final String PREF_IMPORT_FREE_SETTINGS = "import_free_settings";
     public static final String PREF_INVISIBLE_BUTTON = "invisible_button";
     public static final String PREF_IS_HIDDEN = "is_hidden";
     public static final String PREF_IS_RESTARTING = "is_restarting";
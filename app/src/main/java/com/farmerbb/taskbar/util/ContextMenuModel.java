@@ -0,0 +1,729 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.accessibilityservice.AccessibilityService;
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.ActivityNotFoundException;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.content.pm.ShortcutInfo;
+import android.content.res.XmlResourceParser;
+import android.graphics.drawable.Drawable;
+import android.media.AudioManager;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.UserManager;
+import android.provider.Settings;
+import android.util.SparseArray;
+import android.view.View;
+
+import com.farmerbb.taskbar.BuildConfig;
+import com.farmerbb.taskbar.R;
+import com.farmerbb.taskbar.activity.DesktopIconSelectAppActivity;
+import com.farmerbb.taskbar.activity.DummyActivity;
+import com.farmerbb.taskbar.activity.MainActivity;
+import com.farmerbb.taskbar.activity.SelectAppActivity;
+import com.farmerbb.taskbar.helper.FreeformHackHelper;
+import com.farmerbb.taskbar.helper.LauncherHelper;
+import com.farmerbb.taskbar.helper.MenuHelper;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.farmerbb.taskbar.util.Constants.*;
+
+/**
+ * Builds the items of a context menu and carries out the action for whichever item is clicked.
+ * ContextMenuActivity and ContextMenuOverlay both render their menus from this model, so that
+ * the two only differ in how the items are drawn.
+ */
+public class ContextMenuModel {
+
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+    public static class Item {
+        public final String key;
+        public final CharSequence title;
+        public final boolean isHeader;
+        public final Drawable icon;
+
+        Item(String key, CharSequence title, boolean isHeader, Drawable icon) {
+            this.key = key;
+            this.title = title;
+            this.isHeader = isHeader;
+            this.icon = icon;
+        }
+    }
+
+    public interface Host {
+        /**
+         * Shows a new set of items. The title is null unless the menu should be titled instead of
+         * starting with a header item.
+         */
+        void showMenu(List<Item> items, CharSequence title);
+
+        boolean isInMultiWindowMode();
+    }
+
+    private static class Definition {
+        private final String key;
+        private final int titleRes;
+        private final boolean isHeader;
+
+        private Definition(String key, int titleRes, boolean isHeader) {
+            this.key = key;
+            this.titleRes = titleRes;
+            this.isHeader = isHeader;
+        }
+    }
+
+    private static final SparseArray<List<Definition>> definitions = new SparseArray<>();
+
+    private final Context context;
+    private final Host host;
+    private final AppEntry entry;
+    private final DesktopIconInfo desktopIcon;
+    private final boolean isStartButton;
+    private final boolean isOverflowMenu;
+    private final boolean showQuitOption;
+
+    private boolean showStartMenu;
+    private boolean shouldHideTaskbar = false;
+    private boolean secondaryMenu = false;
+    private boolean dashboardOrStartMenuAppearing = false;
+    private boolean shortcutsRequested = false;
+    private boolean closed = false;
+
+    private List<ShortcutInfo> shortcuts;
+
+    public ContextMenuModel(Context context, Host host, Bundle args) {
+        this.context = context;
+        this.host = host;
+
+        entry = (AppEntry) args.getSerializable("app_entry");
+        desktopIcon = (DesktopIconInfo) args.getSerializable("desktop_icon");
+
+        showStartMenu = args.getBoolean("launched_from_start_menu", false);
+        isStartButton = entry == null && args.getBoolean("is_start_button", false);
+        isOverflowMenu = entry == null && args.getBoolean("is_overflow_menu", false);
+        showQuitOption = !args.getBoolean("dont_show_quit", false);
+    }
+
+    public boolean hasContent() {
+        return isStartButton || isOverflowMenu || entry != null || desktopIcon != null;
+    }
+
+    public boolean shouldShowStartMenu() {
+        return showStartMenu;
+    }
+
+    public boolean isClosingForAction() {
+        return shouldHideTaskbar;
+    }
+
+    public void onMenuOpened() {
+        U.sendBroadcast(context, ACTION_CONTEXT_MENU_APPEARING);
+        MenuHelper.getInstance().setContextMenuOpen(true);
+
+        if(!showStartMenu && desktopIcon == null)
+            U.sendBroadcast(context, ACTION_HIDE_START_MENU);
+    }
+
+    public void onDashboardOrStartMenuAppearing() {
+        dashboardOrStartMenuAppearing = true;
+    }
+
+    public void onMenuClosed() {
+        closed = true;
+
+        U.sendBroadcast(context, ACTION_CONTEXT_MENU_DISAPPEARING);
+        MenuHelper.getInstance().setContextMenuOpen(false);
+
+        if(!dashboardOrStartMenuAppearing) {
+            if(showStartMenu) {
+                U.sendBroadcast(context, ACTION_TOGGLE_START_MENU);
+            } else {
+                U.sendBroadcast(context, ACTION_RESET_START_MENU);
+
+                if(shouldHideTaskbar && U.shouldCollapse(context, true)) {
+                    U.sendBroadcast(context, ACTION_HIDE_TASKBAR);
+                }
+            }
+        }
+    }
+
+    public void generateMenu() {
+        List<Item> items = new ArrayList<>();
+        CharSequence title = null;
+
+        if(isStartButton) {
+            addItems(items, R.xml.tb_pref_context_menu_open_settings);
+
+            if(U.isFreeformModeEnabled(context)
+                    && !U.isDesktopIconsEnabled(context)
+                    && ((U.launcherIsDefault(context)
+                    && !U.isOverridingFreeformHack(context, false)
+                    && FreeformHackHelper.getInstance().isInFreeformWorkspace())
+                    || (U.isOverridingFreeformHack(context, false)
+                    && LauncherHelper.getInstance().isOnHomeScreen(context))))
+                addItems(items, R.xml.tb_pref_context_menu_change_wallpaper);
+
+            if(showQuitOption)
+                addItems(items, R.xml.tb_pref_context_menu_quit);
+        } else if(isOverflowMenu) {
+            title = addHeader(items, context.getString(R.string.tb_tools));
+            addItems(items, R.xml.tb_pref_context_menu_overflow);
+
+            if(U.isLibrary(context))
+                removeItem(items, PREF_POWER_MENU);
+
+            if(U.isLibrary(context) || Build.VERSION.SDK_INT < Build.VERSION_CODES.P)
+                removeItem(items, PREF_LOCK_DEVICE);
+
+            if(Build.VERSION.SDK_INT < Build.VERSION_CODES.M)
+                removeItem(items, PREF_FILE_MANAGER);
+        } else if(desktopIcon != null && entry == null) {
+            addItems(items, R.xml.tb_pref_context_menu_desktop_icons);
+        } else {
+            title = addHeader(items, entry.getLabel());
+
+            if(U.hasFreeformSupport(context)
+                    && U.isFreeformModeEnabled(context)
+                    && !U.isGame(context, entry.getPackageName()))
+                addItems(items, R.xml.tb_pref_context_menu_show_window_sizes);
+
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N_MR1) {
+                int shortcutCount = getLauncherShortcuts();
+
+                if(shortcutCount > 1)
+                    addItems(items, R.xml.tb_pref_context_menu_shortcuts);
+                else if(shortcutCount == 1)
+                    addShortcuts(items);
+            }
+
+            PackageManager pm = context.getPackageManager();
+            Intent homeIntent = new Intent(Intent.ACTION_MAIN);
+            homeIntent.addCategory(Intent.CATEGORY_HOME);
+            ResolveInfo defaultLauncher = pm.resolveActivity(homeIntent, PackageManager.MATCH_DEFAULT_ONLY);
+
+            if(desktopIcon != null)
+                addItems(items, R.xml.tb_pref_context_menu_remove_desktop_icon);
+            else if(!entry.getPackageName().contains(BuildConfig.BASE_APPLICATION_ID)
+                    && (defaultLauncher == null
+                    || !entry.getPackageName().equals(defaultLauncher.activityInfo.packageName))) {
+                PinnedBlockedApps pba = PinnedBlockedApps.getInstance(context);
+
+                if(pba.isPinned(entry.getComponentName()))
+                    addItem(items, PREF_PIN_APP, context.getString(R.string.tb_unpin_app));
+                else if(pba.isBlocked(entry.getComponentName()))
+                    addItem(items, PREF_BLOCK_APP, context.getString(R.string.tb_unblock_app));
+                else {
+                    if(pba.getPinnedApps().size() < U.getMaxNumOfEntries(context))
+                        addItem(items, PREF_PIN_APP, context.getString(R.string.tb_pin_app));
+
+                    addItem(items, PREF_BLOCK_APP, context.getString(R.string.tb_block_app));
+                }
+            }
+
+            addItems(items, R.xml.tb_pref_context_menu);
+        }
+
+        host.showMenu(items, title);
+    }
+
+    @TargetApi(Build.VERSION_CODES.N_MR1)
+    private void generateShortcuts() {
+        List<Item> items = new ArrayList<>();
+        addShortcuts(items);
+        host.showMenu(items, null);
+    }
+
+    private void generateWindowSizes() {
+        List<Item> items = new ArrayList<>();
+        addItems(items, R.xml.tb_pref_context_menu_window_size_list);
+
+        String windowSizePref = SavedWindowSizes.getInstance(context).getWindowSize(context, entry.getPackageName());
+        for(int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            if(item.key.equals("window_size_" + windowSizePref))
+                items.set(i, new Item(item.key, '\u2713' + " " + item.title, false, null));
+        }
+
+        host.showMenu(items, null);
+    }
+
+    private void generateWallpaperOptions() {
+        List<Item> items = new ArrayList<>();
+        addItems(items, R.xml.tb_pref_context_menu_change_wallpaper_secondary);
+
+        File file = new File(context.getFilesDir() + "/tb_images", "desktop_wallpaper");
+        if(file.exists())
+            addItems(items, R.xml.tb_pref_remove_desktop_wallpaper);
+
+        host.showMenu(items, null);
+    }
+
+    /**
+     * Carries out the action for a clicked item. Returns true if the menu should now be closed,
+     * or false if it has moved on to a secondary menu.
+     */
+    @TargetApi(Build.VERSION_CODES.N_MR1)
+    public boolean onItemClick(String key, View view) {
+        UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
+        LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
+        boolean appIsValid = isStartButton || isOverflowMenu || desktopIcon != null ||
+                (entry != null && !launcherApps.getActivityList(entry.getPackageName(),
+                        userManager.getUserForSerialNumber(entry.getUserId(context))).isEmpty());
+        secondaryMenu = false;
+
+        if(appIsValid) switch(key) {
+            case PREF_APP_INFO:
+                U.launchApp(context, () ->
+                        launcherApps.startAppDetailsActivity(
+                                ComponentName.unflattenFromString(entry.getComponentName()),
+                                userManager.getUserForSerialNumber(entry.getUserId(context)),
+                                null,
+                                U.getActivityOptionsBundle(context, ApplicationType.APP_PORTRAIT, view)));
+
+                prepareToClose();
+                break;
+            case PREF_UNINSTALL:
+                if(U.hasFreeformSupport(context) && host.isInMultiWindowMode()) {
+                    Intent intent = new Intent(context, DummyActivity.class);
+                    intent.putExtra("uninstall", entry.getPackageName());
+                    intent.putExtra("user_id", entry.getUserId(context));
+
+                    try {
+                        startActivity(intent, null);
+                    } catch (IllegalArgumentException ignored) {}
+                } else {
+                    Intent intent = new Intent(Intent.ACTION_DELETE, Uri.parse("package:" + entry.getPackageName()));
+                    intent.putExtra(Intent.EXTRA_USER, userManager.getUserForSerialNumber(entry.getUserId(context)));
+
+                    try {
+                        startActivity(intent, null);
+                    } catch (ActivityNotFoundException | IllegalArgumentException ignored) {}
+                }
+
+                prepareToClose();
+                break;
+            case PREF_OPEN_TASKBAR_SETTINGS:
+                U.launchApp(context, () -> {
+                    Intent intent = new Intent(context, MainActivity.class);
+                    intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+
+                    LauncherHelper helper = LauncherHelper.getInstance();
+                    if(helper.isOnHomeScreen(context) || helper.isOnSecondaryHomeScreen(context))
+                        U.applyOpenInNewWindow(context, intent);
+
+                    try {
+                        startActivity(intent, U.getActivityOptionsBundle(context, ApplicationType.APP_PORTRAIT, view));
+                    } catch (IllegalArgumentException ignored) {}
+                });
+
+                prepareToClose();
+                break;
+            case PREF_QUIT_TASKBAR:
+                Intent quitIntent = new Intent(ACTION_QUIT);
+                quitIntent.setPackage(context.getPackageName());
+                context.sendBroadcast(quitIntent);
+                prepareToClose();
+                break;
+            case PREF_PIN_APP:
+                PinnedBlockedApps pba = PinnedBlockedApps.getInstance(context);
+                if(pba.isPinned(entry.getComponentName()))
+                    pba.removePinnedApp(context, entry.getComponentName());
+                else {
+                    Intent intent = new Intent();
+                    intent.setComponent(ComponentName.unflattenFromString(entry.getComponentName()));
+
+                    LauncherActivityInfo appInfo = launcherApps.resolveActivity(intent, userManager.getUserForSerialNumber(entry.getUserId(context)));
+                    if(appInfo != null) {
+                        AppEntry newEntry = new AppEntry(
+                                entry.getPackageName(),
+                                entry.getComponentName(),
+                                entry.getLabel(),
+                                IconCache.getInstance(context).getIcon(context, appInfo),
+                                true);
+
+                        newEntry.setUserId(entry.getUserId(context));
+                        pba.addPinnedApp(context, newEntry);
+                    }
+                }
+                break;
+            case PREF_BLOCK_APP:
+                PinnedBlockedApps pba2 = PinnedBlockedApps.getInstance(context);
+                if(pba2.isBlocked(entry.getComponentName()))
+                    pba2.removeBlockedApp(context, entry.getComponentName());
+                else
+                    pba2.addBlockedApp(context, entry);
+                break;
+            case PREF_SHOW_WINDOW_SIZES:
+                generateWindowSizes();
+
+                if(U.hasBrokenSetLaunchBoundsApi())
+                    U.showToastLong(context, R.string.tb_window_sizes_not_available);
+
+                secondaryMenu = true;
+                break;
+            case PREF_WINDOW_SIZE_STANDARD:
+            case PREF_WINDOW_SIZE_LARGE:
+            case PREF_WINDOW_SIZE_FULLSCREEN:
+            case PREF_WINDOW_SIZE_HALF_LEFT:
+            case PREF_WINDOW_SIZE_HALF_RIGHT:
+            case PREF_WINDOW_SIZE_PHONE_SIZE:
+                String windowSize = key.replace("window_size_", "");
+
+                SharedPreferences pref = U.getSharedPreferences(context);
+                if(pref.getBoolean(PREF_SAVE_WINDOW_SIZES, true)) {
+                    SavedWindowSizes.getInstance(context).setWindowSize(context, entry.getPackageName(), windowSize);
+                }
+
+                U.launchApp(
+                        U.getDisplayContext(context),
+                        entry,
+                        windowSize,
+                        false,
+                        true,
+                        view);
+
+                if(U.hasBrokenSetLaunchBoundsApi())
+                    U.cancelToast();
+
+                prepareToClose();
+                break;
+            case PREF_APP_SHORTCUTS:
+                generateShortcuts();
+
+                secondaryMenu = true;
+                break;
+            case PREF_SHORTCUT_1:
+            case PREF_SHORTCUT_2:
+            case PREF_SHORTCUT_3:
+            case PREF_SHORTCUT_4:
+            case PREF_SHORTCUT_5:
+                U.startShortcut(
+                        U.getDisplayContext(context),
+                        entry,
+                        shortcuts.get(Integer.parseInt(key.replace("shortcut_", "")) - 1),
+                        view);
+
+                prepareToClose();
+                break;
+            case PREF_START_MENU_APPS:
+                startSelectAppActivity(U.getThemedIntent(context, SelectAppActivity.class));
+                prepareToClose();
+                break;
+            case PREF_VOLUME:
+                AudioManager audio = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+                audio.adjustSuggestedStreamVolume(AudioManager.ADJUST_SAME, AudioManager.USE_DEFAULT_STREAM_TYPE, AudioManager.FLAG_SHOW_UI);
+
+                if(LauncherHelper.getInstance().isOnSecondaryHomeScreen(context)) {
+                    U.showToast(context, R.string.tb_opening_volume_control);
+                    U.sendBroadcast(context, ACTION_UNDIM_SCREEN);
+                }
+
+                prepareToClose();
+                break;
+            case PREF_FILE_MANAGER:
+                U.launchApp(context, () -> {
+                    Intent fileManagerIntent;
+
+                    if(Build.VERSION.SDK_INT > Build.VERSION_CODES.N_MR1)
+                        fileManagerIntent = new Intent(Intent.ACTION_VIEW);
+                    else if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
+                        fileManagerIntent = new Intent("android.provider.action.BROWSE");
+                    else {
+                        fileManagerIntent = new Intent("android.provider.action.BROWSE_DOCUMENT_ROOT");
+                        fileManagerIntent.setComponent(ComponentName.unflattenFromString("com.android.documentsui/.DocumentsActivity"));
+                    }
+
+                    fileManagerIntent.addCategory(Intent.CATEGORY_DEFAULT);
+                    fileManagerIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                    fileManagerIntent.setData(Uri.parse("content://com.android.externalstorage.documents/root/primary"));
+
+                    try {
+                        startActivity(fileManagerIntent,
+                                U.getActivityOptionsBundle(context, ApplicationType.APP_PORTRAIT, view));
+                    } catch (ActivityNotFoundException e) {
+                        U.showToast(context, R.string.tb_lock_device_not_supported);
+                    } catch (IllegalArgumentException ignored) {}
+                });
+
+                prepareToClose();
+                break;
+            case PREF_SYSTEM_SETTINGS:
+                U.launchApp(context, () -> {
+                    Intent settingsIntent = new Intent(Settings.ACTION_SETTINGS);
+                    settingsIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+
+                    try {
+                        startActivity(settingsIntent,
+                                U.getActivityOptionsBundle(context, ApplicationType.APP_PORTRAIT, view));
+                    } catch (ActivityNotFoundException e) {
+                        U.showToast(context, R.string.tb_lock_device_not_supported);
+                    } catch (IllegalArgumentException ignored) {}
+                });
+
+                prepareToClose();
+                break;
+            case PREF_LOCK_DEVICE:
+                U.lockDevice(context);
+                prepareToClose();
+                break;
+            case PREF_POWER_MENU:
+                U.sendAccessibilityAction(context, AccessibilityService.GLOBAL_ACTION_POWER_DIALOG, () -> {
+                    if(LauncherHelper.getInstance().isOnSecondaryHomeScreen(context)) {
+                        U.showToast(context, R.string.tb_opening_power_menu);
+                        U.sendBroadcast(context, ACTION_UNDIM_SCREEN);
+                    }
+                });
+
+                prepareToClose();
+                break;
+            case PREF_ADD_ICON_TO_DESKTOP:
+                Intent intent = U.getThemedIntent(context, DesktopIconSelectAppActivity.class);
+                intent.putExtra("desktop_icon", desktopIcon);
+
+                startSelectAppActivity(intent);
+                prepareToClose();
+                break;
+            case PREF_ARRANGE_ICONS:
+                U.sendBroadcast(context, ACTION_ENTER_ICON_ARRANGE_MODE);
+                break;
+            case PREF_SORT_BY_NAME:
+                U.sendBroadcast(context, ACTION_SORT_DESKTOP_ICONS);
+                break;
+            case PREF_CHANGE_WALLPAPER:
+                if(LauncherHelper.getInstance().isOnSecondaryHomeScreen(context)) {
+                    generateWallpaperOptions();
+                    secondaryMenu = true;
+                } else if(U.isChromeOs(context)) {
+                    U.sendBroadcast(context, ACTION_WALLPAPER_CHANGE_REQUESTED);
+                } else {
+                    changeWallpaper();
+                    prepareToClose();
+                }
+                break;
+            case PREF_REMOVE_DESKTOP_ICON:
+                try {
+                    SharedPreferences pref2 = U.getSharedPreferences(context);
+                    JSONArray jsonIcons = new JSONArray(pref2.getString(PREF_DESKTOP_ICONS, "[]"));
+                    int iconToRemove = -1;
+
+                    for(int i = 0; i < jsonIcons.length(); i++) {
+                        DesktopIconInfo info = DesktopIconInfo.fromJson(jsonIcons.getJSONObject(i));
+                        if(info != null && info.column == desktopIcon.column && info.row == desktopIcon.row) {
+                            iconToRemove = i;
+                            break;
+                        }
+                    }
+
+                    if(iconToRemove > -1) {
+                        jsonIcons.remove(iconToRemove);
+
+                        pref2.edit().putString(PREF_DESKTOP_ICONS, jsonIcons.toString()).apply();
+                        U.sendBroadcast(context, ACTION_REFRESH_DESKTOP_ICONS);
+                    }
+                } catch (JSONException ignored) {}
+                break;
+            case PREF_CHANGE_WALLPAPER_GLOBAL:
+                changeWallpaper();
+                prepareToClose();
+                break;
+            case PREF_CHANGE_WALLPAPER_DESKTOP:
+                U.sendBroadcast(context, ACTION_WALLPAPER_CHANGE_REQUESTED);
+                break;
+            case PREF_REMOVE_DESKTOP_WALLPAPER:
+                U.sendBroadcast(context, ACTION_REMOVE_DESKTOP_WALLPAPER);
+                break;
+        }
+
+        return !secondaryMenu;
+    }
+
+    /**
+     * Long-pressing a window size saves it without launching the app.
+     */
+    public boolean onItemLongClick(String key) {
+        if(entry == null || !key.startsWith("window_size_")) return false;
+
+        String windowSize = key.replace("window_size_", "");
+        SavedWindowSizes.getInstance(context).setWindowSize(context, entry.getPackageName(), windowSize);
+
+        generateWindowSizes();
+        return true;
+    }
+
+    /**
+     * Returns true if the back press was handled by going back to the main menu.
+     */
+    public boolean onBackPressed() {
+        if(!secondaryMenu) return false;
+
+        secondaryMenu = false;
+        generateMenu();
+
+        if(U.hasBrokenSetLaunchBoundsApi())
+            U.cancelToast();
+
+        return true;
+    }
+
+    private void startSelectAppActivity(Intent intent) {
+        if(U.hasFreeformSupport(context)
+                && U.isFreeformModeEnabled(context)
+                && host.isInMultiWindowMode()) {
+            intent.putExtra("no_shadow", true);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_LAUNCH_ADJACENT);
+
+            U.startActivityMaximized(U.getDisplayContext(context), intent);
+        } else {
+            try {
+                startActivity(intent, null);
+            } catch (IllegalArgumentException ignored) {}
+        }
+    }
+
+    private void changeWallpaper() {
+        if(LauncherHelper.getInstance().isOnHomeScreen(context))
+            U.sendBroadcast(context, ACTION_TEMP_HIDE_TASKBAR);
+
+        Intent intent = Intent.createChooser(new Intent(Intent.ACTION_SET_WALLPAPER), context.getString(R.string.tb_set_wallpaper));
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        U.startActivityMaximized(U.getDisplayContext(context), intent);
+    }
+
+    private void startActivity(Intent intent, Bundle options) {
+        if(!(context instanceof Activity))
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+
+        context.startActivity(intent, options);
+    }
+
+    private void prepareToClose() {
+        showStartMenu = false;
+        shouldHideTaskbar = true;
+    }
+
+    @TargetApi(Build.VERSION_CODES.N_MR1)
+    private int getLauncherShortcuts() {
+        // Shortcuts that aren't cached yet are loaded in the background, and the menu is redrawn once they arrive
+        TaskScheduler.Callback<List<ShortcutInfo>> callback = shortcutsRequested ? null : result -> {
+            if(!closed && !secondaryMenu && !result.isEmpty()) generateMenu();
+        };
+
+        shortcutsRequested = true;
+        shortcuts = ShortcutCache.getInstance().getShortcuts(context, entry, callback);
+        return shortcuts.size();
+    }
+
+    @TargetApi(Build.VERSION_CODES.N_MR1)
+    private void addShortcuts(List<Item> items) {
+        ShortcutCache cache = ShortcutCache.getInstance();
+        for(int i = 0; i < shortcuts.size() && i < 5; i++) {
+            ShortcutInfo shortcut = shortcuts.get(i);
+            items.add(new Item("shortcut_" + (i + 1), getShortcutTitle(shortcut), false, cache.getIcon(shortcut)));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.N_MR1)
+    private CharSequence getShortcutTitle(ShortcutInfo shortcut) {
+        CharSequence longLabel = shortcut.getLongLabel();
+        if(longLabel != null && longLabel.length() > 0 && longLabel.length() <= 20)
+            return longLabel;
+        else
+            return shortcut.getShortLabel();
+    }
+
+    /**
+     * Large screens on older versions show the menu's title in the window itself.
+     */
+    private CharSequence addHeader(List<Item> items, CharSequence title) {
+        if(context.getResources().getConfiguration().screenWidthDp >= 600
+                && Build.VERSION.SDK_INT <= Build.VERSION_CODES.M)
+            return title;
+
+        items.add(new Item(PREF_HEADER, title, true, null));
+        return null;
+    }
+
+    private void addItem(List<Item> items, String key, CharSequence title) {
+        items.add(new Item(key, title, false, null));
+    }
+
+    private void addItems(List<Item> items, int xmlResId) {
+        for(Definition definition : getDefinitions(context, xmlResId)) {
+            CharSequence title = definition.titleRes != 0 ? context.getString(definition.titleRes) : null;
+            items.add(new Item(definition.key, title, definition.isHeader, null));
+        }
+    }
+
+    private void removeItem(List<Item> items, String key) {
+        for(int i = items.size() - 1; i >= 0; i--) {
+            if(items.get(i).key.equals(key)) items.remove(i);
+        }
+    }
+
+    private static List<Definition> getDefinitions(Context context, int xmlResId) {
+        synchronized(definitions) {
+            List<Definition> definition = definitions.get(xmlResId);
+            if(definition != null) return definition;
+        }
+
+        List<Definition> definition = new ArrayList<>();
+        XmlResourceParser parser = context.getResources().getXml(xmlResId);
+        try {
+            int eventType = parser.getEventType();
+            while(eventType != XmlPullParser.END_DOCUMENT) {
+                if(eventType == XmlPullParser.START_TAG
+                        && (parser.getName().equals("Preference") || parser.getName().equals("PreferenceCategory"))) {
+                    String key = parser.getAttributeValue(ANDROID_NS, "key");
+                    int titleRes = parser.getAttributeResourceValue(ANDROID_NS, "title", 0);
+
+                    if(key != null)
+                        definition.add(new Definition(key, titleRes, parser.getName().equals("PreferenceCategory")));
+                }
+
+                eventType = parser.next();
+            }
+        } catch (Exception e) {
+            return definition;
+        } finally {
+            parser.close();
+        }
+
+        synchronized(definitions) {
+            definitions.put(xmlResId, definition);
+        }
+
+        return definition;
+    }
+}
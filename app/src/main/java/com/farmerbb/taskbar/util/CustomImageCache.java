@@ -0,0 +1,241 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.os.Build;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Decodes the custom images in tb_images (the desktop wallpaper and the start button image) at
+ * the size they are shown at, rather than at full resolution.
+ *
+ * Scaled images are kept on disk per target size, so that later decodes are cheap, and in memory,
+ * so that every home screen showing the same image at the same size shares one bitmap.
+ */
+public class CustomImageCache implements MemoryPolicy.Trimmable {
+
+    public interface Listener {
+        void onImageLoaded(Bitmap bitmap);
+    }
+
+    private static final String CACHE_DIR = "tb_images_scaled";
+
+    private final LruCache<String, Bitmap> images;
+
+    private static CustomImageCache theInstance;
+
+    private CustomImageCache(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        final int memClass = am.getMemoryClass();
+        final int cacheSize = (1024 * 1024 * memClass) / 8;
+
+        images = new LruCache<String, Bitmap>(cacheSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+
+        MemoryPolicy.getInstance(context).register(this);
+    }
+
+    public static CustomImageCache getInstance(Context context) {
+        if(theInstance == null) theInstance = new CustomImageCache(context);
+
+        return theInstance;
+    }
+
+    /**
+     * Loads an image so that it covers the given size, scaling it down but never up. A width or
+     * height of zero or less loads the image at full size.
+     */
+    public void load(Context context, File file, int width, int height, Listener listener) {
+        String key = getKey(file, width, height);
+        Bitmap cached = images.get(key);
+        if(cached != null) {
+            listener.onImageLoaded(cached);
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+        getLane().submit(token -> loadAndCache(appContext, file, key, width, height), listener::onImageLoaded);
+    }
+
+    /**
+     * Drops every cached copy of an image, for when it has been removed.
+     */
+    public void remove(Context context, String filename) {
+        for(String key : images.snapshot().keySet()) {
+            if(key.startsWith(filename + "_")) images.remove(key);
+        }
+
+        File cacheDir = getCacheDir(context);
+        getLane().execute(() -> deleteScaledFiles(cacheDir, filename, null));
+    }
+
+    private TaskScheduler.Lane getLane() {
+        return TaskScheduler.getInstance().lane(TaskScheduler.LANE_CUSTOM_IMAGES);
+    }
+
+    public void clearCache() {
+        images.evictAll();
+    }
+
+    @Override
+    public void trimMemory(int tier) {
+        images.trimToSize((int) (images.maxSize() * MemoryPolicy.getRetainFraction(tier)));
+    }
+
+    @VisibleForTesting
+    static String getSourcePrefix(File file) {
+        return file.getName() + "_" + file.lastModified() + "_" + file.length() + "_";
+    }
+
+    @VisibleForTesting
+    static String getKey(File file, int width, int height) {
+        return getSourcePrefix(file) + Math.max(0, width) + "x" + Math.max(0, height);
+    }
+
+    /**
+     * Returns how much an image has to be scaled by so that it still covers the target size,
+     * which is what the center-cropped wallpaper needs.
+     */
+    @VisibleForTesting
+    static float getScale(int sourceWidth, int sourceHeight, int width, int height) {
+        if(width <= 0 || height <= 0) return 1;
+
+        return Math.min(1, Math.max((float) width / sourceWidth, (float) height / sourceHeight));
+    }
+
+    @VisibleForTesting
+    static int getSampleSize(int sourceWidth, int sourceHeight, int width, int height) {
+        int sampleSize = 1;
+        while(sourceWidth / (sampleSize * 2) >= width && sourceHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+
+        return sampleSize;
+    }
+
+    private Bitmap loadAndCache(Context context, File file, String key, int width, int height) {
+        Bitmap bitmap = images.get(key);
+        if(bitmap != null) return bitmap;
+
+        File cacheDir = getCacheDir(context);
+        File cachedFile = new File(cacheDir, key);
+        if(cachedFile.exists())
+            bitmap = BitmapFactory.decodeFile(cachedFile.getPath());
+
+        if(bitmap == null) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(file.getPath(), options);
+            if(options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+            float scale = getScale(options.outWidth, options.outHeight, width, height);
+            int targetWidth = Math.max(1, Math.round(options.outWidth * scale));
+            int targetHeight = Math.max(1, Math.round(options.outHeight * scale));
+
+            bitmap = decode(file, options.outWidth, options.outHeight, targetWidth, targetHeight);
+            if(bitmap == null) return null;
+
+            // Images that are already small enough are cheaper to read from the original file
+            if(scale < 1) writeScaledFile(cacheDir, cachedFile, file, bitmap);
+        }
+
+        images.put(key, bitmap);
+        return bitmap;
+    }
+
+    private Bitmap decode(File file, int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            try {
+                return ImageDecoder.decodeBitmap(ImageDecoder.createSource(file), (decoder, info, source) -> {
+                    // Software bitmaps can be compressed into the disk cache
+                    decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+                    if(targetWidth != sourceWidth || targetHeight != sourceHeight)
+                        decoder.setTargetSize(targetWidth, targetHeight);
+                });
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = getSampleSize(sourceWidth, sourceHeight, targetWidth, targetHeight);
+
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if(bitmap == null || (bitmap.getWidth() == targetWidth && bitmap.getHeight() == targetHeight))
+            return bitmap;
+
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, true);
+        if(scaled != bitmap) bitmap.recycle();
+
+        return scaled;
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private void writeScaledFile(File cacheDir, File cachedFile, File source, Bitmap bitmap) {
+        cacheDir.mkdirs();
+        deleteScaledFiles(cacheDir, source.getName(), getSourcePrefix(source));
+
+        File tempFile = new File(cacheDir, cachedFile.getName() + ".tmp");
+        Bitmap.CompressFormat format = bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+
+        try(OutputStream output = new FileOutputStream(tempFile)) {
+            if(!bitmap.compress(format, 90, output)) {
+                tempFile.delete();
+                return;
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            return;
+        }
+
+        if(!tempFile.renameTo(cachedFile)) tempFile.delete();
+    }
+
+    /**
+     * Deletes the scaled copies of an image, except the ones made from its current version.
+     */
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private void deleteScaledFiles(File cacheDir, String filename, String keepPrefix) {
+        File[] files = cacheDir.listFiles();
+        if(files == null) return;
+
+        for(File file : files) {
+            String name = file.getName();
+            if(name.startsWith(filename + "_") && (keepPrefix == null || !name.startsWith(keepPrefix)))
+                file.delete();
+        }
+    }
+
+    private File getCacheDir(Context context) {
+        return new File(context.getCacheDir(), CACHE_DIR);
+    }
+}
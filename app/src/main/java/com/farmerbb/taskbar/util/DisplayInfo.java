@@ -16,11 +16,11 @@
 package com.farmerbb.taskbar.util;
 
 public class DisplayInfo {
-    public int width;
-    public int height;
-    public int currentDensity;
-    public int defaultDensity;
-    public boolean displayDefaultsToFreeform;
+    public final int width;
+    public final int height;
+    public final int currentDensity;
+    public final int defaultDensity;
+    public final boolean displayDefaultsToFreeform;
 
     DisplayInfo(int width, int height, int currentDensity, int defaultDensity, boolean displayDefaultsToFreeform) {
         this.width = width;
@@ -0,0 +1,158 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.hardware.display.DisplayManager;
+import android.view.Display;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.farmerbb.taskbar.util.Constants.*;
+
+/**
+ * Holds one DisplayInfo snapshot per display, so that U.getDisplayInfo() only has to query the
+ * DisplayManager when something about that display has actually changed.
+ */
+public class DisplayInfoCache {
+
+    public static final int VARIANT_DEFAULT = 0;
+    public static final int VARIANT_TASKBAR = 1;
+    public static final int VARIANT_EXTERNAL = 2;
+
+    private final Map<Integer, DisplayInfo> snapshots = new ConcurrentHashMap<>();
+    private volatile Display[] displays;
+    private volatile boolean listenersRegistered;
+    private volatile Context registeredContext;
+
+    private final DisplayManager.DisplayListener displayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+            clear();
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+            clear();
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            invalidate(displayId);
+        }
+    };
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener prefListener = (sharedPreferences, key) -> {
+        if(affectsDisplayInfo(key)) snapshots.clear();
+    };
+
+    private static DisplayInfoCache theInstance;
+
+    private DisplayInfoCache() {}
+
+    public static DisplayInfoCache getInstance() {
+        if(theInstance == null) theInstance = new DisplayInfoCache();
+
+        return theInstance;
+    }
+
+    public DisplayInfo get(Context context, int displayId, int variant) {
+        registerListenersIfNeeded(context);
+        return snapshots.get(getKey(displayId, variant));
+    }
+
+    public void put(int displayId, int variant, DisplayInfo info) {
+        if(listenersRegistered) snapshots.put(getKey(displayId, variant), info);
+    }
+
+    public Display[] getDisplays(Context context) {
+        registerListenersIfNeeded(context);
+
+        Display[] cached = displays;
+        if(cached != null) return cached;
+
+        DisplayManager dm = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        Display[] current = dm.getDisplays();
+        if(listenersRegistered && current.length > 0) displays = current;
+
+        return current;
+    }
+
+    public void invalidate(int displayId) {
+        snapshots.remove(getKey(displayId, VARIANT_DEFAULT));
+        snapshots.remove(getKey(displayId, VARIANT_TASKBAR));
+        snapshots.remove(getKey(displayId, VARIANT_EXTERNAL));
+    }
+
+    public void clear() {
+        snapshots.clear();
+        displays = null;
+    }
+
+    private void registerListenersIfNeeded(Context context) {
+        Context appContext = context.getApplicationContext();
+        if(appContext == null || appContext == registeredContext) return;
+
+        synchronized(this) {
+            if(appContext != registeredContext) registerListeners(appContext);
+        }
+    }
+
+    private void registerListeners(Context appContext) {
+        DisplayManager dm = (DisplayManager) appContext.getSystemService(Context.DISPLAY_SERVICE);
+        if(dm == null) return;
+
+        if(registeredContext != null) {
+            DisplayManager oldDm = (DisplayManager) registeredContext.getSystemService(Context.DISPLAY_SERVICE);
+            if(oldDm != null) oldDm.unregisterDisplayListener(displayListener);
+
+            U.getSharedPreferences(registeredContext).unregisterOnSharedPreferenceChangeListener(prefListener);
+            clear();
+        }
+
+        dm.registerDisplayListener(displayListener, U.newHandler());
+        U.getSharedPreferences(appContext).registerOnSharedPreferenceChangeListener(prefListener);
+
+        registeredContext = appContext;
+        listenersRegistered = true;
+    }
+
+    // Only the prefs read while building a DisplayInfo (density override, taskbar display,
+    // navbar hiding and freeform overrides) can make a snapshot stale
+    @VisibleForTesting
+    static boolean affectsDisplayInfo(String key) {
+        if(key == null) return true;
+
+        switch(key) {
+            case PREF_DISPLAY_DENSITY:
+            case PREF_DESKTOP_MODE:
+            case PREF_AUTO_HIDE_NAVBAR_DESKTOP_MODE:
+            case PREF_CHROME_OS_CONTEXT_MENU_FIX:
+            case PREF_OVERRIDE_FREEFORM_UNSUPPORTED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int getKey(int displayId, int variant) {
+        return (displayId << 2) | variant;
+    }
+}
@@ -20,31 +20,157 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
 import android.content.pm.PackageManager;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.LruCache;
 
+import androidx.annotation.VisibleForTesting;
+
+import com.farmerbb.taskbar.R;
+import com.farmerbb.taskbar.helper.TraceHelper;
+
+import java.util.List;
+
 import static com.farmerbb.taskbar.util.Constants.*;
 
-public class IconCache {
+/**
+ * Caches app icons for the current icon pack.
+ *
+ * Icons are kept in a generation, which belongs to one icon pack. Switching icon packs builds
+ * a new generation in the background while the old one keeps serving icons, then swaps them.
+ *
+ * Icons are drawn straight at the size they are shown at (rounded up to a size bucket, so that
+ * displays with slightly different densities share entries) rather than at their intrinsic size,
+ * which for adaptive icons and icon packs is often several times larger.
+ */
+public class IconCache implements MemoryPolicy.Trimmable {
+
+    private static final int ICON_SIZE_BUCKET = 16;
 
-    private final LruCache<String, BitmapDrawable> drawables;
+    private final Context context;
+    private final int cacheSize;
+    private volatile Generation generation;
+    private TaskScheduler.WorkToken switchToken;
 
     private static IconCache theInstance;
 
+    private final LauncherApps.Callback callback = new LauncherApps.Callback() {
+        @Override
+        public void onPackageRemoved(String packageName, UserHandle user) {
+            invalidate(packageName, user);
+        }
+
+        @Override
+        public void onPackageAdded(String packageName, UserHandle user) {
+            invalidate(packageName, user);
+        }
+
+        @Override
+        public void onPackageChanged(String packageName, UserHandle user) {
+            invalidate(packageName, user);
+        }
+
+        @Override
+        public void onPackagesAvailable(String[] packageNames, UserHandle user, boolean replacing) {
+            for(String packageName : packageNames) {
+                invalidate(packageName, user);
+            }
+        }
+
+        @Override
+        public void onPackagesUnavailable(String[] packageNames, UserHandle user, boolean replacing) {
+            for(String packageName : packageNames) {
+                invalidate(packageName, user);
+            }
+        }
+    };
+
+    /**
+     * A set of cached icons that all belong to the same icon pack.
+     */
+    public final class Generation {
+        private final String iconPackPackage;
+        private final boolean useMask;
+        private final IconPack iconPack;
+        private final LruCache<String, BitmapDrawable> drawables;
+        private volatile boolean iconPackMissing = false;
+
+        private Generation(String iconPackPackage, boolean useMask, IconPack iconPack) {
+            this.iconPackPackage = iconPackPackage;
+            this.useMask = useMask;
+            this.iconPack = iconPack;
+
+            drawables = new LruCache<String, BitmapDrawable>(cacheSize) {
+                @Override
+                protected int sizeOf(String key, BitmapDrawable value) {
+                    return value.getBitmap().getByteCount();
+                }
+            };
+        }
+
+        public String getIconPackPackage() {
+            return iconPackPackage;
+        }
+
+        public BitmapDrawable getIcon(Context context, PackageManager pm, LauncherActivityInfo appInfo) {
+            UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
+            int iconSize = getIconSize(context);
+            String name;
+
+            try {
+               name = getIconKey(appInfo.getComponentName().flattenToString(),
+                       userManager.getSerialNumberForUser(appInfo.getUser()), iconSize);
+            } catch (NullPointerException e) {
+                return U.rasterizeDrawable(context, pm.getDefaultActivityIcon(), iconSize);
+            }
+
+            BitmapDrawable drawable;
+
+            synchronized (drawables) {
+                drawable = drawables.get(name);
+                if(drawable == null) {
+                    // Only cache misses are traced, since hits are just a map lookup
+                    long traceToken = TraceHelper.getInstance().begin(TraceHelper.STAGE_GET_ICON);
+                    try {
+                        Drawable loadedIcon = loadIcon(context, pm, appInfo, this);
+                        drawable = U.rasterizeDrawable(context, loadedIcon, iconSize);
+                    } finally {
+                        TraceHelper.getInstance().end(TraceHelper.STAGE_GET_ICON, traceToken);
+                    }
+
+                    drawables.put(name, drawable);
+                }
+            }
+
+            return drawable;
+        }
+    }
+
+    private static class ThemeSwitch {
+        private final Generation generation;
+        private final List<AppEntry> pinnedApps;
+
+        private ThemeSwitch(Generation generation, List<AppEntry> pinnedApps) {
+            this.generation = generation;
+            this.pinnedApps = pinnedApps;
+        }
+    }
+
     private IconCache(Context context) {
+        this.context = context.getApplicationContext();
+
         ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
         final int memClass = am.getMemoryClass();
-        final int cacheSize = (1024 * 1024 * memClass) / 8;
+        cacheSize = (1024 * 1024 * memClass) / 8;
 
-        drawables = new LruCache<String, BitmapDrawable>(cacheSize) {
-            @Override
-            protected int sizeOf(String key, BitmapDrawable value) {
-                return value.getBitmap().getByteCount();
-            }
-        };
+        MemoryPolicy.getInstance(context).register(this);
+
+        LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
+        if(launcherApps != null) launcherApps.registerCallback(callback, U.newHandler());
     }
 
     public static IconCache getInstance(Context context) {
@@ -58,48 +184,149 @@ public class IconCache {
     }
 
     public BitmapDrawable getIcon(Context context, PackageManager pm, LauncherActivityInfo appInfo) {
-        UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
-        String name;
+        return getGeneration(context).getIcon(context, pm, appInfo);
+    }
 
-        try {
-           name = appInfo.getComponentName().flattenToString() + ":" + userManager.getSerialNumberForUser(appInfo.getUser());
-        } catch (NullPointerException e) {
-            return U.convertToBitmapDrawable(context, pm.getDefaultActivityIcon());
+    /**
+     * Returns the current generation, creating it from the saved icon pack if needed.
+     */
+    public Generation getGeneration(Context context) {
+        Generation current = generation;
+        if(current != null) return current;
+
+        synchronized(this) {
+            if(generation == null) {
+                SharedPreferences pref = U.getSharedPreferences(context);
+                generation = createGeneration(context,
+                        pref.getString(PREF_ICON_PACK, context.getPackageName()),
+                        pref.getBoolean(PREF_ICON_PACK_USE_MASK, false));
+            }
+
+            return generation;
         }
+    }
 
-        BitmapDrawable drawable;
+    /**
+     * Switches to a different icon pack without blanking any icons.
+     *
+     * The new generation is built and filled with every launchable app's icon in the background,
+     * while the current one keeps serving icons. Once it is ready, the generations are swapped,
+     * pinned apps are rebuilt with their new icons, and the taskbar, start menu and desktop icons
+     * are told to rebind. Must be called from the main thread.
+     */
+    public TaskScheduler.WorkToken switchIconPack(Context context, String iconPackPackage, boolean useMask) {
+        Context appContext = context.getApplicationContext();
 
-        synchronized (drawables) {
-            drawable = drawables.get(name);
-            if(drawable == null) {
-                Drawable loadedIcon = loadIcon(context, pm, appInfo);
-                drawable = U.convertToBitmapDrawable(context, loadedIcon);
+        // IconPack reads the mask preference itself while loading, so save both up front
+        U.getSharedPreferences(appContext).edit()
+                .putString(PREF_ICON_PACK, iconPackPackage)
+                .putBoolean(PREF_ICON_PACK_USE_MASK, useMask)
+                .apply();
 
-                drawables.put(name, drawable);
+        if(switchToken != null) switchToken.cancel();
+
+        TaskScheduler.Lane lane = TaskScheduler.getInstance().lane(TaskScheduler.LANE_ICON_THEME);
+        switchToken = lane.submit(token -> {
+            Generation next = createGeneration(appContext, iconPackPackage, useMask);
+            warmGeneration(appContext, next, token);
+
+            token.throwIfCancelled();
+            return new ThemeSwitch(next, U.generatePinnedApps(appContext, next));
+        }, result -> {
+            switchToken = null;
+            generation = result.generation;
+
+            U.applyPinnedApps(appContext, result.pinnedApps);
+            U.sendBroadcast(appContext, ACTION_ICON_THEME_CHANGED);
+            U.sendBroadcast(appContext, ACTION_REFRESH_DESKTOP_ICONS);
+        });
+
+        return switchToken;
+    }
+
+    private Generation createGeneration(Context context, String iconPackPackage, boolean useMask) {
+        if(!iconPackPackage.equals(context.getPackageName())) {
+            try {
+                context.getPackageManager().getPackageInfo(iconPackPackage, 0);
+            } catch (PackageManager.NameNotFoundException e) {
+                iconPackPackage = context.getPackageName();
+                U.getSharedPreferences(context).edit().putString(PREF_ICON_PACK, iconPackPackage).apply();
             }
         }
 
-        return drawable;
+        IconPack iconPack = null;
+        if(!iconPackPackage.equals(context.getPackageName())) {
+            iconPack = new IconPack();
+            iconPack.setPackageName(iconPackPackage);
+        }
+
+        return new Generation(iconPackPackage, useMask, iconPack);
     }
 
-    private Drawable loadIcon(Context context, PackageManager pm, LauncherActivityInfo appInfo) {
-        SharedPreferences pref = U.getSharedPreferences(context);
-        String iconPackPackage = pref.getString(PREF_ICON_PACK, context.getPackageName());
-        boolean useMask = pref.getBoolean(PREF_ICON_PACK_USE_MASK, false);
-        IconPackManager iconPackManager = IconPackManager.getInstance();
+    private void warmGeneration(Context context, Generation next, TaskScheduler.WorkToken token) {
+        PackageManager pm = context.getPackageManager();
+        UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
+        LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
 
-        try {
-            pm.getPackageInfo(iconPackPackage, 0);
-        } catch (PackageManager.NameNotFoundException e) {
-            iconPackPackage = context.getPackageName();
-            pref.edit().putString(PREF_ICON_PACK, iconPackPackage).apply();
-            U.refreshPinnedIcons(context);
+        for(UserHandle handle : userManager.getUserProfiles()) {
+            for(LauncherActivityInfo appInfo : launcherApps.getActivityList(null, handle)) {
+                token.throwIfCancelled();
+                next.getIcon(context, pm, appInfo);
+            }
         }
+    }
+
+    private Drawable loadIcon(Context context, PackageManager pm, LauncherActivityInfo appInfo, Generation generation) {
+        if(generation.iconPack != null && !generation.iconPackMissing) {
+            try {
+                pm.getPackageInfo(generation.iconPackPackage, 0);
+            } catch (PackageManager.NameNotFoundException e) {
+                onIconPackMissing(context, generation);
+            }
+        }
+
+        if(generation.iconPackMissing)
+            return getIcon(pm, appInfo);
+
+        return loadIcon(context, pm, appInfo, generation.iconPack, generation.useMask);
+    }
+
+    /**
+     * Falls back to default icons once the given generation's icon pack has been uninstalled.
+     * Only the first call for a generation does anything; returns whether this was it.
+     */
+    @VisibleForTesting
+    boolean onIconPackMissing(Context context, Generation missing) {
+        Context appContext = context.getApplicationContext();
+        Generation fallback;
 
-        if(iconPackPackage.equals(context.getPackageName()))
+        synchronized(this) {
+            if(missing.iconPackMissing) return false;
+
+            missing.iconPackMissing = true;
+            if(generation != missing) return true;
+
+            fallback = new Generation(appContext.getPackageName(), missing.useMask, null);
+            generation = fallback;
+        }
+
+        U.getSharedPreferences(appContext).edit().putString(PREF_ICON_PACK, appContext.getPackageName()).apply();
+        U.newHandler().post(() -> {
+            U.applyPinnedApps(appContext, U.generatePinnedApps(appContext, fallback));
+            U.sendBroadcast(appContext, ACTION_ICON_THEME_CHANGED);
+            U.sendBroadcast(appContext, ACTION_REFRESH_DESKTOP_ICONS);
+        });
+
+        return true;
+    }
+
+    /**
+     * Loads an app's icon from the given icon pack, without touching the cache.
+     */
+    Drawable loadIcon(Context context, PackageManager pm, LauncherActivityInfo appInfo, IconPack iconPack, boolean useMask) {
+        if(iconPack == null)
             return getIcon(pm, appInfo);
         else {
-            IconPack iconPack = iconPackManager.getIconPack(iconPackPackage);
             String componentName = new ComponentName(appInfo.getApplicationInfo().packageName, appInfo.getName()).toString();
 
             if(!useMask) {
@@ -118,12 +345,142 @@ public class IconCache {
         }
     }
 
+    /**
+     * Returns the icon of an installed package, such as an icon pack, loading it if needed.
+     */
+    public BitmapDrawable getApplicationIcon(Context context, PackageManager pm, String packageName) {
+        String name = "package:" + packageName;
+        LruCache<String, BitmapDrawable> drawables = getGeneration(context).drawables;
+        BitmapDrawable drawable;
+
+        synchronized (drawables) {
+            drawable = drawables.get(name);
+            if(drawable == null) {
+                Drawable loadedIcon;
+                try {
+                    loadedIcon = pm.getApplicationIcon(packageName);
+                } catch (PackageManager.NameNotFoundException e) {
+                    loadedIcon = pm.getDefaultActivityIcon();
+                }
+
+                drawable = U.convertToBitmapDrawable(context, loadedIcon);
+                drawables.put(name, drawable);
+            }
+        }
+
+        return drawable;
+    }
+
+    /**
+     * Returns the cache key of an app's icon at the given size (see {@link #getIconSize}).
+     */
+    public static String getIconKey(String componentName, long userSerial, int iconSize) {
+        return componentName + ":" + userSerial + "@" + iconSize;
+    }
+
+    /**
+     * Returns an app's icon if it is already cached under the given key, or null otherwise.
+     */
+    public BitmapDrawable getCachedIcon(String key) {
+        Generation current = generation;
+        if(current == null) return null;
+
+        synchronized (current.drawables) {
+            return current.drawables.get(key);
+        }
+    }
+
+    @VisibleForTesting
+    void putCachedIcon(Context context, String key, BitmapDrawable drawable) {
+        LruCache<String, BitmapDrawable> drawables = getGeneration(context).drawables;
+        synchronized (drawables) {
+            drawables.put(key, drawable);
+        }
+    }
+
+    /**
+     * Returns the icon of an installed package if it is already cached, or null otherwise.
+     */
+    public BitmapDrawable getCachedApplicationIcon(String packageName) {
+        Generation current = generation;
+        if(current == null) return null;
+
+        synchronized (current.drawables) {
+            return current.drawables.get("package:" + packageName);
+        }
+    }
+
+    private void invalidate(String packageName, UserHandle user) {
+        UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
+
+        // Views keep showing the icons they were bound with, so have them rebind
+        if(evictPackage(packageName, userManager.getSerialNumberForUser(user)) > 0)
+            U.sendBroadcast(context, ACTION_ICON_THEME_CHANGED);
+    }
+
+    /**
+     * Drops the cached icons of a package's activities for one user, at every size, so that an
+     * updated app's new icon is picked up. Returns the number of icons dropped.
+     */
+    @VisibleForTesting
+    int evictPackage(String packageName, long userSerial) {
+        Generation current = generation;
+        if(current == null) return 0;
+
+        String componentPrefix = packageName + "/";
+        String userPart = ":" + userSerial + "@";
+        int evicted = 0;
+
+        synchronized (current.drawables) {
+            for(String key : current.drawables.snapshot().keySet()) {
+                if((key.startsWith(componentPrefix) && key.contains(userPart))
+                        || key.equals("package:" + packageName)) {
+                    current.drawables.remove(key);
+                    evicted++;
+                }
+            }
+        }
+
+        return evicted;
+    }
+
     public void clearCache() {
-        drawables.evictAll();
-        IconPackManager.getInstance().nullify();
+        synchronized(this) {
+            if(switchToken != null) switchToken.cancel();
+
+            switchToken = null;
+            generation = null;
+        }
+
         System.gc();
     }
 
+    @Override
+    public void trimMemory(int tier) {
+        Generation current = generation;
+        if(current == null) return;
+
+        LruCache<String, BitmapDrawable> drawables = current.drawables;
+        synchronized (drawables) {
+            if(tier == MemoryPolicy.TIER_EVICT)
+                drawables.evictAll();
+            else
+                drawables.trimToSize((int) (drawables.maxSize() * MemoryPolicy.getRetainFraction(tier)));
+        }
+    }
+
+    /**
+     * Returns the size icons are cached at for the given context, in pixels.
+     */
+    public static int getIconSize(Context context) {
+        return getSizeBucket(context.getResources().getDimensionPixelSize(R.dimen.tb_icon_size));
+    }
+
+    @VisibleForTesting
+    static int getSizeBucket(int size) {
+        return Math.max(1, (size + ICON_SIZE_BUCKET - 1) / ICON_SIZE_BUCKET) * ICON_SIZE_BUCKET;
+    }
+
     private Drawable getIcon(PackageManager pm, LauncherActivityInfo appInfo) {
         try {
             return appInfo.getBadgedIcon(0);
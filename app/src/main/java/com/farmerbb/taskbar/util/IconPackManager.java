@@ -18,20 +18,36 @@
 
 package com.farmerbb.taskbar.util;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class IconPackManager {
 
     private static IconPackManager theInstance;
 
-    private IconPack currentIconPack;
+    private volatile List<IconPack> cachedIconPacks;
+    private volatile int packageChanges = 0;
+    private Context receiverContext;
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidateIconPacks();
+        }
+    };
 
     private IconPackManager() {}
 
@@ -61,16 +77,65 @@ public class IconPackManager {
         return iconPacks;
     }
 
-    void nullify() {
-        currentIconPack = null;
-    }
+    /**
+     * Returns the installed icon packs sorted by name. The list is cached until a package
+     * is installed, updated or removed.
+     */
+    public List<IconPack> getCachedIconPacks(Context context) {
+        registerReceiverIfNeeded(context);
+
+        List<IconPack> iconPacks = cachedIconPacks;
+        if(iconPacks == null) {
+            int changes = packageChanges;
+            iconPacks = getAvailableIconPacks(context);
 
-    IconPack getIconPack(String packageName) {
-        if(currentIconPack == null || !currentIconPack.getPackageName().equals(packageName)) {
-            currentIconPack = new IconPack();
-            currentIconPack.setPackageName(packageName);
+            Collator collator = Collator.getInstance();
+            Map<IconPack, CollationKey> keys = new HashMap<>();
+            for(IconPack iconPack : iconPacks) {
+                keys.put(iconPack, collator.getCollationKey(iconPack.getName()));
+            }
+
+            Collections.sort(iconPacks, (ip1, ip2) -> keys.get(ip1).compareTo(keys.get(ip2)));
+
+            iconPacks = Collections.unmodifiableList(iconPacks);
+
+            // Don't cache a list that a package change may already have made stale
+            if(changes == packageChanges)
+                cachedIconPacks = iconPacks;
         }
 
-        return currentIconPack;
+        return new ArrayList<>(iconPacks);
+    }
+
+    public void invalidateIconPacks() {
+        packageChanges++;
+        cachedIconPacks = null;
+    }
+
+    private synchronized void registerReceiverIfNeeded(Context context) {
+        Context appContext = context.getApplicationContext();
+        if(appContext == receiverContext) return;
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+
+        appContext.registerReceiver(packageReceiver, filter);
+        receiverContext = appContext;
+    }
+
+    /**
+     * Stops listening for package changes. The cached list is dropped as well, since changes
+     * made while no one is listening would otherwise go unnoticed.
+     */
+    public synchronized void unregisterReceiver() {
+        if(receiverContext == null) return;
+
+        receiverContext.unregisterReceiver(packageReceiver);
+        receiverContext = null;
+        invalidateIconPacks();
     }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
+import android.os.Process;
+import android.util.LruCache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static com.farmerbb.taskbar.util.Constants.*;
+
+/**
+ * Renders a few of the user's apps with a candidate icon pack, for previews in the icon pack list.
+ *
+ * Rendering happens one pack at a time on its own lane. Callers cancel the request for a row
+ * when it is rebound to another pack, so a fast scroll never builds up a backlog of icon packs
+ * to parse, while every row that is still on screen gets its preview.
+ */
+public class IconPackPreviewRenderer {
+
+    public static final int SAMPLE_SIZE = 5;
+
+    private static final int MAX_CACHED_PREVIEWS = 8;
+
+    private final Context context;
+    private final TaskScheduler.Lane lane = TaskScheduler.getInstance().lane(TaskScheduler.LANE_ICON_PACK_PREVIEWS);
+    private final Deque<TaskScheduler.WorkToken> pending = new ArrayDeque<>();
+    private final LruCache<String, List<Drawable>> previews = new LruCache<>(MAX_CACHED_PREVIEWS);
+
+    private List<LauncherActivityInfo> sampleApps;
+
+    public IconPackPreviewRenderer(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Returns the preview for an icon pack if it has already been rendered, or null otherwise.
+     */
+    public List<Drawable> getCachedPreview(String iconPackPackage) {
+        return previews.get(iconPackPackage);
+    }
+
+    /**
+     * Renders the preview for an icon pack in the background and delivers it on the main thread.
+     * Must be called from the main thread.
+     */
+    public TaskScheduler.WorkToken render(String iconPackPackage, TaskScheduler.Callback<List<Drawable>> callback) {
+        Iterator<TaskScheduler.WorkToken> iterator = pending.iterator();
+        while(iterator.hasNext()) {
+            if(iterator.next().isCancelled()) iterator.remove();
+        }
+
+        TaskScheduler.WorkToken[] tokenHolder = new TaskScheduler.WorkToken[1];
+        TaskScheduler.WorkToken token = lane.submit(t -> {
+            t.throwIfCancelled();
+
+            List<Drawable> preview = previews.get(iconPackPackage);
+            if(preview == null) {
+                preview = renderPreview(t, iconPackPackage);
+                previews.put(iconPackPackage, preview);
+            }
+
+            return preview;
+        }, preview -> {
+            pending.remove(tokenHolder[0]);
+            callback.onResult(preview);
+        });
+
+        tokenHolder[0] = token;
+        pending.addLast(token);
+        return token;
+    }
+
+    public void cancelAll() {
+        for(TaskScheduler.WorkToken token : pending) {
+            token.cancel();
+        }
+
+        pending.clear();
+    }
+
+    private List<Drawable> renderPreview(TaskScheduler.WorkToken token, String iconPackPackage) {
+        PackageManager pm = context.getPackageManager();
+        SharedPreferences pref = U.getSharedPreferences(context);
+        boolean useMask = pref.getBoolean(PREF_ICON_PACK_USE_MASK, false);
+
+        IconPack iconPack = null;
+        if(!iconPackPackage.equals(context.getPackageName())) {
+            iconPack = new IconPack();
+            iconPack.setPackageName(iconPackPackage);
+        }
+
+        IconCache iconCache = IconCache.getInstance(context);
+        List<Drawable> preview = new ArrayList<>();
+
+        for(LauncherActivityInfo appInfo : getSampleApps()) {
+            token.throwIfCancelled();
+
+            Drawable icon = iconCache.loadIcon(context, pm, appInfo, iconPack, useMask);
+            preview.add(U.convertToBitmapDrawable(context, icon));
+        }
+
+        return Collections.unmodifiableList(preview);
+    }
+
+    /**
+     * Picks the apps to show in previews: the ones launched most often, so the preview looks
+     * like the user's own taskbar.
+     */
+    private synchronized List<LauncherActivityInfo> getSampleApps() {
+        if(sampleApps != null) return sampleApps;
+
+        LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
+        List<LauncherActivityInfo> apps = new ArrayList<>(launcherApps.getActivityList(null, Process.myUserHandle()));
+
+        LaunchHistory history = LaunchHistory.getInstance(context);
+        Map<LauncherActivityInfo, Double> scores = new HashMap<>();
+        for(LauncherActivityInfo appInfo : apps) {
+            ComponentName componentName = appInfo.getComponentName();
+            AppEntry entry = new AppEntry(componentName.getPackageName(), componentName.flattenToString(), null, null, false);
+            scores.put(appInfo, history.getScore(entry));
+        }
+
+        Collections.sort(apps, (a1, a2) -> Double.compare(scores.get(a2), scores.get(a1)));
+
+        sampleApps = new ArrayList<>(apps.subList(0, Math.min(SAMPLE_SIZE, apps.size())));
+        return sampleApps;
+    }
+}
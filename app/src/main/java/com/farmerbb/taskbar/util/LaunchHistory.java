@@ -0,0 +1,283 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.content.Context;
+import android.content.pm.ShortcutInfo;
+import android.os.Build;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps an on-device log of app launches, used to rank start menu search results by frecency
+ * (how often and how recently something was launched).
+ *
+ * Launches are appended to a small binary log in batches on a background lane. Each record
+ * holds a key, a timestamp and a weight; a record's contribution to its key's score halves
+ * every {@link #HALF_LIFE_MILLIS}. Once the log grows past {@link #MAX_RECORDS}, it is compacted
+ * into one record per key.
+ */
+public class LaunchHistory {
+
+    private static final String FILE_NAME = "LaunchHistory";
+    private static final long FLUSH_DELAY_MILLIS = 5000;
+    private static final long HALF_LIFE_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+    private static final double MIN_SCORE = 0.05;
+
+    @VisibleForTesting
+    static final int MAX_RECORDS = 1000;
+
+    private static class Score {
+        private double value;
+        private long updatedAt;
+
+        private double getValue(long now) {
+            return decay(value, now - updatedAt);
+        }
+
+        private void add(double weight, long timestamp) {
+            if(timestamp >= updatedAt) {
+                value = decay(value, timestamp - updatedAt) + weight;
+                updatedAt = timestamp;
+            } else
+                value += decay(weight, updatedAt - timestamp);
+        }
+    }
+
+    private static class Record {
+        private final String key;
+        private final long timestamp;
+
+        private Record(String key, long timestamp) {
+            this.key = key;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final Context context;
+    private final Map<String, Score> scores = new HashMap<>();
+    private final Queue<Record> pending = new ConcurrentLinkedQueue<>();
+    private final TaskScheduler.Lane lane = TaskScheduler.getInstance().lane(TaskScheduler.LANE_LAUNCH_HISTORY);
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private boolean loaded = false;
+    private int recordCount = 0;
+
+    private static LaunchHistory theInstance;
+
+    private LaunchHistory(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized LaunchHistory getInstance(Context context) {
+        if(theInstance == null) theInstance = new LaunchHistory(context);
+
+        return theInstance;
+    }
+
+    /**
+     * Records a launch. This only queues the launch; it is written to disk in the background.
+     */
+    public void recordLaunch(AppEntry entry) {
+        recordLaunch(entry, null);
+    }
+
+    /**
+     * Records a launch of one of an app's shortcuts, which is ranked separately from the app.
+     */
+    public void recordLaunch(AppEntry entry, ShortcutInfo shortcut) {
+        pending.add(new Record(getKey(context, entry, shortcut), System.currentTimeMillis()));
+
+        if(flushScheduled.compareAndSet(false, true))
+            lane.schedule(this::flush, FLUSH_DELAY_MILLIS);
+    }
+
+    /**
+     * Returns the frecency score for the given entry. This may read the log from disk,
+     * so it should not be called on the main thread.
+     */
+    public synchronized double getScore(AppEntry entry) {
+        ensureLoaded();
+
+        String key = getKey(context, entry, null);
+        long now = System.currentTimeMillis();
+
+        Score score = scores.get(key);
+        double value = score == null ? 0 : score.getValue(now);
+
+        // Launches that haven't been written yet still count
+        for(Record record : pending) {
+            if(record.key.equals(key))
+                value += decay(1, now - record.timestamp);
+        }
+
+        return value;
+    }
+
+    public synchronized void clear() {
+        pending.clear();
+        scores.clear();
+        recordCount = 0;
+        loaded = true;
+
+        getFile().delete();
+    }
+
+    @VisibleForTesting
+    void flush() {
+        flushScheduled.set(false);
+
+        synchronized(this) {
+            writePending();
+        }
+    }
+
+    private void writePending() {
+        ensureLoaded();
+        if(pending.isEmpty()) return;
+
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getFile(), true)))) {
+            Record record;
+            while((record = pending.poll()) != null) {
+                writeRecord(output, record.key, record.timestamp, 1);
+                addScore(record.key, 1, record.timestamp);
+                recordCount++;
+            }
+        } catch (IOException ignored) {}
+
+        if(recordCount > MAX_RECORDS) compact();
+    }
+
+    @VisibleForTesting
+    synchronized int getRecordCount() {
+        ensureLoaded();
+        return recordCount;
+    }
+
+    private void ensureLoaded() {
+        if(loaded) return;
+        loaded = true;
+
+        File file = getFile();
+        if(!file.exists()) return;
+
+        boolean truncated = false;
+
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while(true) {
+                input.mark(1);
+                if(input.read() == -1) break;
+                input.reset();
+
+                String key = input.readUTF();
+                long timestamp = input.readLong();
+                float weight = input.readFloat();
+
+                addScore(key, weight, timestamp);
+                recordCount++;
+            }
+        } catch (EOFException e) {
+            // The last record was only partially written, so rewrite the log without it
+            truncated = true;
+        } catch (IOException e) {
+            scores.clear();
+            truncated = true;
+        }
+
+        if(truncated || recordCount > MAX_RECORDS) compact();
+    }
+
+    private void compact() {
+        long now = System.currentTimeMillis();
+        File file = getFile();
+        File tempFile = new File(file.getPath() + ".tmp");
+        int count = 0;
+
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            for(Map.Entry<String, Score> entry : new HashMap<>(scores).entrySet()) {
+                double value = entry.getValue().getValue(now);
+                if(value < MIN_SCORE) {
+                    scores.remove(entry.getKey());
+                    continue;
+                }
+
+                writeRecord(output, entry.getKey(), now, (float) value);
+                count++;
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            return;
+        }
+
+        if(tempFile.renameTo(file))
+            recordCount = count;
+    }
+
+    private void addScore(String key, double weight, long timestamp) {
+        Score score = scores.get(key);
+        if(score == null) {
+            score = new Score();
+            scores.put(key, score);
+        }
+
+        score.add(weight, timestamp);
+    }
+
+    private File getFile() {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    private static void writeRecord(DataOutputStream output, String key, long timestamp, float weight) throws IOException {
+        output.writeUTF(key);
+        output.writeLong(timestamp);
+        output.writeFloat(weight);
+    }
+
+    private static double decay(double value, long elapsedMillis) {
+        if(elapsedMillis <= 0) return value;
+
+        return value * Math.pow(0.5, (double) elapsedMillis / HALF_LIFE_MILLIS);
+    }
+
+    @VisibleForTesting
+    static String getKey(Context context, AppEntry entry, ShortcutInfo shortcut) {
+        String key = entry.getComponentName() + ":" + entry.getUserId(context);
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.N_MR1)
+            return key;
+
+        if(shortcut == null) shortcut = entry.getShortcut();
+        if(shortcut != null)
+            key += "/" + shortcut.getId();
+
+        return key;
+    }
+}
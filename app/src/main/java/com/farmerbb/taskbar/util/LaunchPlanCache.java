@@ -0,0 +1,207 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.content.Context;
+import android.content.pm.LauncherApps;
+import android.os.UserHandle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.farmerbb.taskbar.util.Constants.*;
+
+/**
+ * Caches everything U.launchApp() needs to know about a component ahead of time, so that
+ * launching an app from the taskbar or start menu does not have to query the PackageManager.
+ *
+ * Plans are resolved in the background when app lists are loaded, and dropped whenever the
+ * package changes or its saved window size is updated. A plan resolved while the cache was being
+ * invalidated is still used for that launch, but isn't stored.
+ */
+public class LaunchPlanCache {
+
+    public static class LaunchPlan {
+        private final String packageName;
+        private final ApplicationType applicationType;
+        private final boolean launchGamesFullscreen;
+        private final String savedWindowSize;
+
+        private LaunchPlan(String packageName,
+                           ApplicationType applicationType,
+                           boolean launchGamesFullscreen,
+                           String savedWindowSize) {
+            this.packageName = packageName;
+            this.applicationType = applicationType;
+            this.launchGamesFullscreen = launchGamesFullscreen;
+            this.savedWindowSize = savedWindowSize;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public ApplicationType getApplicationType() {
+            return applicationType;
+        }
+
+        public String getWindowSize(Context context) {
+            if(savedWindowSize != null)
+                return savedWindowSize;
+
+            return U.getSharedPreferences(context).getString(PREF_WINDOW_SIZE, "standard");
+        }
+    }
+
+    private final Map<String, LaunchPlan> plans = new ConcurrentHashMap<>();
+    private int generation;
+    private boolean callbackRegistered;
+
+    private final LauncherApps.Callback callback = new LauncherApps.Callback() {
+        @Override
+        public void onPackageRemoved(String packageName, UserHandle user) {
+            invalidate(packageName);
+        }
+
+        @Override
+        public void onPackageAdded(String packageName, UserHandle user) {
+            invalidate(packageName);
+        }
+
+        @Override
+        public void onPackageChanged(String packageName, UserHandle user) {
+            invalidate(packageName);
+        }
+
+        @Override
+        public void onPackagesAvailable(String[] packageNames, UserHandle user, boolean replacing) {
+            for(String packageName : packageNames) {
+                invalidate(packageName);
+            }
+        }
+
+        @Override
+        public void onPackagesUnavailable(String[] packageNames, UserHandle user, boolean replacing) {
+            for(String packageName : packageNames) {
+                invalidate(packageName);
+            }
+        }
+    };
+
+    private static LaunchPlanCache theInstance;
+
+    private LaunchPlanCache() {}
+
+    public static LaunchPlanCache getInstance() {
+        if(theInstance == null) theInstance = new LaunchPlanCache();
+
+        return theInstance;
+    }
+
+    public LaunchPlan getPlan(Context context, AppEntry entry) {
+        // The application type depends on this preference, so plans resolved under the old value are stale
+        boolean launchGamesFullscreen = U.getSharedPreferences(context).getBoolean(PREF_LAUNCH_GAMES_FULLSCREEN, true);
+
+        LaunchPlan plan = plans.get(entry.getComponentName());
+        if(plan != null && plan.launchGamesFullscreen == launchGamesFullscreen)
+            return plan;
+
+        int resolvedGeneration;
+        synchronized(this) {
+            resolvedGeneration = generation;
+        }
+
+        plan = resolvePlan(context, entry, launchGamesFullscreen);
+
+        synchronized(this) {
+            if(resolvedGeneration == generation)
+                plans.put(entry.getComponentName(), plan);
+        }
+
+        return plan;
+    }
+
+    public boolean hasPlan(String componentName) {
+        return plans.containsKey(componentName);
+    }
+
+    public void prefetch(Context context, List<AppEntry> entries) {
+        if(entries == null || entries.isEmpty()) return;
+
+        Context appContext = context.getApplicationContext();
+        registerCallbackIfNeeded(appContext);
+
+        List<AppEntry> missing = new ArrayList<>();
+        for(AppEntry entry : entries) {
+            if(entry != null
+                    && entry.getComponentName() != null
+                    && !plans.containsKey(entry.getComponentName()))
+                missing.add(entry);
+        }
+
+        if(missing.isEmpty()) return;
+
+        TaskScheduler.getInstance().io().execute(() -> {
+            for(AppEntry entry : missing) {
+                getPlan(appContext, entry);
+            }
+        });
+    }
+
+    public synchronized void invalidate(String packageName) {
+        if(packageName == null) return;
+
+        generation++;
+        for(Map.Entry<String, LaunchPlan> entry : plans.entrySet()) {
+            if(packageName.equals(entry.getValue().getPackageName()))
+                plans.remove(entry.getKey());
+        }
+    }
+
+    public synchronized void clearCache() {
+        generation++;
+        plans.clear();
+    }
+
+    private void registerCallbackIfNeeded(Context context) {
+        if(callbackRegistered) return;
+
+        LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
+        if(launcherApps == null) return;
+
+        launcherApps.registerCallback(callback, U.newHandler());
+        callbackRegistered = true;
+    }
+
+    private LaunchPlan resolvePlan(Context context, AppEntry entry, boolean launchGamesFullscreen) {
+        String packageName = entry.getPackageName();
+
+        String savedWindowSize = null;
+        for(SavedWindowSizesEntry sizeEntry : SavedWindowSizes.getInstance(context).getSavedWindowSizes()) {
+            if(sizeEntry.getComponentName().equals(packageName)) {
+                savedWindowSize = sizeEntry.getWindowSize();
+                break;
+            }
+        }
+
+        return new LaunchPlan(packageName,
+                U.getApplicationType(context, entry),
+                launchGamesFullscreen,
+                savedWindowSize);
+    }
+}
@@ -0,0 +1,223 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Debug;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Central place where caches give memory back when the system runs low.
+ *
+ * Trim levels from ComponentCallbacks2 are mapped to tiers, and every registered
+ * {@link Trimmable} is asked to release memory for that tier:
+ *
+ * - TIER_SHRINK: shrink caches to half their size
+ * - TIER_SHRINK_MORE: shrink caches to a quarter of their size, and drop icons for start menu
+ *   rows that aren't on screen
+ * - TIER_EVICT: empty caches entirely
+ *
+ * UI_HIDDEN and BACKGROUND aren't acted on, since the taskbar usually stays on screen
+ * while the rest of the app is in the background.
+ *
+ * Heap usage is measured before and after each trim, and the difference is kept per trim level
+ * so it can be shown on the performance screen.
+ */
+public class MemoryPolicy implements ComponentCallbacks2 {
+
+    public static final int TIER_NONE = 0;
+    public static final int TIER_SHRINK = 1;
+    public static final int TIER_SHRINK_MORE = 2;
+    public static final int TIER_EVICT = 3;
+
+    public interface Trimmable {
+        /**
+         * Releases memory for the given tier. Called on the main thread.
+         */
+        void trimMemory(int tier);
+    }
+
+    private static class LevelStats {
+        private long count;
+        private long lastBytes;
+        private long totalBytes;
+    }
+
+    private final List<Trimmable> trimmables = new CopyOnWriteArrayList<>();
+    private final Map<Integer, LevelStats> stats = new TreeMap<>();
+
+    private static MemoryPolicy theInstance;
+
+    private MemoryPolicy() {}
+
+    public static synchronized MemoryPolicy getInstance(Context context) {
+        if(theInstance == null) {
+            theInstance = new MemoryPolicy();
+            context.getApplicationContext().registerComponentCallbacks(theInstance);
+        }
+
+        return theInstance;
+    }
+
+    public void register(Trimmable trimmable) {
+        if(!trimmables.contains(trimmable))
+            trimmables.add(trimmable);
+    }
+
+    public void unregister(Trimmable trimmable) {
+        trimmables.remove(trimmable);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        int tier = getTier(level);
+        if(tier == TIER_NONE) return;
+
+        long usedBefore = getUsedBytes();
+        for(Trimmable trimmable : trimmables) {
+            trimmable.trimMemory(tier);
+        }
+
+        // Collect now so that the released bitmaps actually show up in the measurement
+        Runtime.getRuntime().gc();
+        long bytes = Math.max(0, usedBefore - getUsedBytes());
+
+        synchronized(stats) {
+            LevelStats levelStats = stats.get(level);
+            if(levelStats == null) {
+                levelStats = new LevelStats();
+                stats.put(level, levelStats);
+            }
+
+            levelStats.count++;
+            levelStats.lastBytes = bytes;
+            levelStats.totalBytes += bytes;
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {}
+
+    public String getTrimStats() {
+        StringBuilder builder = new StringBuilder();
+
+        synchronized(stats) {
+            for(Map.Entry<Integer, LevelStats> entry : stats.entrySet()) {
+                LevelStats levelStats = entry.getValue();
+                builder.append(String.format(Locale.US, "MemoryPolicy.%s  trims=%d  last=%.1f KB  total=%.1f KB%n",
+                        getLevelName(entry.getKey()),
+                        levelStats.count,
+                        levelStats.lastBytes / 1024.0,
+                        levelStats.totalBytes / 1024.0));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    @VisibleForTesting
+    long getTrimCount(int level) {
+        synchronized(stats) {
+            LevelStats levelStats = stats.get(level);
+            return levelStats == null ? 0 : levelStats.count;
+        }
+    }
+
+    @VisibleForTesting
+    long getTotalBytes(int level) {
+        synchronized(stats) {
+            LevelStats levelStats = stats.get(level);
+            return levelStats == null ? 0 : levelStats.totalBytes;
+        }
+    }
+
+    private static long getUsedBytes() {
+        // Bitmap pixels live on the native heap from Android 8.0 onwards, and on the Java heap before that
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+
+    @VisibleForTesting
+    void reset() {
+        trimmables.clear();
+
+        synchronized(stats) {
+            stats.clear();
+        }
+    }
+
+    public static int getTier(int level) {
+        if(level >= TRIM_MEMORY_COMPLETE || level == TRIM_MEMORY_RUNNING_CRITICAL)
+            return TIER_EVICT;
+
+        if(level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_LOW)
+            return TIER_SHRINK_MORE;
+
+        return level == TRIM_MEMORY_RUNNING_MODERATE ? TIER_SHRINK : TIER_NONE;
+    }
+
+    /**
+     * Returns the fraction of a cache's maximum size that it should keep after a trim.
+     */
+    public static float getRetainFraction(int tier) {
+        switch(tier) {
+            case TIER_SHRINK:
+                return 0.5f;
+            case TIER_SHRINK_MORE:
+                return 0.25f;
+            case TIER_EVICT:
+                return 0;
+            default:
+                return 1;
+        }
+    }
+
+    private static String getLevelName(int level) {
+        switch(level) {
+            case TRIM_MEMORY_RUNNING_MODERATE:
+                return "RUNNING_MODERATE";
+            case TRIM_MEMORY_RUNNING_LOW:
+                return "RUNNING_LOW";
+            case TRIM_MEMORY_RUNNING_CRITICAL:
+                return "RUNNING_CRITICAL";
+            case TRIM_MEMORY_UI_HIDDEN:
+                return "UI_HIDDEN";
+            case TRIM_MEMORY_BACKGROUND:
+                return "BACKGROUND";
+            case TRIM_MEMORY_MODERATE:
+                return "MODERATE";
+            case TRIM_MEMORY_COMPLETE:
+                return "COMPLETE";
+            default:
+                return "LEVEL_" + level;
+        }
+    }
+}
@@ -53,6 +53,8 @@ public class SavedWindowSizes implements Serializable {
 
         savedApps.add(new SavedWindowSizesEntry(packageName, windowSize));
         save(context);
+
+        LaunchPlanCache.getInstance().invalidate(packageName);
     }
 
     public String getWindowSize(Context context, String packageName) {
@@ -67,6 +69,8 @@ public class SavedWindowSizes implements Serializable {
     public void clear(Context context) {
         savedApps.clear();
         save(context);
+
+        LaunchPlanCache.getInstance().clearCache();
     }
 
     private boolean save(Context context) {
@@ -0,0 +1,360 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.annotation.TargetApi;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.LauncherApps;
+import android.content.pm.ShortcutInfo;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.LruCache;
+
+import com.farmerbb.taskbar.R;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Caches app shortcuts (and their icons) per package and user, so that context menus can list
+ * shortcuts without querying LauncherApps every time they open.
+ *
+ * Shortcuts are loaded in the background when app lists are loaded, and reloaded whenever
+ * LauncherApps reports that a package's shortcuts have changed. Icons are rasterized at the
+ * size context menus draw them at.
+ */
+@TargetApi(Build.VERSION_CODES.N_MR1)
+public class ShortcutCache implements MemoryPolicy.Trimmable {
+
+    private static final int MAX_PACKAGES = 256;
+
+    public interface Listener {
+        /**
+         * Called whenever a package's shortcuts are loaded or dropped from the cache.
+         * The shortcut list is null if the package was dropped.
+         */
+        void onShortcutsChanged(String packageName, long userSerial, List<ShortcutInfo> shortcuts);
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final LruCache<String, List<ShortcutInfo>> shortcuts = new LruCache<String, List<ShortcutInfo>>(MAX_PACKAGES) {
+        @Override
+        protected void entryRemoved(boolean evicted, String key, List<ShortcutInfo> oldValue, List<ShortcutInfo> newValue) {
+            if(evicted) notifyListeners(key, null);
+        }
+    };
+
+    private final LruCache<String, BitmapDrawable> icons = new LruCache<String, BitmapDrawable>(
+            (int) Math.min(Runtime.getRuntime().maxMemory() / 32, Integer.MAX_VALUE)) {
+        @Override
+        protected int sizeOf(String key, BitmapDrawable value) {
+            return value.getBitmap().getByteCount();
+        }
+    };
+
+    private Context appContext;
+    private boolean callbackRegistered;
+
+    private final LauncherApps.Callback callback = new LauncherApps.Callback() {
+        @Override
+        public void onPackageRemoved(String packageName, UserHandle user) {
+            invalidate(packageName, user);
+        }
+
+        @Override
+        public void onPackageAdded(String packageName, UserHandle user) {
+            invalidate(packageName, user);
+        }
+
+        @Override
+        public void onPackageChanged(String packageName, UserHandle user) {
+            reload(packageName, user);
+        }
+
+        @Override
+        public void onPackagesAvailable(String[] packageNames, UserHandle user, boolean replacing) {
+            for(String packageName : packageNames) {
+                invalidate(packageName, user);
+            }
+        }
+
+        @Override
+        public void onPackagesUnavailable(String[] packageNames, UserHandle user, boolean replacing) {
+            for(String packageName : packageNames) {
+                invalidate(packageName, user);
+            }
+        }
+
+        @Override
+        public void onShortcutsChanged(String packageName, List<ShortcutInfo> changed, UserHandle user) {
+            // The list passed in only contains key fields, so the package has to be queried again
+            reload(packageName, user);
+        }
+    };
+
+    private static ShortcutCache theInstance;
+
+    private ShortcutCache() {}
+
+    public static ShortcutCache getInstance() {
+        if(theInstance == null) theInstance = new ShortcutCache();
+
+        return theInstance;
+    }
+
+    /**
+     * Returns the cached shortcuts for the given app entry's activity. If the package isn't cached
+     * yet (or some of its icons were trimmed), the returned list may be empty or lack icons;
+     * the shortcuts are then loaded in the background and passed to the callback, if any,
+     * on the main thread.
+     */
+    public List<ShortcutInfo> getShortcuts(Context context, AppEntry entry, TaskScheduler.Callback<List<ShortcutInfo>> callback) {
+        ComponentName component = ComponentName.unflattenFromString(entry.getComponentName());
+        if(component == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.N_MR1)
+            return Collections.emptyList();
+
+        registerCallbackIfNeeded(context);
+
+        long userSerial = entry.getUserId(context);
+        List<ShortcutInfo> packageShortcuts = shortcuts.get(getKey(component.getPackageName(), userSerial));
+        if(packageShortcuts == null) {
+            loadInBackground(component, userSerial, callback);
+            return Collections.emptyList();
+        }
+
+        List<ShortcutInfo> result = getShortcutsForActivity(packageShortcuts, component);
+        for(ShortcutInfo shortcut : result) {
+            if(icons.get(getIconKey(shortcut)) == null) {
+                loadInBackground(component, userSerial, callback);
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns all cached shortcuts for the given package and user, or null if not loaded yet.
+     */
+    public List<ShortcutInfo> getCachedShortcuts(Context context, String packageName, UserHandle user) {
+        return shortcuts.get(getKey(context, packageName, user));
+    }
+
+    public Drawable getIcon(ShortcutInfo shortcut) {
+        return icons.get(getIconKey(shortcut));
+    }
+
+    public void prefetch(Context context, List<AppEntry> entries) {
+        if(entries == null || entries.isEmpty() || Build.VERSION.SDK_INT < Build.VERSION_CODES.N_MR1)
+            return;
+
+        Context appContext = context.getApplicationContext();
+        registerCallbackIfNeeded(appContext);
+
+        UserManager userManager = (UserManager) appContext.getSystemService(Context.USER_SERVICE);
+        Set<String> queued = new HashSet<>();
+        List<Runnable> loads = new ArrayList<>();
+
+        for(AppEntry entry : entries) {
+            if(entry == null || entry.getPackageName() == null) continue;
+
+            UserHandle user = userManager.getUserForSerialNumber(entry.getUserId(appContext));
+            if(user == null) continue;
+
+            String key = getKey(appContext, entry.getPackageName(), user);
+            if(shortcuts.get(key) == null && queued.add(key))
+                loads.add(() -> load(appContext, entry.getPackageName(), user));
+        }
+
+        if(loads.isEmpty()) return;
+
+        TaskScheduler.getInstance().io().execute(() -> {
+            for(Runnable load : loads) {
+                load.run();
+            }
+        });
+    }
+
+    public void invalidate(String packageName, UserHandle user) {
+        Context context = appContext;
+        if(context == null) return;
+
+        String key = getKey(context, packageName, user);
+        List<ShortcutInfo> removed = shortcuts.remove(key);
+        if(removed == null) return;
+
+        for(ShortcutInfo shortcut : removed) {
+            icons.remove(getIconKey(shortcut));
+        }
+
+        notifyListeners(key, null);
+    }
+
+    public void clearCache() {
+        // Listeners are told about each dropped package from entryRemoved()
+        shortcuts.evictAll();
+        icons.evictAll();
+    }
+
+    @Override
+    public void trimMemory(int tier) {
+        icons.trimToSize((int) (icons.maxSize() * MemoryPolicy.getRetainFraction(tier)));
+    }
+
+    /**
+     * Registers a listener, and immediately replays the packages that are already cached to it.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+
+        for(Map.Entry<String, List<ShortcutInfo>> entry : shortcuts.snapshot().entrySet()) {
+            String key = entry.getKey();
+            int separator = key.lastIndexOf(':');
+            listener.onShortcutsChanged(key.substring(0, separator),
+                    Long.parseLong(key.substring(separator + 1)), entry.getValue());
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(String key, List<ShortcutInfo> packageShortcuts) {
+        if(listeners.isEmpty()) return;
+
+        int separator = key.lastIndexOf(':');
+        String packageName = key.substring(0, separator);
+        long userSerial = Long.parseLong(key.substring(separator + 1));
+
+        for(Listener listener : listeners) {
+            listener.onShortcutsChanged(packageName, userSerial, packageShortcuts);
+        }
+    }
+
+    private void reload(String packageName, UserHandle user) {
+        Context context = appContext;
+        if(context == null || shortcuts.get(getKey(context, packageName, user)) == null) return;
+
+        invalidate(packageName, user);
+        TaskScheduler.getInstance().io().execute(() -> load(context, packageName, user));
+    }
+
+    private List<ShortcutInfo> load(Context context, String packageName, UserHandle user) {
+        LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
+        List<ShortcutInfo> result = null;
+
+        if(launcherApps.hasShortcutHostPermission()) {
+            LauncherApps.ShortcutQuery query = new LauncherApps.ShortcutQuery();
+            query.setPackage(packageName);
+            query.setQueryFlags(LauncherApps.ShortcutQuery.FLAG_MATCH_DYNAMIC
+                    | LauncherApps.ShortcutQuery.FLAG_MATCH_MANIFEST
+                    | LauncherApps.ShortcutQuery.FLAG_MATCH_PINNED);
+
+            try {
+                result = launcherApps.getShortcuts(query, user);
+            } catch (IllegalStateException | SecurityException ignored) {}
+        }
+
+        if(result == null) result = Collections.emptyList();
+
+        loadIcons(context, result);
+
+        String key = getKey(context, packageName, user);
+        shortcuts.put(key, result);
+        notifyListeners(key, result);
+        return result;
+    }
+
+    private void loadInBackground(ComponentName component, long userSerial, TaskScheduler.Callback<List<ShortcutInfo>> callback) {
+        Context context = appContext;
+        if(context == null) return;
+
+        TaskScheduler.getInstance().io().submit(token -> {
+            UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
+            UserHandle user = userManager.getUserForSerialNumber(userSerial);
+            if(user == null) return Collections.<ShortcutInfo>emptyList();
+
+            List<ShortcutInfo> packageShortcuts = shortcuts.get(getKey(component.getPackageName(), userSerial));
+            if(packageShortcuts == null)
+                packageShortcuts = load(context, component.getPackageName(), user);
+            else
+                loadIcons(context, packageShortcuts);
+
+            return getShortcutsForActivity(packageShortcuts, component);
+        }, callback);
+    }
+
+    private void loadIcons(Context context, List<ShortcutInfo> packageShortcuts) {
+        LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
+        int density = context.getResources().getDisplayMetrics().densityDpi;
+        int iconSize = context.getResources().getDimensionPixelSize(R.dimen.tb_context_menu_icon_size);
+
+        for(ShortcutInfo shortcut : packageShortcuts) {
+            String iconKey = getIconKey(shortcut);
+            if(icons.get(iconKey) != null) continue;
+
+            try {
+                Drawable icon = launcherApps.getShortcutIconDrawable(shortcut, density);
+                if(icon != null) icons.put(iconKey, U.rasterizeDrawable(context, icon, iconSize));
+            } catch (IllegalStateException | SecurityException ignored) {}
+        }
+    }
+
+    private static List<ShortcutInfo> getShortcutsForActivity(List<ShortcutInfo> packageShortcuts, ComponentName component) {
+        List<ShortcutInfo> result = new ArrayList<>();
+        for(ShortcutInfo shortcut : packageShortcuts) {
+            if(component.equals(shortcut.getActivity()))
+                result.add(shortcut);
+        }
+
+        return result;
+    }
+
+    private synchronized void registerCallbackIfNeeded(Context context) {
+        if(callbackRegistered) return;
+
+        appContext = context.getApplicationContext();
+        MemoryPolicy.getInstance(appContext).register(this);
+
+        LauncherApps launcherApps = (LauncherApps) appContext.getSystemService(Context.LAUNCHER_APPS_SERVICE);
+        if(launcherApps == null) return;
+
+        launcherApps.registerCallback(callback, U.newHandler());
+        callbackRegistered = true;
+    }
+
+    private static String getKey(Context context, String packageName, UserHandle user) {
+        UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
+        return getKey(packageName, userManager.getSerialNumberForUser(user));
+    }
+
+    private static String getKey(String packageName, long userSerial) {
+        return packageName + ":" + userSerial;
+    }
+
+    private static String getIconKey(ShortcutInfo shortcut) {
+        return shortcut.getPackage() + "/" + shortcut.getId() + ":" + shortcut.getUserHandle().hashCode();
+    }
+}
@@ -0,0 +1,182 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.annotation.TargetApi;
+import android.content.ComponentName;
+import android.content.pm.ShortcutInfo;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Search index over the short and long labels of app shortcuts, used by the start menu.
+ *
+ * The index is kept up to date one package at a time as ShortcutCache loads or drops shortcuts,
+ * so labels are only normalized once, on the thread that loaded them.
+ */
+@TargetApi(Build.VERSION_CODES.N_MR1)
+public class ShortcutSearchIndex implements ShortcutCache.Listener {
+
+    public static final int MATCH_NONE = 0;
+    public static final int MATCH_CONTAINS = 1;
+    public static final int MATCH_WORD_PREFIX = 2;
+    public static final int MATCH_PREFIX = 3;
+
+    static class Entry {
+        final ShortcutInfo shortcut;
+        final String activityKey;
+        final String shortLabel;
+        final String longLabel;
+
+        Entry(ShortcutInfo shortcut, String activityKey, String shortLabel, String longLabel) {
+            this.shortcut = shortcut;
+            this.activityKey = activityKey;
+            this.shortLabel = shortLabel;
+            this.longLabel = longLabel;
+        }
+    }
+
+    public static class Result {
+        private final ShortcutInfo shortcut;
+        private final String activityKey;
+        private final int matchQuality;
+
+        Result(ShortcutInfo shortcut, String activityKey, int matchQuality) {
+            this.shortcut = shortcut;
+            this.activityKey = activityKey;
+            this.matchQuality = matchQuality;
+        }
+
+        public ShortcutInfo getShortcut() {
+            return shortcut;
+        }
+
+        public String getActivityKey() {
+            return activityKey;
+        }
+
+        public int getMatchQuality() {
+            return matchQuality;
+        }
+    }
+
+    private final Map<String, List<Entry>> entries = new ConcurrentHashMap<>();
+
+    private static ShortcutSearchIndex theInstance;
+
+    private ShortcutSearchIndex() {
+        ShortcutCache.getInstance().addListener(this);
+    }
+
+    public static synchronized ShortcutSearchIndex getInstance() {
+        if(theInstance == null) theInstance = new ShortcutSearchIndex();
+
+        return theInstance;
+    }
+
+    @Override
+    public void onShortcutsChanged(String packageName, long userSerial, List<ShortcutInfo> shortcuts) {
+        String key = packageName + ":" + userSerial;
+
+        if(shortcuts == null || shortcuts.isEmpty()) {
+            entries.remove(key);
+            return;
+        }
+
+        List<Entry> packageEntries = new ArrayList<>();
+        for(ShortcutInfo shortcut : shortcuts) {
+            ComponentName activity = shortcut.getActivity();
+            if(activity == null || !shortcut.isEnabled()) continue;
+
+            packageEntries.add(new Entry(shortcut,
+                    getActivityKey(activity.flattenToString(), userSerial),
+                    normalize(shortcut.getShortLabel()),
+                    normalize(shortcut.getLongLabel())));
+        }
+
+        entries.put(key, Collections.unmodifiableList(packageEntries));
+    }
+
+    /**
+     * Returns shortcuts matching the query, best matches first. Only shortcuts belonging to one
+     * of the given activities (see {@link #getActivityKey}) are returned.
+     */
+    public List<Result> search(String query, Set<String> activityKeys, int limit) {
+        String normalizedQuery = normalize(query);
+        List<Result> results = new ArrayList<>();
+        if(normalizedQuery.isEmpty() || limit <= 0) return results;
+
+        for(Collection<Entry> packageEntries : entries.values()) {
+            for(Entry entry : packageEntries) {
+                if(!activityKeys.contains(entry.activityKey)) continue;
+
+                // Long labels are only a fallback, so they count as the weakest kind of match
+                int quality = getMatchQuality(entry.shortLabel, normalizedQuery);
+                if(quality == MATCH_NONE && getMatchQuality(entry.longLabel, normalizedQuery) != MATCH_NONE)
+                    quality = MATCH_CONTAINS;
+
+                if(quality > MATCH_NONE)
+                    results.add(new Result(entry.shortcut, entry.activityKey, quality));
+            }
+        }
+
+        Collections.sort(results, (r1, r2) -> {
+            int compare = Integer.compare(r2.matchQuality, r1.matchQuality);
+            if(compare != 0) return compare;
+
+            return String.valueOf(r1.shortcut.getShortLabel())
+                    .compareToIgnoreCase(String.valueOf(r2.shortcut.getShortLabel()));
+        });
+
+        return results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+    }
+
+    public static String getActivityKey(String componentName, long userSerial) {
+        return componentName + ":" + userSerial;
+    }
+
+    /**
+     * Rates how well a label matches a query. Both arguments are expected to be normalized.
+     */
+    public static int getMatchQuality(String label, String query) {
+        if(label == null || label.isEmpty()) return MATCH_NONE;
+        if(label.startsWith(query)) return MATCH_PREFIX;
+
+        int index = label.indexOf(query);
+        if(index == -1) return MATCH_NONE;
+
+        while(index != -1) {
+            if(!Character.isLetterOrDigit(label.charAt(index - 1)))
+                return MATCH_WORD_PREFIX;
+
+            index = label.indexOf(query, index + 1);
+        }
+
+        return MATCH_CONTAINS;
+    }
+
+    public static String normalize(CharSequence text) {
+        return text == null ? "" : text.toString().trim().toLowerCase(Locale.getDefault());
+    }
+}
@@ -0,0 +1,283 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.farmerbb.taskbar.helper.TraceHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared background scheduling for the app.
+ *
+ * Independent IO work goes to a small bounded pool, while work that must run in order (such as a
+ * controller refreshing its own views) goes to a named serial lane. Every task gets a WorkToken;
+ * cancelled tokens stop the task at its next checkpoint, and results for cancelled tokens are
+ * never delivered to the main thread.
+ *
+ * Threads run at background priority unless a lane asks for another one when it is created.
+ */
+public class TaskScheduler {
+
+    public static final String LANE_TASKBAR = "taskbar";
+    public static final String LANE_START_MENU = "start_menu";
+    public static final String LANE_WIDGET_PREVIEWS = "widget_previews";
+    public static final String LANE_SHIZUKU_INPUT = "shizuku_input";
+    public static final String LANE_LAUNCH_HISTORY = "launch_history";
+    public static final String LANE_ICON_PACK_PREVIEWS = "icon_pack_previews";
+    public static final String LANE_ICON_THEME = "icon_theme";
+    public static final String LANE_CUSTOM_IMAGES = "custom_images";
+
+    private static final String POOL_IO = "io";
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    public interface Task<T> {
+        T run(WorkToken token) throws Exception;
+    }
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public static class WorkToken {
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Checkpoint to call between stages of a longer task.
+         */
+        public void throwIfCancelled() {
+            if(cancelled) throw new CancellationException();
+        }
+    }
+
+    public static class Lane {
+        private final String name;
+        private final ThreadPoolExecutor executor;
+        private final Handler handler = U.newHandler();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+        private Lane(String name, ThreadPoolExecutor executor) {
+            this.name = name;
+            this.executor = executor;
+        }
+
+        public WorkToken execute(Runnable runnable) {
+            return submit(token -> {
+                runnable.run();
+                return null;
+            }, null);
+        }
+
+        public <T> WorkToken submit(Task<T> task, Callback<T> callback) {
+            WorkToken token = new WorkToken();
+            enqueue(token, task, callback, 0);
+            return token;
+        }
+
+        public WorkToken schedule(Runnable runnable, long delayMillis) {
+            WorkToken token = new WorkToken();
+            schedule(token, runnable, delayMillis);
+            return token;
+        }
+
+        /**
+         * Schedules more work under an existing token, for tasks that reschedule themselves.
+         */
+        public void schedule(WorkToken token, Runnable runnable, long delayMillis) {
+            enqueue(token, t -> {
+                runnable.run();
+                return null;
+            }, null, delayMillis);
+        }
+
+        public int getQueueDepth() {
+            return executor.getQueue().size();
+        }
+
+        private <T> void enqueue(WorkToken token, Task<T> task, Callback<T> callback, long delayMillis) {
+            if(token.isCancelled()) return;
+
+            Runnable runnable = () -> {
+                long queuedAt = SystemClock.elapsedRealtimeNanos();
+
+                Runnable work = () -> {
+                    TraceHelper helper = TraceHelper.getInstance();
+                    helper.record("TaskScheduler." + name + ".wait", SystemClock.elapsedRealtimeNanos() - queuedAt);
+
+                    if(token.isCancelled()) return;
+
+                    long traceToken = helper.begin("TaskScheduler." + name + ".run");
+                    T result;
+                    try {
+                        result = task.run(token);
+                    } catch (CancellationException e) {
+                        return;
+                    } catch (RuntimeException e) {
+                        token.cancel();
+                        throw e;
+                    } catch (Exception e) {
+                        token.cancel();
+                        throw new RuntimeException(e);
+                    } finally {
+                        helper.end("TaskScheduler." + name + ".run", traceToken);
+                    }
+
+                    if(callback != null && !token.isCancelled()) {
+                        handler.post(() -> {
+                            if(!token.isCancelled()) callback.onResult(result);
+                        });
+                    }
+                };
+
+                if(runInline)
+                    work.run();
+                else
+                    executor.execute(work);
+
+                int depth = getQueueDepth();
+                int max;
+                do {
+                    max = maxQueueDepth.get();
+                } while(depth > max && !maxQueueDepth.compareAndSet(max, depth));
+            };
+
+            if(delayMillis > 0)
+                handler.postDelayed(() -> {
+                    if(!token.isCancelled()) runnable.run();
+                }, delayMillis);
+            else
+                runnable.run();
+        }
+    }
+
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final Lane ioPool;
+
+    private static volatile boolean runInline;
+
+    private static TaskScheduler theInstance;
+
+    private TaskScheduler() {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        ioPool = new Lane(POOL_IO, newExecutor(POOL_IO, threads, Process.THREAD_PRIORITY_BACKGROUND));
+    }
+
+    public static synchronized TaskScheduler getInstance() {
+        if(theInstance == null) theInstance = new TaskScheduler();
+
+        return theInstance;
+    }
+
+    /**
+     * Bounded pool for independent IO work (file access, bitmap decoding, PackageManager queries).
+     */
+    public Lane io() {
+        return ioPool;
+    }
+
+    /**
+     * Single-threaded lane; tasks submitted to the same lane always run in order.
+     */
+    public Lane lane(String name) {
+        return lane(name, Process.THREAD_PRIORITY_BACKGROUND);
+    }
+
+    /**
+     * Single-threaded lane running at the given thread priority. The priority is fixed by
+     * whichever call creates the lane first.
+     */
+    public Lane lane(String name, int threadPriority) {
+        synchronized(lanes) {
+            Lane lane = lanes.get(name);
+            if(lane == null) {
+                lane = new Lane(name, newExecutor(name, 1, threadPriority));
+                lanes.put(name, lane);
+            }
+
+            return lane;
+        }
+    }
+
+    /**
+     * Runs every task on the thread that submits it. Callbacks are still posted to the main
+     * thread, so tests only need to idle the main looper to receive them.
+     */
+    @VisibleForTesting
+    static void setRunInline(boolean inline) {
+        runInline = inline;
+    }
+
+    public String getQueueStats() {
+        List<Lane> allLanes = new ArrayList<>();
+        allLanes.add(ioPool);
+
+        synchronized(lanes) {
+            allLanes.addAll(lanes.values());
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for(Lane lane : allLanes) {
+            builder.append(String.format(Locale.US, "TaskScheduler.%s  queued=%d  max_queued=%d  completed=%d%n",
+                    lane.name,
+                    lane.getQueueDepth(),
+                    lane.maxQueueDepth.get(),
+                    lane.executor.getCompletedTaskCount()));
+        }
+
+        return builder.toString();
+    }
+
+    private static ThreadPoolExecutor newExecutor(String name, int threads, int threadPriority) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(threadPriority);
+                runnable.run();
+            }, "tb-" + name + "-" + count.incrementAndGet());
+
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,178 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The apps that were last shown on the taskbar, saved so that a restarted taskbar can show them
+ * straight away instead of starting out empty until its first refresh finishes.
+ *
+ * Snapshots are kept per display, both in memory and in a small file, so that they survive the
+ * process being killed.
+ */
+public class TaskbarSnapshot {
+
+    private static final String FILE_NAME = "TaskbarSnapshot";
+    private static final int VERSION = 1;
+
+    public static class Entry {
+        public final String packageName;
+        public final String componentName;
+        public final String label;
+        public final long userId;
+        public final boolean pinned;
+        public final String iconKey;
+
+        public Entry(String packageName, String componentName, String label, long userId, boolean pinned, String iconKey) {
+            this.packageName = packageName;
+            this.componentName = componentName;
+            this.label = label;
+            this.userId = userId;
+            this.pinned = pinned;
+            this.iconKey = iconKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Entry)) return false;
+
+            Entry entry = (Entry) o;
+            return userId == entry.userId
+                    && pinned == entry.pinned
+                    && packageName.equals(entry.packageName)
+                    && componentName.equals(entry.componentName)
+                    && label.equals(entry.label)
+                    && iconKey.equals(entry.iconKey);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = packageName.hashCode();
+            result = 31 * result + componentName.hashCode();
+            result = 31 * result + iconKey.hashCode();
+            return result;
+        }
+    }
+
+    private static final SparseArray<List<Entry>> snapshots = new SparseArray<>();
+
+    private TaskbarSnapshot() {}
+
+    /**
+     * Saves the entries currently shown on the taskbar. This writes to disk, so it should not be
+     * called on the main thread.
+     */
+    public static void save(Context context, int displayId, List<Entry> entries) {
+        List<Entry> snapshot = Collections.unmodifiableList(new ArrayList<>(entries));
+
+        synchronized(snapshots) {
+            snapshots.put(displayId, snapshot);
+        }
+
+        File file = getFile(context, displayId);
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            write(output, snapshot);
+        } catch (IOException e) {
+            tempFile.delete();
+            return;
+        }
+
+        if(!tempFile.renameTo(file)) tempFile.delete();
+    }
+
+    /**
+     * Returns the last saved entries for a display, or an empty list if there are none.
+     * This may read a small file when nothing is in memory yet.
+     */
+    public static List<Entry> load(Context context, int displayId) {
+        synchronized(snapshots) {
+            List<Entry> snapshot = snapshots.get(displayId);
+            if(snapshot != null) return snapshot;
+        }
+
+        List<Entry> snapshot;
+        File file = getFile(context, displayId);
+
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            snapshot = Collections.unmodifiableList(read(input));
+        } catch (IOException e) {
+            snapshot = Collections.emptyList();
+        }
+
+        synchronized(snapshots) {
+            snapshots.put(displayId, snapshot);
+        }
+
+        return snapshot;
+    }
+
+    @VisibleForTesting
+    static void write(DataOutputStream output, List<Entry> entries) throws IOException {
+        output.writeInt(VERSION);
+        output.writeInt(entries.size());
+
+        for(Entry entry : entries) {
+            output.writeUTF(entry.packageName);
+            output.writeUTF(entry.componentName);
+            output.writeUTF(entry.label);
+            output.writeLong(entry.userId);
+            output.writeBoolean(entry.pinned);
+            output.writeUTF(entry.iconKey);
+        }
+    }
+
+    @VisibleForTesting
+    static List<Entry> read(DataInputStream input) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if(input.readInt() != VERSION) return entries;
+
+        int count = input.readInt();
+        for(int i = 0; i < count; i++) {
+            entries.add(new Entry(
+                    input.readUTF(),
+                    input.readUTF(),
+                    input.readUTF(),
+                    input.readLong(),
+                    input.readBoolean(),
+                    input.readUTF()));
+        }
+
+        return entries;
+    }
+
+    private static File getFile(Context context, int displayId) {
+        return new File(context.getFilesDir(), FILE_NAME + "_" + displayId);
+    }
+}
@@ -44,13 +44,12 @@ import android.content.pm.ShortcutManager;
 import android.content.pm.Signature;
 import android.content.res.Configuration;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.hardware.display.DisplayManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -67,6 +66,7 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.appcompat.view.ContextThemeWrapper;
 import android.util.DisplayMetrics;
 import android.view.Display;
+import android.view.Gravity;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.ImageView;
@@ -84,18 +84,20 @@ import com.farmerbb.taskbar.helper.GlobalHelper;
 import com.farmerbb.taskbar.helper.FreeformHackHelper;
 import com.farmerbb.taskbar.helper.LauncherHelper;
 import com.farmerbb.taskbar.helper.MenuHelper;
+import com.farmerbb.taskbar.helper.ServiceStateHelper;
 import com.farmerbb.taskbar.helper.ToastHelper;
+import com.farmerbb.taskbar.helper.TraceHelper;
 import com.farmerbb.taskbar.service.DashboardService;
 import com.farmerbb.taskbar.service.NotificationService;
 import com.farmerbb.taskbar.service.PowerMenuService;
 import com.farmerbb.taskbar.service.StartMenuService;
 import com.farmerbb.taskbar.service.TaskbarService;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -372,8 +374,12 @@ public class U {
                                   final ShortcutInfo shortcut,
                                   final View view,
                                   final Runnable onError) {
-        launchApp(context, launchedFromTaskbar, isPersistentShortcut, () ->
-                continueLaunchingApp(context, entry, windowSize, openInNewWindow, shortcut, view, onError)
+        LaunchHistory.getInstance(context).recordLaunch(entry, shortcut);
+
+        launchApp(context, launchedFromTaskbar, isPersistentShortcut,
+                TraceHelper.getInstance().wrap(TraceHelper.STAGE_LAUNCH_APP, () ->
+                        continueLaunchingApp(context, entry, windowSize, openInNewWindow, shortcut, view, onError)
+                )
         );
     }
 
@@ -458,10 +464,11 @@ public class U {
         boolean realOpenInNewWindow = openInNewWindow || pref.getBoolean(PREF_FORCE_NEW_WINDOW, false);
         if(realOpenInNewWindow) applyOpenInNewWindow(context, intent);
 
-        ApplicationType type = getApplicationType(context, entry);
+        LaunchPlanCache.LaunchPlan plan = LaunchPlanCache.getInstance().getPlan(context, entry);
+        ApplicationType type = plan.getApplicationType();
 
         if(windowSize == null)
-            windowSize = SavedWindowSizes.getInstance(context).getWindowSize(context, entry.getPackageName());
+            windowSize = plan.getWindowSize(context);
 
         Bundle bundle = getActivityOptionsBundle(context, type, windowSize, view);
 
@@ -668,6 +675,38 @@ public class U {
     }
 
     public static void startContextMenuActivity(Context context, Bundle args) {
+        startContextMenuActivity(context, args, 0);
+    }
+
+    /**
+     * Shows a context menu in the taskbar's overlay window when enabled, and otherwise starts
+     * ContextMenuActivity after the given delay.
+     */
+    public static void startContextMenuActivity(Context context, Bundle args, long activityDelay) {
+        if(showContextMenuOverlay(context, args)) return;
+
+        if(activityDelay > 0)
+            newHandler().postDelayed(() -> launchContextMenuActivity(context, args), activityDelay);
+        else
+            launchContextMenuActivity(context, args);
+    }
+
+    private static boolean showContextMenuOverlay(Context context, Bundle args) {
+        SharedPreferences pref = getSharedPreferences(context);
+        if(!pref.getBoolean(PREF_CONTEXT_MENU_OVERLAY, false)
+                || args.containsKey("desktop_icon")
+                || LauncherHelper.getInstance().isOnSecondaryHomeScreen(context)
+                || !canDrawOverlays(context))
+            return false;
+
+        Intent intent = new Intent(ACTION_SHOW_CONTEXT_MENU_OVERLAY);
+        intent.putExtra("args", args);
+
+        // Only succeeds if a taskbar is currently running to draw the menu
+        return LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
+    }
+
+    public static void launchContextMenuActivity(Context context, Bundle args) {
         Intent intent = getThemedIntent(context, ContextMenuActivity.class);
         intent.putExtra("args", args);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
@@ -686,6 +725,122 @@ public class U {
             context.startActivity(intent);
     }
 
+    /**
+     * Positions a context menu window next to the item it was opened from.
+     */
+    @SuppressLint("RtlHardcoded")
+    public static void applyContextMenuPosition(Context context, Bundle args, WindowManager.LayoutParams params) {
+        boolean hasEntry = args.getSerializable("app_entry") != null;
+        boolean showStartMenu = args.getBoolean("launched_from_start_menu", false);
+        boolean isStartButton = !hasEntry && args.getBoolean("is_start_button", false);
+        boolean isOverflowMenu = !hasEntry && args.getBoolean("is_overflow_menu", false);
+        boolean isDesktopIcon = args.getSerializable("desktop_icon") != null;
+
+        DisplayInfo display = getDisplayInfo(context);
+
+        int statusBarHeight = 0;
+        int resourceId = context.getResources().getIdentifier("status_bar_height", "dimen", "android");
+        if(resourceId > 0)
+            statusBarHeight = context.getResources().getDimensionPixelSize(resourceId);
+
+        int contextMenuWidth = context.getResources().getDimensionPixelSize(R.dimen.tb_context_menu_width);
+
+        if(showStartMenu || isDesktopIcon) {
+            int x = args.getInt("x", 0);
+            int y = args.getInt("y", 0);
+            int offsetResourceId = isOverflowMenu ? R.dimen.tb_context_menu_offset_overflow : R.dimen.tb_context_menu_offset;
+            int offset = context.getResources().getDimensionPixelSize(offsetResourceId);
+
+            switch(TaskbarPosition.getTaskbarPosition(context)) {
+                case POSITION_BOTTOM_LEFT:
+                case POSITION_BOTTOM_VERTICAL_LEFT:
+                    params.gravity = Gravity.BOTTOM | Gravity.LEFT;
+                    params.x = x;
+                    params.y = display.height - y - offset;
+                    break;
+                case POSITION_BOTTOM_RIGHT:
+                case POSITION_BOTTOM_VERTICAL_RIGHT:
+                    params.gravity = Gravity.BOTTOM | Gravity.LEFT;
+                    params.x = x - contextMenuWidth + offset + offset;
+                    params.y = display.height - y - offset;
+                    break;
+                case POSITION_TOP_LEFT:
+                case POSITION_TOP_VERTICAL_LEFT:
+                    params.gravity = Gravity.TOP | Gravity.LEFT;
+                    params.x = x;
+                    params.y = y - offset + statusBarHeight;
+                    break;
+                case POSITION_TOP_RIGHT:
+                case POSITION_TOP_VERTICAL_RIGHT:
+                    params.gravity = Gravity.TOP | Gravity.LEFT;
+                    params.x = x - contextMenuWidth + offset + offset;
+                    params.y = y - offset + statusBarHeight;
+                    break;
+            }
+        } else {
+            int x = args.getInt("x", display.width);
+            int y = args.getInt("y", display.height);
+            int offset = context.getResources().getDimensionPixelSize(R.dimen.tb_icon_size);
+
+            switch(TaskbarPosition.getTaskbarPosition(context)) {
+                case POSITION_BOTTOM_LEFT:
+                    params.gravity = Gravity.BOTTOM | Gravity.LEFT;
+                    params.x = isStartButton ? 0 : x;
+                    params.y = offset;
+                    break;
+                case POSITION_BOTTOM_VERTICAL_LEFT:
+                    params.gravity = Gravity.BOTTOM | Gravity.LEFT;
+                    params.x = offset;
+                    params.y = display.height - y - (isStartButton ? 0 : offset);
+                    break;
+                case POSITION_BOTTOM_RIGHT:
+                    params.gravity = Gravity.BOTTOM | Gravity.RIGHT;
+                    params.x = display.width - x;
+                    params.y = offset;
+                    break;
+                case POSITION_BOTTOM_VERTICAL_RIGHT:
+                    params.gravity = Gravity.BOTTOM | Gravity.RIGHT;
+                    params.x = offset;
+                    params.y = display.height - y - (isStartButton ? 0 : offset);
+                    break;
+                case POSITION_TOP_LEFT:
+                    params.gravity = Gravity.TOP | Gravity.LEFT;
+                    params.x = isStartButton ? 0 : x;
+                    params.y = offset;
+                    break;
+                case POSITION_TOP_VERTICAL_LEFT:
+                    params.gravity = Gravity.TOP | Gravity.LEFT;
+                    params.x = offset;
+                    params.y = isStartButton ? 0 : y - statusBarHeight;
+                    break;
+                case POSITION_TOP_RIGHT:
+                    params.gravity = Gravity.TOP | Gravity.RIGHT;
+                    params.x = display.width - x;
+                    params.y = offset;
+                    break;
+                case POSITION_TOP_VERTICAL_RIGHT:
+                    params.gravity = Gravity.TOP | Gravity.RIGHT;
+                    params.x = offset;
+                    params.y = isStartButton ? 0 : y - statusBarHeight;
+                    break;
+            }
+
+            if(!TaskbarPosition.isVertical(context) && (params.x > display.width / 2))
+                params.x = params.x - contextMenuWidth + offset;
+        }
+
+        params.width = contextMenuWidth;
+
+        if(isChromeOs(context)
+                && TaskbarPosition.isBottom(context)) {
+            SharedPreferences pref = getSharedPreferences(context);
+
+            if(getChromeOsContextMenuFix(context)
+                    && !pref.getBoolean(PREF_HAS_CAPTION, false))
+                params.y = params.y - context.getResources().getDimensionPixelSize(R.dimen.tb_caption_offset);
+        }
+    }
+
     public static void checkForUpdates(Context context) {
         String url;
         if(isPlayStoreRelease(context)) {
@@ -775,15 +930,22 @@ public class U {
     }
 
     public static void refreshPinnedIcons(Context context) {
-        IconCache.getInstance(context).clearCache();
+        IconCache iconCache = IconCache.getInstance(context);
+        iconCache.clearCache();
+
+        applyPinnedApps(context, generatePinnedApps(context, iconCache.getGeneration(context)));
+    }
 
+    /**
+     * Rebuilds the pinned app entries with icons from the given icon cache generation,
+     * without changing the saved pinned apps.
+     */
+    public static List<AppEntry> generatePinnedApps(Context context, IconCache.Generation generation) {
         PinnedBlockedApps pba = PinnedBlockedApps.getInstance(context);
         List<AppEntry> pinnedAppsList = new ArrayList<>(pba.getPinnedApps());
-        List<AppEntry> blockedAppsList = new ArrayList<>(pba.getBlockedApps());
+        List<AppEntry> newPinnedAppsList = new ArrayList<>();
         PackageManager pm = context.getPackageManager();
 
-        pba.clear(context);
-
         for(AppEntry entry : pinnedAppsList) {
             UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
             LauncherApps launcherApps = (LauncherApps) context.getSystemService(Context.LAUNCHER_APPS_SERVICE);
@@ -818,14 +980,30 @@ public class U {
                         entry.getPackageName(),
                         entry.getComponentName(),
                         entry.getLabel(),
-                        IconCache.getInstance(context).getIcon(context, pm, appInfo),
+                        generation.getIcon(context, pm, appInfo),
                         true);
 
                 newEntry.setUserId(entry.getUserId(context));
-                pba.addPinnedApp(context, newEntry);
+                newPinnedAppsList.add(newEntry);
             }
         }
 
+        return newPinnedAppsList;
+    }
+
+    /**
+     * Replaces the saved pinned apps, keeping blocked apps as they are.
+     */
+    public static void applyPinnedApps(Context context, List<AppEntry> pinnedApps) {
+        PinnedBlockedApps pba = PinnedBlockedApps.getInstance(context);
+        List<AppEntry> blockedAppsList = new ArrayList<>(pba.getBlockedApps());
+
+        pba.clear(context);
+
+        for(AppEntry entry : pinnedApps) {
+            pba.addPinnedApp(context, entry);
+        }
+
         for(AppEntry entry : blockedAppsList) {
             pba.addBlockedApp(context, entry);
         }
@@ -882,6 +1060,10 @@ public class U {
     }
 
     private static boolean isServiceRunning(Context context, String className) {
+        // Library builds run the Taskbar in a separate process, so the in-process registry can't be used
+        if(!isLibrary(context))
+            return ServiceStateHelper.getInstance().isServiceRunning(className);
+
         ActivityManager manager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
         for(ActivityManager.RunningServiceInfo service : manager.getRunningServices(Integer.MAX_VALUE)) {
             if(className.equals(service.service.getClassName()))
@@ -1066,7 +1248,7 @@ public class U {
     }
 
     @SuppressLint("SwitchIntDef")
-    private static ApplicationType getApplicationType(Context context, AppEntry entry) {
+    static ApplicationType getApplicationType(Context context, AppEntry entry) {
         if(isGame(context, entry.getPackageName()))
             return ApplicationType.APP_FULLSCREEN;
 
@@ -1408,13 +1590,23 @@ public class U {
     }
 
     public static DisplayInfo getDisplayInfo(Context context, boolean fromTaskbar) {
-        context = getDisplayContext(context);
         int displayID = getTaskbarDisplayID(context);
+        int variant = fromTaskbar ? DisplayInfoCache.VARIANT_TASKBAR : DisplayInfoCache.VARIANT_DEFAULT;
+
+        DisplayInfoCache cache = DisplayInfoCache.getInstance();
+        DisplayInfo cachedInfo = cache.get(context, displayID, variant);
+        if(cachedInfo != null) return cachedInfo;
+
+        DisplayInfo info = createDisplayInfo(getDisplayContext(context), displayID, fromTaskbar);
+        if(info != null) cache.put(displayID, variant, info);
 
-        DisplayManager dm = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        return info != null ? info : new DisplayInfo(0, 0, 0, 0, false);
+    }
+
+    private static DisplayInfo createDisplayInfo(Context context, int displayID, boolean fromTaskbar) {
         Display currentDisplay = null;
 
-        for(Display display : dm.getDisplays()) {
+        for(Display display : DisplayInfoCache.getInstance().getDisplays(context)) {
             if(display.getDisplayId() == displayID) {
                 currentDisplay = display;
                 break;
@@ -1422,7 +1614,7 @@ public class U {
         }
 
         if(currentDisplay == null)
-            return new DisplayInfo(0, 0, 0, 0, false);
+            return null;
 
         DisplayMetrics metrics = new DisplayMetrics();
         currentDisplay.getMetrics(metrics);
@@ -1431,39 +1623,40 @@ public class U {
         currentDisplay.getRealMetrics(realMetrics);
 
         boolean displayDefaultsToFreeform = canEnableFreeform(context) && displayDefaultsToFreeform(context, currentDisplay);
-        DisplayInfo info = new DisplayInfo(metrics.widthPixels, metrics.heightPixels, metrics.densityDpi, 0, displayDefaultsToFreeform);
+        int width = metrics.widthPixels;
+        int height = metrics.heightPixels;
 
         if(isChromeOs(context)) {
             SharedPreferences pref = getSharedPreferences(context);
             if(!pref.getBoolean(PREF_CHROME_OS_CONTEXT_MENU_FIX, true)) {
-                info.width = realMetrics.widthPixels;
-                info.height = realMetrics.heightPixels;
+                width = realMetrics.widthPixels;
+                height = realMetrics.heightPixels;
             }
 
-            return info;
+            return new DisplayInfo(width, height, metrics.densityDpi, 0, displayDefaultsToFreeform);
         }
 
         // Workaround for incorrect display size on devices with notches in landscape mode
         if(fromTaskbar && getDisplayOrientation(context) == Configuration.ORIENTATION_LANDSCAPE)
-            return info;
+            return new DisplayInfo(width, height, metrics.densityDpi, 0, displayDefaultsToFreeform);
 
         boolean sameWidth = metrics.widthPixels == realMetrics.widthPixels;
         boolean sameHeight = metrics.heightPixels == realMetrics.heightPixels;
 
         if(sameWidth && !sameHeight) {
-            info.width = realMetrics.widthPixels;
-            info.height = realMetrics.heightPixels - getNavbarHeight(context);
+            width = realMetrics.widthPixels;
+            height = realMetrics.heightPixels - getNavbarHeight(context);
         }
 
         if(!sameWidth && sameHeight) {
-            info.width = realMetrics.widthPixels - getNavbarHeight(context);
-            info.height = realMetrics.heightPixels;
+            width = realMetrics.widthPixels - getNavbarHeight(context);
+            height = realMetrics.heightPixels;
         }
 
-        return info;
+        return new DisplayInfo(width, height, metrics.densityDpi, 0, displayDefaultsToFreeform);
     }
 
-    private static int getTaskbarDisplayID(Context context) {
+    public static int getTaskbarDisplayID(Context context) {
         LauncherHelper helper = LauncherHelper.getInstance();
 
         if(helper.isOnSecondaryHomeScreen(context))
@@ -1689,6 +1882,18 @@ public class U {
         return false;
     }
 
+    public static boolean isFreeVersionInstalled(Context context) {
+        PackageManager pm = context.getPackageManager();
+        try {
+            PackageInfo pInfo = pm.getPackageInfo(BuildConfig.BASE_APPLICATION_ID, 0);
+            return pInfo.versionCode >= 68
+                    && pm.checkSignatures(BuildConfig.BASE_APPLICATION_ID, context.getPackageName())
+                    == PackageManager.SIGNATURE_MATCH;
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+    }
+
     public static boolean isExternalAccessDisabled(Context context) {
         if(isLibrary(context)) return true;
 
@@ -1763,13 +1968,14 @@ public class U {
             File importedFile = new File(imagesDir, filename + "_new");
             if(importedFile.exists()) importedFile.delete();
 
-            BufferedInputStream is = new BufferedInputStream(context.getContentResolver().openInputStream(uri));
-            byte[] data = new byte[is.available()];
+            InputStream is = context.getContentResolver().openInputStream(uri);
+            if(is == null) return false;
+
+            OutputStream os = new FileOutputStream(importedFile);
 
-            if(data.length > 0) {
-                BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(importedFile));
-                is.read(data);
-                os.write(data);
+            try {
+                copyStream(is, os);
+            } finally {
                 is.close();
                 os.close();
             }
@@ -1778,33 +1984,53 @@ public class U {
             if(prevFile.exists()) prevFile.delete();
 
             importedFile.renameTo(prevFile);
+            CustomImageCache.getInstance(context).remove(context, filename);
             return true;
         } catch (IOException e) {
             return false;
         }
     }
 
+    public static long copyStream(InputStream is, OutputStream os) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+
+        while((read = is.read(buffer)) != -1) {
+            os.write(buffer, 0, read);
+            total += read;
+        }
+
+        return total;
+    }
+
     public static String[] getImageFilenames() {
         return new String[] {"custom_image", "desktop_wallpaper"};
     }
 
     public static void applyCustomImage(Context context, String filename, ImageView view, Drawable errorDrawable) {
+        DisplayInfo display = getDisplayInfo(context);
+        applyCustomImage(context, filename, view, errorDrawable, display.width, display.height);
+    }
+
+    public static void applyCustomImage(Context context,
+                                        String filename,
+                                        ImageView view,
+                                        Drawable errorDrawable,
+                                        int width,
+                                        int height) {
         File file = new File(context.getFilesDir() + "/tb_images", filename);
         if(file.exists()) {
-            Handler handler = newHandler();
-            new Thread(() -> {
-                Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
-                handler.post(() -> {
-                    if(bitmap != null) {
-                        BitmapDrawable bitmapDrawable = new BitmapDrawable(context.getResources(), bitmap);
-                        bitmapDrawable.setFilterBitmap(bitmap.getWidth() * bitmap.getHeight() > 2000);
-                        view.setImageDrawable(bitmapDrawable);
-                    } else {
-                        showToastLong(context, R.string.tb_error_reading_custom_start_image);
-                        view.setImageDrawable(errorDrawable);
-                    }
-                });
-            }).start();
+            CustomImageCache.getInstance(context).load(context, file, width, height, bitmap -> {
+                if(bitmap != null) {
+                    BitmapDrawable bitmapDrawable = new BitmapDrawable(context.getResources(), bitmap);
+                    bitmapDrawable.setFilterBitmap(bitmap.getWidth() * bitmap.getHeight() > 2000);
+                    view.setImageDrawable(bitmapDrawable);
+                } else {
+                    showToastLong(context, R.string.tb_error_reading_custom_start_image);
+                    view.setImageDrawable(errorDrawable);
+                }
+            });
         } else
             view.setImageDrawable(errorDrawable);
     }
@@ -1893,8 +2119,7 @@ public class U {
     }
 
     private static Display getExternalDisplay(Context context) {
-        DisplayManager dm = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
-        Display[] displays = dm.getDisplays();
+        Display[] displays = DisplayInfoCache.getInstance().getDisplays(context);
 
         return displays[displays.length - 1];
     }
@@ -1908,6 +2133,10 @@ public class U {
         if(display == null)
             return new DisplayInfo(0, 0, 0, 0, false);
 
+        DisplayInfoCache cache = DisplayInfoCache.getInstance();
+        DisplayInfo cachedInfo = cache.get(context, display.getDisplayId(), DisplayInfoCache.VARIANT_EXTERNAL);
+        if(cachedInfo != null) return cachedInfo;
+
         DisplayMetrics metrics = new DisplayMetrics();
         display.getRealMetrics(metrics);
 
@@ -1919,7 +2148,10 @@ public class U {
         }
 
         boolean displayDefaultsToFreeform = canEnableFreeform(context) && displayDefaultsToFreeform(context, display);
-        return new DisplayInfo(metrics.widthPixels, metrics.heightPixels, metrics.densityDpi, defaultDensity, displayDefaultsToFreeform);
+        DisplayInfo info = new DisplayInfo(metrics.widthPixels, metrics.heightPixels, metrics.densityDpi, defaultDensity, displayDefaultsToFreeform);
+
+        cache.put(display.getDisplayId(), DisplayInfoCache.VARIANT_EXTERNAL, info);
+        return info;
     }
 
     @SuppressLint("PrivateApi")
@@ -2033,19 +2265,45 @@ public class U {
     }
 
     public static BitmapDrawable resizeDrawable(Context context, Drawable drawable, @DimenRes int iconSizeRes) {
-        int width = Math.max(1, drawable.getIntrinsicWidth());
-        int height = Math.max(1, drawable.getIntrinsicHeight());
+        int iconSize = context.getApplicationContext().getResources().getDimensionPixelSize(iconSizeRes);
+        return drawToBitmap(context, drawable, iconSize, iconSize);
+    }
+
+    /**
+     * Draws a drawable straight into a bitmap that fits within maxSize, keeping its aspect ratio.
+     * Bitmaps that are already small enough are returned as they are.
+     */
+    public static BitmapDrawable rasterizeDrawable(Context context, Drawable drawable, int maxSize) {
+        if(drawable instanceof BitmapDrawable) {
+            Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+            if(bitmap != null && bitmap.getWidth() <= maxSize && bitmap.getHeight() <= maxSize)
+                return (BitmapDrawable) drawable;
+        }
 
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        int width = drawable.getIntrinsicWidth() > 0 ? drawable.getIntrinsicWidth() : maxSize;
+        int height = drawable.getIntrinsicHeight() > 0 ? drawable.getIntrinsicHeight() : maxSize;
+        float scale = Math.min(1, Math.min((float) maxSize / width, (float) maxSize / height));
+
+        return drawToBitmap(context, drawable,
+                Math.max(1, Math.round(width * scale)),
+                Math.max(1, Math.round(height * scale)));
+    }
+
+    private static BitmapDrawable drawToBitmap(Context context, Drawable drawable, int width, int height) {
+        // Opaque drawables don't need an alpha channel, which halves their size
+        Bitmap.Config config = drawable.getOpacity() == PixelFormat.OPAQUE
+                ? Bitmap.Config.RGB_565
+                : Bitmap.Config.ARGB_8888;
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, config);
         Canvas canvas = new Canvas(bitmap);
 
-        drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
+        Rect bounds = drawable.copyBounds();
+        drawable.setBounds(0, 0, width, height);
         drawable.draw(canvas);
+        drawable.setBounds(bounds);
 
-        int iconSize = context.getApplicationContext().getResources().getDimensionPixelSize(iconSizeRes);
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, iconSize, iconSize, true);
-
-        return new BitmapDrawable(context.getResources(), resizedBitmap);
+        return new BitmapDrawable(context.getResources(), bitmap);
     }
 
     private static String getCurrentTheme(Context context) {
@@ -2211,6 +2469,10 @@ public class U {
 
     public static void clearCaches(Context context) {
         IconCache.getInstance(context).clearCache();
+        WidgetPreviewCache.getInstance(context).clearCache();
+        LaunchPlanCache.getInstance().clearCache();
+        ShortcutCache.getInstance().clearCache();
+        DisplayInfoCache.getInstance().clear();
         DisplayHelper.getInstance().clear();
     }
 
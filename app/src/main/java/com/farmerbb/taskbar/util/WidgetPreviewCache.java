@@ -0,0 +1,163 @@
+/* Copyright 2026 Braden Farmer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.farmerbb.taskbar.util;
+
+import android.app.ActivityManager;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.ComponentName;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Process;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.List;
+
+public class WidgetPreviewCache implements MemoryPolicy.Trimmable {
+
+    public interface Listener {
+        void onPreviewLoaded(BitmapDrawable preview);
+    }
+
+    private final LruCache<String, BitmapDrawable> previews;
+
+    private static WidgetPreviewCache theInstance;
+
+    private WidgetPreviewCache(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        final int memClass = am.getMemoryClass();
+        final int cacheSize = (1024 * 1024 * memClass) / 32;
+
+        previews = new LruCache<String, BitmapDrawable>(cacheSize) {
+            @Override
+            protected int sizeOf(String key, BitmapDrawable value) {
+                return value.getBitmap().getByteCount();
+            }
+        };
+
+        MemoryPolicy.getInstance(context).register(this);
+    }
+
+    public static WidgetPreviewCache getInstance(Context context) {
+        if(theInstance == null) theInstance = new WidgetPreviewCache(context);
+
+        return theInstance;
+    }
+
+    public static String getKey(ComponentName provider, int width, int height) {
+        return provider.flattenToString() + ":" + width + "x" + height;
+    }
+
+    public BitmapDrawable getPreview(ComponentName provider, int width, int height) {
+        return previews.get(getKey(provider, width, height));
+    }
+
+    public void loadPreview(Context context,
+                            AppWidgetProviderInfo info,
+                            int width,
+                            int height,
+                            Listener listener) {
+        BitmapDrawable cached = getPreview(info.provider, width, height);
+        if(cached != null) {
+            listener.onPreviewLoaded(cached);
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+        getLane().submit(token -> renderAndCache(appContext, info, width, height), listener::onPreviewLoaded);
+    }
+
+    public void prefetch(Context context, List<ComponentName> providers, int width, int height) {
+        if(providers.isEmpty()) return;
+
+        Context appContext = context.getApplicationContext();
+        getLane().execute(() -> {
+            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(appContext);
+            List<AppWidgetProviderInfo> providerInfoList =
+                    appWidgetManager.getInstalledProvidersForProfile(Process.myUserHandle());
+
+            for(AppWidgetProviderInfo info : providerInfoList) {
+                if(providers.contains(info.provider))
+                    renderAndCache(appContext, info, width, height);
+            }
+        });
+    }
+
+    private TaskScheduler.Lane getLane() {
+        return TaskScheduler.getInstance().lane(TaskScheduler.LANE_WIDGET_PREVIEWS);
+    }
+
+    public void clearCache() {
+        previews.evictAll();
+    }
+
+    @Override
+    public void trimMemory(int tier) {
+        previews.trimToSize((int) (previews.maxSize() * MemoryPolicy.getRetainFraction(tier)));
+    }
+
+    private BitmapDrawable renderAndCache(Context context, AppWidgetProviderInfo info, int width, int height) {
+        String key = getKey(info.provider, width, height);
+        BitmapDrawable preview = previews.get(key);
+        if(preview != null) return preview;
+
+        Drawable drawable = info.loadPreviewImage(context, -1);
+        if(drawable == null) drawable = info.loadIcon(context, -1);
+
+        preview = renderDesaturated(context, drawable, width, height);
+        previews.put(key, preview);
+        return preview;
+    }
+
+    @VisibleForTesting
+    BitmapDrawable renderDesaturated(Context context, Drawable drawable, int maxWidth, int maxHeight) {
+        int width = drawable.getIntrinsicWidth() > 0 ? drawable.getIntrinsicWidth() : maxWidth;
+        int height = drawable.getIntrinsicHeight() > 0 ? drawable.getIntrinsicHeight() : maxHeight;
+
+        // Only scale down; the placeholder ImageView takes care of fitting the result into the cell
+        float scale = Math.min(1, Math.min((float) maxWidth / width, (float) maxHeight / height));
+        width = Math.max(1, Math.round(width * scale));
+        height = Math.max(1, Math.round(height * scale));
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        Paint paint = new Paint();
+        paint.setColorFilter(new ColorMatrixColorFilter(newDesaturationMatrix()));
+
+        canvas.saveLayer(null, paint);
+        drawable.setBounds(0, 0, width, height);
+        drawable.draw(canvas);
+        canvas.restore();
+
+        return new BitmapDrawable(context.getResources(), bitmap);
+    }
+
+    @VisibleForTesting
+    static ColorMatrix newDesaturationMatrix() {
+        ColorMatrix matrix = new ColorMatrix();
+        matrix.setSaturation(0);
+        return matrix;
+    }
+}
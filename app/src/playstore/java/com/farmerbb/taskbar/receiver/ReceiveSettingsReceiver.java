@@ -22,6 +22,7 @@ import android.net.Uri;
 import com.farmerbb.taskbar.BuildConfig;
 import com.farmerbb.taskbar.backup.BackupUtils;
 import com.farmerbb.taskbar.backup.IntentBackupAgent;
+import com.farmerbb.taskbar.backup.SettingsSyncUtils;
 import com.farmerbb.taskbar.util.U;
 
 import java.io.File;
@@ -30,27 +31,31 @@ import java.io.IOException;
 import static com.farmerbb.taskbar.util.Constants.*;
 
 public class ReceiveSettingsReceiver extends BroadcastReceiver {
+    @SuppressWarnings("ResultOfMethodCallIgnored")
     @Override
     public void onReceive(Context context, Intent intent) {
         // Ignore this broadcast if this is the free version
         if(context.getPackageName().equals(BuildConfig.PAID_APPLICATION_ID)) {
-            BackupUtils.restore(context, new IntentBackupAgent(intent));
+            if(SettingsSyncUtils.isSyncIntent(intent))
+                SettingsSyncUtils.applySyncResponse(context, intent);
+            else {
+                BackupUtils.restore(context, new IntentBackupAgent(intent));
 
-            // Get images
-            for(String filename : U.getImageFilenames()) {
-                if(intent.hasExtra(filename)) {
-                    Uri uri = intent.getParcelableExtra(filename);
-                    U.importImage(context, uri, filename);
+                // Get images
+                for(String filename : U.getImageFilenames()) {
+                    if(intent.hasExtra(filename)) {
+                        Uri uri = intent.getParcelableExtra(filename);
+                        U.importImage(context, uri, filename);
+                    }
                 }
             }
 
-            // Finish import
+            // Finish import; it can be repeated later from the manage app data screen
             try {
-                File file = new File(context.getFilesDir() + File.separator + "imported_successfully");
-                if(file.createNewFile()) {
-                    U.sendBroadcast(context, ACTION_IMPORT_FINISHED);
-                }
+                new File(context.getFilesDir() + File.separator + "imported_successfully").createNewFile();
             } catch (IOException ignored) {}
+
+            U.sendBroadcast(context, ACTION_IMPORT_FINISHED);
         }
     }
 }
@@ -24,9 +24,11 @@ import androidx.core.content.FileProvider;
 import com.farmerbb.taskbar.BuildConfig;
 import com.farmerbb.taskbar.backup.BackupUtils;
 import com.farmerbb.taskbar.backup.IntentBackupAgent;
+import com.farmerbb.taskbar.backup.SettingsSyncUtils;
 import com.farmerbb.taskbar.util.U;
 
 import java.io.File;
+import java.io.IOException;
 
 import static com.farmerbb.taskbar.util.Constants.*;
 
@@ -38,6 +40,20 @@ public class SendSettingsReceiver extends BroadcastReceiver {
             Intent sendSettingsIntent = new Intent(ACTION_SEND_SETTINGS);
             sendSettingsIntent.setPackage(BuildConfig.PAID_APPLICATION_ID);
 
+            // Newer paid versions request a delta sync, with data shared through our FileProvider
+            if(SettingsSyncUtils.isSyncIntent(intent)
+                    && U.isPlayStoreRelease(context, BuildConfig.PAID_APPLICATION_ID)) {
+                try {
+                    SettingsSyncUtils.addSyncResponseExtras(context, intent, sendSettingsIntent,
+                            BuildConfig.PAID_APPLICATION_ID);
+                    context.sendBroadcast(sendSettingsIntent);
+                    return;
+                } catch (IOException e) {
+                    sendSettingsIntent = new Intent(ACTION_SEND_SETTINGS);
+                    sendSettingsIntent.setPackage(BuildConfig.PAID_APPLICATION_ID);
+                }
+            }
+
             BackupUtils.backup(context, new IntentBackupAgent(sendSettingsIntent));
 
             // Get images
@@ -0,0 +1,88 @@
+package com.farmerbb.taskbar.activity
+
+import android.net.Uri
+import com.farmerbb.taskbar.R
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows
+
+@RunWith(RobolectricTestRunner::class)
+class BackupRestoreActivityTest {
+    private val uri = Uri.parse("content://com.farmerbb.taskbar.test/backup.zip")
+    private lateinit var activity: BackupRestoreActivity
+    private lateinit var imagesDir: File
+
+    @Before
+    fun setUp() {
+        // The activity is not created, so that no import starts on its own
+        activity = Robolectric.buildActivity(BackupRestoreActivity::class.java).get()
+        imagesDir = File(activity.filesDir, "tb_images")
+    }
+
+    @After
+    fun tearDown() {
+        imagesDir.deleteRecursively()
+        File(activity.filesDir, "restore_in_progress").delete()
+        File(activity.filesDir, "restore_successful").delete()
+    }
+
+    @Test
+    fun testImportWithoutBackupJsonKeepsImages() {
+        val image = File(imagesDir, "custom_image")
+        imagesDir.mkdirs()
+        image.writeBytes(byteArrayOf(1, 2, 3))
+
+        registerZip(mapOf("tb_images/custom_image" to byteArrayOf(4, 5, 6)))
+        activity.importData(uri)
+
+        Assert.assertArrayEquals(byteArrayOf(1, 2, 3), image.readBytes())
+        Assert.assertFalse(File(imagesDir, "custom_image_restore").exists())
+        Assert.assertFalse(File(activity.filesDir, "restore_in_progress").exists())
+        Assert.assertFalse(File(activity.filesDir, "restore_successful").exists())
+        Assert.assertEquals(
+            R.string.tb_backup_file_invalid,
+            Shadows.shadowOf(activity).resultCode
+        )
+    }
+
+    @Test
+    fun testImportInvalidFileKeepsImages() {
+        val image = File(imagesDir, "desktop_wallpaper")
+        imagesDir.mkdirs()
+        image.writeBytes(byteArrayOf(1, 2, 3))
+
+        Shadows.shadowOf(activity.contentResolver)
+            .registerInputStream(uri, ByteArrayInputStream("not a zip".toByteArray()))
+        activity.importData(uri)
+
+        Assert.assertArrayEquals(byteArrayOf(1, 2, 3), image.readBytes())
+        Assert.assertEquals(
+            R.string.tb_backup_file_invalid,
+            Shadows.shadowOf(activity).resultCode
+        )
+    }
+
+    private fun registerZip(entries: Map<String, ByteArray>) {
+        val bytes = ByteArrayOutputStream()
+        ZipOutputStream(bytes).use { zip ->
+            for ((name, data) in entries) {
+                zip.putNextEntry(ZipEntry(name))
+                zip.write(data)
+                zip.closeEntry()
+            }
+        }
+
+        Shadows.shadowOf(activity.contentResolver)
+            .registerInputStream(uri, ByteArrayInputStream(bytes.toByteArray()))
+    }
+}
@@ -0,0 +1,78 @@
+package com.farmerbb.taskbar.backup
+
+import android.util.JsonReader
+import java.io.StringReader
+import org.json.JSONObject
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class JsonReaderBackupAgentTest {
+    @Test
+    fun testReadStrings() {
+        val agent = read("""{"string": "value", "number": 42, "bool": true, "empty": ""}""")
+        Assert.assertEquals("value", agent.getString("string"))
+        Assert.assertEquals("42", agent.getString("number"))
+        Assert.assertEquals("true", agent.getString("bool"))
+        Assert.assertEquals("", agent.getString("empty"))
+        Assert.assertNull(agent.getString("missing"))
+    }
+
+    @Test
+    fun testReadNulls() {
+        val agent = read("""{"value": null, "array": ["a", null, "b"]}""")
+        Assert.assertNull(agent.getString("value"))
+        Assert.assertArrayEquals(arrayOf("a", null, "b"), agent.getStringArray("array"))
+    }
+
+    @Test
+    fun testReadArrays() {
+        val agent = read("""{"strings": ["a", "b"], "mixed": [1, false, "c"], "empty": []}""")
+        Assert.assertArrayEquals(arrayOf("a", "b"), agent.getStringArray("strings"))
+        Assert.assertArrayEquals(arrayOf("1", "false", "c"), agent.getStringArray("mixed"))
+        Assert.assertEquals(0, agent.getStringArray("empty")!!.size)
+        Assert.assertNull(agent.getString("strings"))
+        Assert.assertNull(agent.getStringArray("missing"))
+    }
+
+    @Test
+    fun testReadLongArrays() {
+        val agent = read("""{"longs": [1, 9000000000], "strings": ["1", "x"]}""")
+        Assert.assertArrayEquals(longArrayOf(1, 9000000000), agent.getLongArray("longs"))
+        Assert.assertNull(agent.getLongArray("strings"))
+        Assert.assertNull(agent.getLongArray("missing"))
+    }
+
+    @Test
+    fun testNestedValuesAreSkipped() {
+        val agent = read(
+            """{"before": "a", "nested": {"inner": "b", "deeper": {"list": [1, 2]}},
+            "array": ["c", {"inner": "d"}, ["e"]], "after": "f"}"""
+        )
+        Assert.assertEquals("a", agent.getString("before"))
+        Assert.assertNull(agent.getString("nested"))
+        Assert.assertNull(agent.getStringArray("nested"))
+        Assert.assertNull(agent.getString("inner"))
+        Assert.assertNull(agent.getStringArray("list"))
+        Assert.assertArrayEquals(arrayOf("c", null, null), agent.getStringArray("array"))
+        Assert.assertEquals("f", agent.getString("after"))
+    }
+
+    @Test
+    fun testReadsJsonBackupAgentOutput() {
+        val json = JSONObject()
+        val writer = JSONBackupAgent(json)
+        writer.putString("string", "value")
+        writer.putStringArray("strings", arrayOf("a", "b"))
+        writer.putLongArray("longs", longArrayOf(1, 2))
+
+        val agent = read(json.toString())
+        Assert.assertEquals("value", agent.getString("string"))
+        Assert.assertArrayEquals(arrayOf("a", "b"), agent.getStringArray("strings"))
+        Assert.assertArrayEquals(longArrayOf(1, 2), agent.getLongArray("longs"))
+    }
+
+    private fun read(json: String) = JsonReaderBackupAgent(JsonReader(StringReader(json)))
+}
@@ -0,0 +1,170 @@
+package com.farmerbb.taskbar.backup
+
+import android.content.Context
+import android.content.Intent
+import android.net.Uri
+import androidx.test.core.app.ApplicationProvider
+import com.farmerbb.taskbar.util.Blacklist
+import com.farmerbb.taskbar.util.BlacklistEntry
+import java.io.ByteArrayInputStream
+import java.io.File
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows
+
+@RunWith(RobolectricTestRunner::class)
+class SettingsSyncUtilsTest {
+    private lateinit var context: Context
+    private lateinit var imagesDir: File
+    private lateinit var syncDir: File
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        imagesDir = File(context.filesDir, "tb_images")
+        syncDir = File(context.filesDir, "tb_sync")
+        clearSyncState()
+    }
+
+    @After
+    fun tearDown() {
+        clearSyncState()
+        Blacklist.getInstance(context).clear(context)
+        imagesDir.deleteRecursively()
+        syncDir.deleteRecursively()
+    }
+
+    @Test
+    fun testVersionlessRequestGetsEveryChunk() {
+        val request = Intent()
+        Assert.assertFalse(SettingsSyncUtils.isSyncIntent(request))
+
+        // Requests without acked digests fall back to sending every section
+        val response = sync(request)
+        Assert.assertTrue(SettingsSyncUtils.isSyncIntent(response))
+        val chunks = getChunks(response)
+        for (section in BackupUtils.getSections()) {
+            Assert.assertTrue(chunks.contains(section))
+            Assert.assertNotNull(getChunkUri(response, section))
+        }
+
+        // A versionless response carries no chunks, so nothing is recorded
+        SettingsSyncUtils.applySyncResponse(context, Intent())
+        Assert.assertEquals(0, getAckedChunks().size)
+    }
+
+    @Test
+    fun testUnchangedChunksAreSkipped() {
+        apply(sync(Intent()))
+        Assert.assertEquals(getChunks(sync(Intent())).size, getAckedChunks().size)
+
+        val response = sync(newRequest())
+        Assert.assertEquals(0, getChunks(response).size)
+        Assert.assertEquals(0, response.getStringArrayExtra(SettingsSyncUtils.EXTRA_SYNC_DIGESTS)!!.size)
+    }
+
+    @Test
+    fun testChangedChunkIsResent() {
+        apply(sync(Intent()))
+
+        val blacklist = Blacklist.getInstance(context)
+        blacklist.addBlockedApp(context, BlacklistEntry(context.packageName, context.packageName))
+
+        val response = sync(newRequest())
+        Assert.assertArrayEquals(arrayOf(BackupUtils.SECTION_BLACKLIST), getChunks(response))
+
+        apply(response)
+        Assert.assertTrue(blacklist.isBlocked(context.packageName))
+        Assert.assertEquals(0, getChunks(sync(newRequest())).size)
+    }
+
+    @Test
+    fun testRemovedImageIsSentWithEmptyDigest() {
+        val chunk = "image_custom_image"
+        val image = File(imagesDir, "custom_image")
+        imagesDir.mkdirs()
+        image.writeBytes(byteArrayOf(1, 2, 3))
+
+        val first = sync(Intent())
+        Assert.assertTrue(getChunks(first).contains(chunk))
+        Assert.assertNotNull(getChunkUri(first, chunk))
+        apply(first)
+        Assert.assertArrayEquals(byteArrayOf(1, 2, 3), image.readBytes())
+
+        image.delete()
+        val response = sync(newRequest())
+        Assert.assertArrayEquals(arrayOf(chunk), getChunks(response))
+        Assert.assertArrayEquals(
+            arrayOf(""),
+            response.getStringArrayExtra(SettingsSyncUtils.EXTRA_SYNC_DIGESTS)
+        )
+        Assert.assertNull(getChunkUri(response, chunk))
+
+        // The receiving side still has its copy of the image until the removal is applied
+        image.writeBytes(byteArrayOf(1, 2, 3))
+        apply(response)
+        Assert.assertFalse(image.exists())
+        Assert.assertEquals(0, getChunks(sync(newRequest())).size)
+    }
+
+    @Test
+    fun testFailedChunkRecordsNoDigests() {
+        val response = sync(Intent())
+        response.removeExtra(SettingsSyncUtils.EXTRA_SYNC_CHUNK_PREFIX + BackupUtils.SECTION_BLACKLIST)
+
+        apply(response)
+        Assert.assertEquals(0, getAckedChunks().size)
+
+        // Everything is sent again on the next request
+        Assert.assertEquals(getChunks(response).size, getChunks(sync(newRequest())).size)
+    }
+
+    private fun sync(request: Intent): Intent {
+        val response = Intent()
+        SettingsSyncUtils.addSyncResponseExtras(context, request, response, context.packageName)
+        return response
+    }
+
+    private fun apply(response: Intent) {
+        // Serve each shared file through the content resolver, as the receiving app would see it
+        val resolver = Shadows.shadowOf(context.contentResolver)
+        for (chunk in getChunks(response)) {
+            val uri = getChunkUri(response, chunk) ?: continue
+            val file = if (chunk.startsWith("image_"))
+                File(imagesDir, chunk.removePrefix("image_"))
+            else
+                File(syncDir, "$chunk.json")
+
+            resolver.registerInputStream(uri, ByteArrayInputStream(file.readBytes()))
+        }
+
+        SettingsSyncUtils.applySyncResponse(context, response)
+    }
+
+    private fun newRequest(): Intent {
+        val request = Intent()
+        SettingsSyncUtils.addSyncRequestExtras(context, request)
+        Assert.assertTrue(SettingsSyncUtils.isSyncIntent(request))
+        return request
+    }
+
+    private fun getAckedChunks(): Array<String> =
+        newRequest().getStringArrayExtra(SettingsSyncUtils.EXTRA_SYNC_ACKED_CHUNKS)!!
+
+    private fun getChunks(response: Intent): Array<String> =
+        response.getStringArrayExtra(SettingsSyncUtils.EXTRA_SYNC_CHUNKS)!!
+
+    private fun getChunkUri(response: Intent, chunk: String): Uri? =
+        response.getParcelableExtra(SettingsSyncUtils.EXTRA_SYNC_CHUNK_PREFIX + chunk)
+
+    private fun clearSyncState() {
+        context.getSharedPreferences("tb_settings_sync", Context.MODE_PRIVATE)
+            .edit()
+            .clear()
+            .commit()
+    }
+}
@@ -0,0 +1,52 @@
+package com.farmerbb.taskbar.helper
+
+import com.farmerbb.taskbar.service.NotificationService
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class ServiceStateHelperTest {
+    private val helper = ServiceStateHelper.getInstance()
+
+    @Test
+    fun testGetInstance() {
+        Assert.assertNotNull(helper)
+        for (i in 1..20) {
+            Assert.assertEquals(helper, ServiceStateHelper.getInstance())
+        }
+    }
+
+    @Test
+    fun testServiceLifecycle() {
+        val service = Robolectric.setupService(NotificationService::class.java)
+        Assert.assertTrue(helper.isServiceRunning(NotificationService::class.java))
+        service.onDestroy()
+        Assert.assertFalse(helper.isServiceRunning(NotificationService::class.java))
+    }
+
+    @Test
+    fun testListener() {
+        val service = Robolectric.buildService(NotificationService::class.java).get()
+        val changes = mutableListOf<Pair<String, Boolean>>()
+        val listener = ServiceStateHelper.Listener { className, running ->
+            changes.add(Pair(className, running))
+        }
+        helper.addListener(listener)
+        helper.onServiceCreated(service)
+        helper.onServiceCreated(service)
+        helper.onServiceDestroyed(service)
+        helper.removeListener(listener)
+        helper.onServiceCreated(service)
+        Assert.assertEquals(
+            listOf(
+                Pair(NotificationService::class.java.name, true),
+                Pair(NotificationService::class.java.name, false)
+            ),
+            changes
+        )
+        helper.onServiceDestroyed(service)
+    }
+}
@@ -0,0 +1,71 @@
+package com.farmerbb.taskbar.helper
+
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class StartupTimingHelperTest {
+    private lateinit var helper: StartupTimingHelper
+
+    @Before
+    fun setUp() {
+        helper = StartupTimingHelper.getInstance()
+        helper.begin()
+    }
+
+    @Test
+    fun testGetInstance() {
+        Assert.assertNotNull(helper)
+        for (i in 1..20) {
+            Assert.assertEquals(helper, StartupTimingHelper.getInstance())
+        }
+    }
+
+    @Test
+    fun testMilestonesAreRecordedOnce() {
+        helper.mark(StartupTimingHelper.MILESTONE_NOTIFICATION_SERVICE)
+        val token = helper.start()
+        helper.end(StartupTimingHelper.MILESTONE_DRAW_TASKBAR, token)
+        helper.mark(StartupTimingHelper.MILESTONE_NOTIFICATION_SERVICE)
+
+        val milestones = helper.milestones
+        Assert.assertEquals(2, milestones.size)
+        Assert.assertEquals(StartupTimingHelper.MILESTONE_NOTIFICATION_SERVICE, milestones[0].name)
+        Assert.assertEquals(-1, milestones[0].durationNanos)
+        Assert.assertEquals(StartupTimingHelper.MILESTONE_DRAW_TASKBAR, milestones[1].name)
+        Assert.assertTrue(milestones[1].durationNanos >= 0)
+        Assert.assertTrue(milestones[1].offsetNanos >= milestones[0].offsetNanos)
+        Assert.assertTrue(helper.hasMilestone(StartupTimingHelper.MILESTONE_DRAW_TASKBAR))
+        Assert.assertFalse(helper.hasMilestone(StartupTimingHelper.MILESTONE_DRAW_START_MENU))
+    }
+
+    @Test
+    fun testBeginClearsMilestones() {
+        helper.mark(StartupTimingHelper.MILESTONE_NOTIFICATION_SERVICE)
+        helper.begin()
+        Assert.assertTrue(helper.milestones.isEmpty())
+        Assert.assertEquals("", helper.toText())
+    }
+
+    @Test
+    fun testReport() {
+        // Only the first startup in a process is a cold one
+        helper.begin()
+        helper.mark(StartupTimingHelper.MILESTONE_NOTIFICATION_SERVICE)
+        helper.end(StartupTimingHelper.MILESTONE_DRAW_DASHBOARD, helper.start())
+
+        val text = helper.toText()
+        Assert.assertTrue(text.startsWith("Startup (warm)"))
+        Assert.assertTrue(text.contains(StartupTimingHelper.MILESTONE_NOTIFICATION_SERVICE))
+        Assert.assertTrue(text.contains(StartupTimingHelper.MILESTONE_DRAW_DASHBOARD))
+
+        val json = helper.toJson()
+        Assert.assertFalse(json.getBoolean("cold_start"))
+        val milestones = json.getJSONObject("milestones")
+        Assert.assertFalse(milestones.getJSONObject(StartupTimingHelper.MILESTONE_NOTIFICATION_SERVICE).has("duration_ms"))
+        Assert.assertTrue(milestones.getJSONObject(StartupTimingHelper.MILESTONE_DRAW_DASHBOARD).has("duration_ms"))
+    }
+}
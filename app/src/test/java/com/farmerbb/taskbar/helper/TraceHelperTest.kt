@@ -0,0 +1,78 @@
+package com.farmerbb.taskbar.helper
+
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class TraceHelperTest {
+    private lateinit var helper: TraceHelper
+
+    @Before
+    fun setUp() {
+        helper = TraceHelper.getInstance()
+        helper.reset()
+    }
+
+    @After
+    fun tearDown() {
+        helper.reset()
+    }
+
+    @Test
+    fun testGetInstance() {
+        Assert.assertNotNull(helper)
+        for (i in 1..20) {
+            Assert.assertEquals(helper, TraceHelper.getInstance())
+        }
+    }
+
+    @Test
+    fun testPercentiles() {
+        for (i in 1..100) {
+            helper.record(TEST_STAGE, i * 1_000_000L)
+        }
+        val snapshot = helper.snapshots.single()
+        Assert.assertEquals(TEST_STAGE, snapshot.name)
+        Assert.assertEquals(100, snapshot.count)
+        Assert.assertEquals(50_000_000L, snapshot.p50Nanos)
+        Assert.assertEquals(95_000_000L, snapshot.p95Nanos)
+        Assert.assertEquals(99_000_000L, snapshot.p99Nanos)
+        Assert.assertEquals(100_000_000L, snapshot.maxNanos)
+    }
+
+    @Test
+    fun testRollingWindowKeepsTotalCount() {
+        for (i in 1..1000) {
+            helper.record(TEST_STAGE, 1_000_000L)
+        }
+        helper.record(TEST_STAGE, 500_000_000L)
+        val snapshot = helper.snapshots.single()
+        Assert.assertEquals(1001, snapshot.count)
+        Assert.assertEquals(1_000_000L, snapshot.p50Nanos)
+        Assert.assertEquals(500_000_000L, snapshot.maxNanos)
+    }
+
+    @Test
+    fun testWrap() {
+        var ran = false
+        helper.wrap(TEST_STAGE) { ran = true }.run()
+        Assert.assertTrue(ran)
+        Assert.assertEquals(1, helper.snapshots.single().count)
+    }
+
+    @Test
+    fun testToJson() {
+        helper.record(TEST_STAGE, 2_000_000L)
+        val stage = helper.toJson().getJSONObject("stages").getJSONObject(TEST_STAGE)
+        Assert.assertEquals(1, stage.getLong("count"))
+        Assert.assertEquals(2.0, stage.getDouble("p50_ms"), 0.001)
+    }
+
+    companion object {
+        private const val TEST_STAGE = "test_stage"
+    }
+}
@@ -5,9 +5,14 @@ import android.content.Context
 import android.content.Intent
 import android.content.IntentFilter
 import android.os.Looper
+import android.os.Process
+import android.service.notification.StatusBarNotification
+import androidx.core.app.NotificationCompat
 import androidx.localbroadcastmanager.content.LocalBroadcastManager
 import androidx.test.core.app.ApplicationProvider
+import com.farmerbb.taskbar.R
 import com.farmerbb.taskbar.util.Constants
+import java.time.Duration
 import org.junit.After
 import org.junit.Assert
 import org.junit.Before
@@ -74,6 +79,77 @@ class NotificationCountServiceTest {
         Assert.assertTrue(receiver.count >= 0)
     }
 
+    @Test
+    fun testNotificationBurstIsCoalesced() {
+        for (i in 1..10) {
+            service.onNotificationPosted(null)
+            service.onNotificationRemoved(null)
+        }
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        Assert.assertEquals(0, receiver.count.toLong())
+        Assert.assertEquals(1, receiver.broadcasts.toLong())
+    }
+
+    @Test
+    fun testGroupSummariesAndNonClearableAreNotCounted() {
+        val listener = connect()
+        listener.onNotificationPosted(newNotification(1))
+        listener.onNotificationPosted(newNotification(2) { setGroup("group").setGroupSummary(true) })
+        listener.onNotificationPosted(newNotification(3) { setOngoing(true) })
+        listener.onNotificationPosted(newNotification(4) { setGroup("group") })
+        flushBroadcasts()
+        Assert.assertEquals(2, receiver.count.toLong())
+    }
+
+    @Test
+    fun testRemovingUncountedNotification() {
+        val listener = connect()
+        listener.onNotificationPosted(newNotification(1))
+        flushBroadcasts()
+        Assert.assertEquals(1, receiver.count.toLong())
+
+        receiver.reset()
+        listener.onNotificationRemoved(newNotification(2))
+        listener.onNotificationRemoved(newNotification(3) { setOngoing(true) })
+        flushBroadcasts()
+        Assert.assertEquals(0, receiver.broadcasts.toLong())
+
+        listener.onNotificationRemoved(newNotification(1))
+        flushBroadcasts()
+        Assert.assertEquals(0, receiver.count.toLong())
+    }
+
+    @Test
+    fun testRepostAsNonClearableIsNoLongerCounted() {
+        val listener = connect()
+        listener.onNotificationPosted(newNotification(1))
+        listener.onNotificationPosted(newNotification(2))
+        flushBroadcasts()
+        Assert.assertEquals(2, receiver.count.toLong())
+
+        listener.onNotificationPosted(newNotification(1) { setOngoing(true) })
+        flushBroadcasts()
+        Assert.assertEquals(1, receiver.count.toLong())
+    }
+
+    @Test
+    fun testStaleCountIsResynced() {
+        val listener = connect(newNotification(1), newNotification(2) { setOngoing(true) })
+        Assert.assertEquals(1, receiver.count.toLong())
+
+        // Events within the resync interval only update the running count
+        listener.active = arrayOf(newNotification(3), newNotification(4), newNotification(5))
+        listener.onNotificationPosted(newNotification(6))
+        flushBroadcasts()
+        Assert.assertEquals(2, receiver.count.toLong())
+
+        // After five minutes the next event rebuilds the count from the active notifications
+        Shadows.shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMinutes(6))
+        listener.onNotificationRemoved(newNotification(1))
+        flushBroadcasts()
+        Assert.assertEquals(3, receiver.count.toLong())
+    }
+
     @Test
     fun testGetValidCount() {
         Assert.assertEquals(0, service.getValidCount(0).toLong())
@@ -83,14 +159,60 @@ class NotificationCountServiceTest {
         Assert.assertEquals(99, service.getValidCount(Int.MAX_VALUE).toLong())
     }
 
+    private fun connect(vararg active: StatusBarNotification): TestNotificationCountService {
+        val listener = Robolectric.setupService(TestNotificationCountService::class.java)
+        listener.active = arrayOf(*active)
+        listener.onListenerConnected()
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        return listener
+    }
+
+    // Broadcasts after the first one are held back until the next frame
+    private fun flushBroadcasts() {
+        Shadows.shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(16))
+    }
+
+    @Suppress("DEPRECATION")
+    private fun newNotification(
+        id: Int,
+        configure: NotificationCompat.Builder.() -> Unit = {}
+    ): StatusBarNotification {
+        val builder = NotificationCompat.Builder(context, "test")
+            .setSmallIcon(R.drawable.tb_apps)
+            .setContentTitle("Notification $id")
+        builder.configure()
+
+        return StatusBarNotification(
+            context.packageName,
+            context.packageName,
+            id,
+            null,
+            Process.myUid(),
+            0,
+            0,
+            builder.build(),
+            Process.myUserHandle(),
+            System.currentTimeMillis()
+        )
+    }
+
+    class TestNotificationCountService : NotificationCountService() {
+        var active: Array<StatusBarNotification> = arrayOf()
+
+        override fun getActiveNotifications(): Array<StatusBarNotification> = active
+    }
+
     private class NotificationCountReceiver : BroadcastReceiver() {
         var count = -1
+        var broadcasts = 0
         override fun onReceive(context: Context, intent: Intent) {
             count = intent.getIntExtra(Constants.EXTRA_COUNT, -1)
+            broadcasts++
         }
 
         fun reset() {
             count = -1
+            broadcasts = 0
         }
     }
 }
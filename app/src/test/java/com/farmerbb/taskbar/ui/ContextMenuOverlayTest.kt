@@ -0,0 +1,93 @@
+package com.farmerbb.taskbar.ui
+
+import android.content.Context
+import android.content.Intent
+import android.os.Bundle
+import android.os.Looper
+import android.view.View
+import androidx.test.core.app.ApplicationProvider
+import com.farmerbb.taskbar.helper.MenuHelper
+import com.farmerbb.taskbar.util.Constants.ACTION_HIDE_CONTEXT_MENU
+import com.farmerbb.taskbar.util.Constants.ACTION_SHOW_CONTEXT_MENU_OVERLAY
+import com.farmerbb.taskbar.util.U
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows
+
+@RunWith(RobolectricTestRunner::class)
+class ContextMenuOverlayTest {
+    private lateinit var context: Context
+    private lateinit var host: RecordingUIHost
+    private lateinit var overlay: ContextMenuOverlay
+
+    private class RecordingUIHost : UIHost {
+        val views = mutableListOf<View>()
+
+        override fun addView(view: View, params: ViewParams) {
+            views.add(view)
+        }
+
+        override fun removeView(view: View) {
+            views.remove(view)
+        }
+
+        override fun terminate() {}
+        override fun updateViewLayout(view: View, params: ViewParams) {}
+    }
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        host = RecordingUIHost()
+        overlay = ContextMenuOverlay(context, host)
+    }
+
+    @After
+    fun tearDown() {
+        overlay.destroy()
+        MenuHelper.getInstance().isContextMenuOpen = false
+    }
+
+    @Test
+    fun testShowAndHide() {
+        showStartButtonMenu()
+        Assert.assertEquals(1, host.views.size)
+        Assert.assertTrue(MenuHelper.getInstance().isContextMenuOpen)
+
+        U.sendBroadcast(context, ACTION_HIDE_CONTEXT_MENU)
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        Assert.assertTrue(host.views.isEmpty())
+        Assert.assertFalse(MenuHelper.getInstance().isContextMenuOpen)
+    }
+
+    @Test
+    fun testLayoutIsReused() {
+        showStartButtonMenu()
+        val first = host.views[0]
+        U.sendBroadcast(context, ACTION_HIDE_CONTEXT_MENU)
+        showStartButtonMenu()
+        Assert.assertSame(first, host.views[0])
+    }
+
+    @Test
+    fun testDestroyRemovesMenu() {
+        showStartButtonMenu()
+        overlay.destroy()
+        Assert.assertTrue(host.views.isEmpty())
+        showStartButtonMenu()
+        Assert.assertTrue(host.views.isEmpty())
+    }
+
+    private fun showStartButtonMenu() {
+        val args = Bundle()
+        args.putBoolean("is_start_button", true)
+        val intent = Intent(ACTION_SHOW_CONTEXT_MENU_OVERLAY)
+        intent.putExtra("args", args)
+        U.sendBroadcast(context, intent)
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+    }
+}
@@ -174,6 +174,14 @@ class DashboardControllerTest {
         )
     }
 
+    @Test
+    fun testGetPaddedCellSize() {
+        val padding = context.resources.getDimensionPixelSize(R.dimen.tb_dashboard_placeholder_padding)
+        Assert.assertEquals(250 - padding * 4, uiController.getPaddedCellSize(context, 1000, 4))
+        Assert.assertEquals(1000 - padding * 4, uiController.getPaddedCellSize(context, 1000, 0))
+        Assert.assertEquals(1, uiController.getPaddedCellSize(context, padding, 2))
+    }
+
     @Test
     fun testShowPlaceholderToast() {
         val appWidgetManager = AppWidgetManager.getInstance(context)
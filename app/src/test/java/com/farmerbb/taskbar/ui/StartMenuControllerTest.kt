@@ -25,6 +25,7 @@ import com.farmerbb.taskbar.util.Constants.POSITION_TOP_RIGHT
 import com.farmerbb.taskbar.util.Constants.POSITION_TOP_VERTICAL_LEFT
 import com.farmerbb.taskbar.util.Constants.POSITION_TOP_VERTICAL_RIGHT
 import com.farmerbb.taskbar.util.Constants.PREF_SHOW_SEARCH_BAR
+import com.farmerbb.taskbar.util.ShortcutSearchIndex
 import com.farmerbb.taskbar.util.TaskbarPosition
 import com.farmerbb.taskbar.util.U
 import org.junit.After
@@ -197,6 +198,17 @@ class StartMenuControllerTest {
         verifyAppEntryContent(activityInfo, appEntries[1])
     }
 
+    @Test
+    fun testGetSearchRank() {
+        val unusedPrefix = StartMenuController.getSearchRank(ShortcutSearchIndex.MATCH_PREFIX, 0.0)
+        val usedPrefix = StartMenuController.getSearchRank(ShortcutSearchIndex.MATCH_PREFIX, 3.0)
+        val usedWordPrefix = StartMenuController.getSearchRank(ShortcutSearchIndex.MATCH_WORD_PREFIX, 10.0)
+        val usedContains = StartMenuController.getSearchRank(ShortcutSearchIndex.MATCH_CONTAINS, 100.0)
+        Assert.assertTrue(usedPrefix > unusedPrefix)
+        Assert.assertTrue(usedWordPrefix > unusedPrefix)
+        Assert.assertTrue(usedContains < unusedPrefix)
+    }
+
     private fun verifyAppEntryContent(activityInfo: ActivityInfo, appEntry: AppEntry) {
         Assert.assertEquals(activityInfo.nonLocalizedLabel, appEntry.label)
         Assert.assertEquals(activityInfo.packageName, appEntry.packageName)
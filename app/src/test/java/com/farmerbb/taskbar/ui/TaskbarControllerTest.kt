@@ -1,9 +1,11 @@
 package com.farmerbb.taskbar.ui
 
 import android.app.AlarmManager
+import android.app.Application
 import android.app.usage.UsageEvents
 import android.app.usage.UsageStatsManager
 import android.content.Context
+import android.content.Intent
 import android.content.SharedPreferences
 import android.content.pm.ActivityInfo
 import android.content.pm.LauncherActivityInfo
@@ -11,13 +13,21 @@ import android.content.pm.LauncherApps
 import android.graphics.Color
 import android.graphics.drawable.ColorDrawable
 import android.graphics.drawable.Drawable
+import android.net.ConnectivityManager
+import android.os.BatteryManager
+import android.os.Looper
 import android.os.SystemClock
 import android.os.UserHandle
 import android.os.UserManager
+import android.provider.Settings
+import android.telephony.PhoneStateListener
+import android.telephony.TelephonyManager
 import android.view.Gravity
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
+import android.view.WindowInsets
+import android.view.WindowManager
 import android.widget.FrameLayout
 import android.widget.ImageView
 import android.widget.LinearLayout
@@ -30,10 +40,12 @@ import com.farmerbb.taskbar.activity.HomeActivityDelegate
 import com.farmerbb.taskbar.activity.InvisibleActivityFreeform
 import com.farmerbb.taskbar.activity.MainActivity
 import com.farmerbb.taskbar.activity.SecondaryHomeActivity
+import com.farmerbb.taskbar.helper.StartupTimingHelper
 import com.farmerbb.taskbar.mockito.BooleanAnswer
 import com.farmerbb.taskbar.mockito.StringAnswer
 import com.farmerbb.taskbar.shadow.TaskbarShadowScrollView
 import com.farmerbb.taskbar.util.AppEntry
+import com.farmerbb.taskbar.util.IconCache
 import com.farmerbb.taskbar.util.Constants.POSITION_BOTTOM_LEFT
 import com.farmerbb.taskbar.util.Constants.POSITION_BOTTOM_RIGHT
 import com.farmerbb.taskbar.util.Constants.POSITION_BOTTOM_VERTICAL_LEFT
@@ -57,6 +69,7 @@ import com.farmerbb.taskbar.util.Constants.PREF_START_BUTTON_IMAGE_CUSTOM
 import com.farmerbb.taskbar.util.Constants.PREF_START_BUTTON_IMAGE_DEFAULT
 import com.farmerbb.taskbar.util.Constants.PREF_TIME_OF_SERVICE_START
 import com.farmerbb.taskbar.util.TaskbarPosition
+import com.farmerbb.taskbar.util.TaskbarSnapshot
 import com.farmerbb.taskbar.util.U
 import org.junit.After
 import org.junit.Assert
@@ -730,6 +743,190 @@ class TaskbarControllerTest {
         Assert.assertEquals(expectedDashboardEnabled, dashboardEnabled)
     }
 
+    @Test
+    fun testSystemTrayIndicatorsFollowBroadcasts() {
+        val sysTrayLayout = initializeSysTrayLayout(POSITION_BOTTOM_RIGHT)
+        val application = context as Application
+        val connectivityManager =
+                context.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+        val telephonyManager =
+                context.getSystemService(Context.TELEPHONY_SERVICE) as TelephonyManager
+        val batteryManager = context.getSystemService(Context.BATTERY_SERVICE) as BatteryManager
+        Shadows.shadowOf(batteryManager).setIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY, 50)
+
+        val receiverCount = Shadows.shadowOf(application).registeredReceivers.size
+        uiController.startSystemTrayIndicators()
+        Assert.assertEquals(receiverCount + 2, Shadows.shadowOf(application).registeredReceivers.size)
+        Assert.assertEquals(1, Shadows.shadowOf(connectivityManager).networkCallbacks.size)
+        Assert.assertEquals(
+                PhoneStateListener.LISTEN_SIGNAL_STRENGTHS,
+                Shadows.shadowOf(telephonyManager).listenEvents
+        )
+
+        val iconIds = ReflectionHelpers.getField<Map<Int, Int>>(uiController, "sysTrayIconIds")
+        val battery = sysTrayLayout.findViewById<ImageView>(R.id.battery)
+        context.sendBroadcast(newBatteryIntent(50, BatteryManager.BATTERY_STATUS_DISCHARGING))
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        Assert.assertEquals(getDrawableId("tb_battery_50"), iconIds[R.id.battery])
+        Assert.assertNotNull(battery.drawable)
+
+        context.sendBroadcast(newBatteryIntent(100, BatteryManager.BATTERY_STATUS_CHARGING))
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        Assert.assertEquals(getDrawableId("tb_battery_charging_full"), iconIds[R.id.battery])
+
+        Settings.Global.putInt(context.contentResolver, Settings.Global.AIRPLANE_MODE_ON, 1)
+        context.sendBroadcast(Intent(Intent.ACTION_AIRPLANE_MODE_CHANGED))
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        Assert.assertEquals(R.drawable.tb_airplanemode_active, iconIds[R.id.cellular])
+        Assert.assertNotNull(sysTrayLayout.findViewById<ImageView>(R.id.cellular).drawable)
+
+        uiController.stopSystemTrayIndicators()
+        Assert.assertEquals(receiverCount, Shadows.shadowOf(application).registeredReceivers.size)
+        Assert.assertEquals(0, Shadows.shadowOf(connectivityManager).networkCallbacks.size)
+        Assert.assertEquals(PhoneStateListener.LISTEN_NONE, Shadows.shadowOf(telephonyManager).listenEvents)
+
+        // Broadcasts sent after stopping no longer reach the indicators
+        context.sendBroadcast(newBatteryIntent(50, BatteryManager.BATTERY_STATUS_DISCHARGING))
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        Assert.assertEquals(getDrawableId("tb_battery_charging_full"), iconIds[R.id.battery])
+
+        Settings.Global.putInt(context.contentResolver, Settings.Global.AIRPLANE_MODE_ON, 0)
+    }
+
+    @Test
+    fun testInsetsChangeRechecksPosition() {
+        val layout = LinearLayout(context)
+        ReflectionHelpers.setField(uiController, "layout", layout)
+        ReflectionHelpers.setField(uiController, "showHideAutomagically", true)
+        ReflectionHelpers.setField(uiController, "positionIsVertical", false)
+        uiController.watchPositionChanges()
+
+        ReflectionHelpers.setField(uiController, "navBarSize", 48)
+        ReflectionHelpers.setField(uiController, "monitoringPositionChanges", true)
+        layout.dispatchApplyWindowInsets(WindowInsets.Builder().build())
+        Assert.assertEquals(-1, ReflectionHelpers.getField<Int>(uiController, "navBarSize"))
+
+        // The taskbar is back at the top of its window, so monitoring stops once rechecked
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        Assert.assertFalse(ReflectionHelpers.getField(uiController, "monitoringPositionChanges"))
+    }
+
+    @Test
+    fun testConfigurationChangeRechecksPosition() {
+        ReflectionHelpers.setField(uiController, "layout", LinearLayout(context))
+        ReflectionHelpers.setField(uiController, "showHideAutomagically", true)
+        ReflectionHelpers.setField(uiController, "positionIsVertical", false)
+        ReflectionHelpers.setField(uiController, "navBarSize", 48)
+        ReflectionHelpers.setField(uiController, "monitoringPositionChanges", true)
+
+        uiController.onConfigurationChanged(context.resources.configuration)
+        Assert.assertEquals(-1, ReflectionHelpers.getField<Int>(uiController, "navBarSize"))
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        Assert.assertFalse(ReflectionHelpers.getField(uiController, "monitoringPositionChanges"))
+    }
+
+    @Test
+    fun testSaveSnapshotIfChanged() {
+        val windowManager = context.getSystemService(Context.WINDOW_SERVICE) as WindowManager
+        val displayId = windowManager.defaultDisplay.displayId
+        TaskbarSnapshot.save(context, displayId, listOf())
+
+        val pinnedEntry = AppEntry(
+                Constants.TEST_PACKAGE,
+                Constants.TEST_COMPONENT,
+                Constants.TEST_LABEL,
+                null,
+                false
+        )
+        pinnedEntry.setUserId(0)
+
+        // Recent apps aren't populated yet, so their details come from the launcher app cache
+        val info = ActivityInfo()
+        info.packageName = Constants.TEST_PACKAGE + "2"
+        info.name = Constants.TEST_NAME
+        info.nonLocalizedLabel = Constants.TEST_LABEL
+        val recentEntry = AppEntry(info.packageName, null, null, null, false)
+        val launcherAppCache = listOf(
+                generateTestLauncherActivityInfo(context, info, Constants.DEFAULT_TEST_USER_ID)
+        )
+        val entries = listOf(pinnedEntry, recentEntry)
+
+        Assert.assertTrue(uiController.saveSnapshotIfChanged(entries, launcherAppCache, 1))
+        val snapshot = TaskbarSnapshot.load(context, displayId)
+        Assert.assertEquals(2, snapshot.size)
+        Assert.assertEquals(Constants.TEST_COMPONENT, snapshot[0].componentName)
+        Assert.assertTrue(snapshot[0].pinned)
+        Assert.assertEquals(
+                launcherAppCache[0].componentName.flattenToString(),
+                snapshot[1].componentName
+        )
+        Assert.assertFalse(snapshot[1].pinned)
+
+        // A refresh that finds the same apps doesn't rewrite the snapshot
+        Assert.assertFalse(uiController.saveSnapshotIfChanged(entries, launcherAppCache, 1))
+        Assert.assertTrue(uiController.saveSnapshotIfChanged(entries, launcherAppCache, 0))
+        Assert.assertTrue(uiController.saveSnapshotIfChanged(listOf(), listOf(), 0))
+        Assert.assertTrue(TaskbarSnapshot.load(context, displayId).isEmpty())
+    }
+
+    @Test
+    fun testRestoreSnapshotMarksFirstRecentApps() {
+        val windowManager = context.getSystemService(Context.WINDOW_SERVICE) as WindowManager
+        val displayId = windowManager.defaultDisplay.displayId
+        val info = ActivityInfo()
+        info.packageName = Constants.TEST_PACKAGE
+        info.name = Constants.TEST_NAME
+        info.nonLocalizedLabel = Constants.TEST_LABEL
+        val appInfo = generateTestLauncherActivityInfo(context, info, Constants.DEFAULT_TEST_USER_ID)
+        val userManager = context.getSystemService(Context.USER_SERVICE) as UserManager
+        val userSerial = userManager.getSerialNumberForUser(appInfo.user)
+        val componentName = appInfo.componentName.flattenToString()
+
+        // Load the icon once, so that the snapshot can be drawn from the cache
+        IconCache.getInstance(context).getIcon(context, appInfo)
+        val iconKey = IconCache.getIconKey(componentName, userSerial, IconCache.getIconSize(context))
+        Assert.assertNotNull(IconCache.getInstance(context).getCachedIcon(iconKey))
+
+        TaskbarSnapshot.save(context, displayId, listOf(TaskbarSnapshot.Entry(
+                Constants.TEST_PACKAGE,
+                componentName,
+                Constants.TEST_LABEL,
+                userSerial,
+                false,
+                iconKey
+        )))
+
+        val layoutId = uiController.getTaskbarLayoutId(POSITION_BOTTOM_LEFT)
+        val layout = LayoutInflater.from(context).inflate(layoutId, null) as LinearLayout
+        val taskbar = layout.findViewById<LinearLayout>(R.id.taskbar)
+        ReflectionHelpers.setField(uiController, "handler", U.newHandler())
+        ReflectionHelpers.setField(uiController, "scrollView",
+                layout.findViewById<FrameLayout>(R.id.taskbar_scrollview))
+        ReflectionHelpers.setField(uiController, "taskbar", taskbar)
+
+        val helper = StartupTimingHelper.getInstance()
+        helper.begin()
+        Assert.assertTrue(uiController.restoreSnapshot())
+        Assert.assertFalse(helper.hasMilestone(StartupTimingHelper.MILESTONE_FIRST_RECENT_APPS))
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        Assert.assertEquals(1, taskbar.childCount)
+        Assert.assertTrue(helper.hasMilestone(StartupTimingHelper.MILESTONE_FIRST_RECENT_APPS))
+
+        TaskbarSnapshot.save(context, displayId, listOf())
+        IconCache.getInstance(context).clearCache()
+    }
+
+    private fun newBatteryIntent(level: Int, status: Int): Intent {
+        val intent = Intent(Intent.ACTION_BATTERY_CHANGED)
+        intent.putExtra(BatteryManager.EXTRA_LEVEL, level)
+        intent.putExtra(BatteryManager.EXTRA_SCALE, 100)
+        intent.putExtra(BatteryManager.EXTRA_STATUS, status)
+        return intent
+    }
+
+    private fun getDrawableId(name: String) =
+            context.resources.getIdentifier(name, "drawable", context.packageName)
+
     private fun checkDrawSysTrayTimeVisibility(position: String, timeId: Int) {
         val sysTrayLayout = initializeSysTrayLayout(position)
         Assert.assertEquals(View.VISIBLE.toLong(), sysTrayLayout.findViewById<View>(timeId)
@@ -65,6 +65,28 @@ class AppEntryTest {
         Assert.assertEquals(icon, appEntry.getIcon(context))
     }
 
+    @Test
+    fun testReleaseIcon() {
+        Assert.assertTrue(appEntry.hasIcon())
+        Assert.assertTrue(appEntry.releaseIcon())
+        Assert.assertFalse(appEntry.hasIcon())
+        Assert.assertFalse(appEntry.releaseIcon())
+
+        // The icon is loaded again the next time it is needed
+        Assert.assertNotNull(appEntry.getIcon(context))
+        Assert.assertTrue(appEntry.hasIcon())
+
+        val entryWithoutUser = AppEntry(
+                context.packageName,
+                componentName.flattenToString(),
+                context.packageName,
+                icon,
+                false
+        )
+        Assert.assertFalse(entryWithoutUser.releaseIcon())
+        Assert.assertTrue(entryWithoutUser.hasIcon())
+    }
+
     @Test
     fun testSetLastTimeUsed() {
         Assert.assertEquals(0, appEntry.lastTimeUsed)
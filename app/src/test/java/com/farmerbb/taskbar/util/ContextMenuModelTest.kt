@@ -0,0 +1,69 @@
+package com.farmerbb.taskbar.util
+
+import android.content.Context
+import android.os.Bundle
+import androidx.test.core.app.ApplicationProvider
+import com.farmerbb.taskbar.util.Constants.PREF_OPEN_TASKBAR_SETTINGS
+import com.farmerbb.taskbar.util.Constants.PREF_QUIT_TASKBAR
+import com.farmerbb.taskbar.util.Constants.PREF_START_MENU_APPS
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class ContextMenuModelTest {
+    private lateinit var context: Context
+    private lateinit var host: RecordingHost
+
+    private class RecordingHost : ContextMenuModel.Host {
+        var items: List<ContextMenuModel.Item> = emptyList()
+        var title: CharSequence? = null
+
+        override fun showMenu(items: List<ContextMenuModel.Item>, title: CharSequence?) {
+            this.items = items
+            this.title = title
+        }
+
+        override fun isInMultiWindowMode() = false
+    }
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        host = RecordingHost()
+    }
+
+    @Test
+    fun testStartButtonMenu() {
+        val args = Bundle()
+        args.putBoolean("is_start_button", true)
+        val model = ContextMenuModel(context, host, args)
+        Assert.assertTrue(model.hasContent())
+
+        model.generateMenu()
+        Assert.assertEquals(
+            listOf(PREF_OPEN_TASKBAR_SETTINGS, PREF_START_MENU_APPS, PREF_QUIT_TASKBAR),
+            host.items.map { it.key }
+        )
+        Assert.assertTrue(host.items.none { it.isHeader || it.title.isNullOrEmpty() })
+        Assert.assertNull(host.title)
+    }
+
+    @Test
+    fun testStartButtonMenuWithoutQuit() {
+        val args = Bundle()
+        args.putBoolean("is_start_button", true)
+        args.putBoolean("dont_show_quit", true)
+        ContextMenuModel(context, host, args).generateMenu()
+        Assert.assertFalse(host.items.any { it.key == PREF_QUIT_TASKBAR })
+    }
+
+    @Test
+    fun testEmptyArgs() {
+        val model = ContextMenuModel(context, host, Bundle())
+        Assert.assertFalse(model.hasContent())
+        Assert.assertFalse(model.onBackPressed())
+    }
+}
@@ -0,0 +1,64 @@
+package com.farmerbb.taskbar.util
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.File
+
+@RunWith(RobolectricTestRunner::class)
+class CustomImageCacheTest {
+    private lateinit var context: Context
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+    }
+
+    @Test
+    fun testGetInstance() {
+        val cache = CustomImageCache.getInstance(context)
+        Assert.assertNotNull(cache)
+        for (i in 1..20) {
+            Assert.assertEquals(cache, CustomImageCache.getInstance(context))
+        }
+    }
+
+    @Test
+    fun testGetScale() {
+        // An 8000x6000 photo only has to cover a 1080x2400 portrait display
+        Assert.assertEquals(0.4f, CustomImageCache.getScale(8000, 6000, 1080, 2400), 0.0001f)
+        Assert.assertEquals(0.3f, CustomImageCache.getScale(8000, 6000, 2400, 1080), 0.0001f)
+        Assert.assertEquals(1f, CustomImageCache.getScale(800, 600, 1080, 2400), 0f)
+        Assert.assertEquals(1f, CustomImageCache.getScale(8000, 6000, 0, 0), 0f)
+    }
+
+    @Test
+    fun testGetSampleSize() {
+        Assert.assertEquals(2, CustomImageCache.getSampleSize(8000, 6000, 3200, 2400))
+        Assert.assertEquals(4, CustomImageCache.getSampleSize(8000, 6000, 1000, 750))
+        Assert.assertEquals(1, CustomImageCache.getSampleSize(800, 600, 800, 600))
+        Assert.assertEquals(1, CustomImageCache.getSampleSize(800, 600, 1080, 2400))
+    }
+
+    @Test
+    fun testGetKey() {
+        val file = File(context.filesDir, "desktop_wallpaper")
+        file.writeBytes(ByteArray(16))
+
+        val key = CustomImageCache.getKey(file, 1080, 2400)
+        Assert.assertTrue(key.startsWith(CustomImageCache.getSourcePrefix(file)))
+        Assert.assertTrue(key.endsWith("1080x2400"))
+        Assert.assertNotEquals(key, CustomImageCache.getKey(file, 2400, 1080))
+        Assert.assertEquals(
+            CustomImageCache.getKey(file, 0, 0),
+            CustomImageCache.getKey(file, -1, -1)
+        )
+
+        file.writeBytes(ByteArray(32))
+        Assert.assertNotEquals(key, CustomImageCache.getKey(file, 1080, 2400))
+    }
+}
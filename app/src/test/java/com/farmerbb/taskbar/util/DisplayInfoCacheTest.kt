@@ -0,0 +1,82 @@
+package com.farmerbb.taskbar.util
+
+import android.content.Context
+import android.view.Display
+import androidx.test.core.app.ApplicationProvider
+import com.farmerbb.taskbar.util.Constants.PREF_AUTO_HIDE_NAVBAR_DESKTOP_MODE
+import com.farmerbb.taskbar.util.Constants.PREF_DESKTOP_MODE
+import com.farmerbb.taskbar.util.Constants.PREF_DISPLAY_DENSITY
+import com.farmerbb.taskbar.util.Constants.PREF_MAX_NUM_OF_RECENTS
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class DisplayInfoCacheTest {
+    private lateinit var context: Context
+    private lateinit var cache: DisplayInfoCache
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        cache = DisplayInfoCache.getInstance()
+    }
+
+    @After
+    fun tearDown() {
+        cache.clear()
+    }
+
+    @Test
+    fun testGetInstance() {
+        Assert.assertNotNull(cache)
+        for (i in 1..20) {
+            Assert.assertEquals(cache, DisplayInfoCache.getInstance())
+        }
+    }
+
+    @Test
+    fun testGetDisplayInfoIsCached() {
+        val info = U.getDisplayInfo(context)
+        Assert.assertSame(info, U.getDisplayInfo(context))
+        Assert.assertSame(
+            info,
+            cache.get(context, Display.DEFAULT_DISPLAY, DisplayInfoCache.VARIANT_DEFAULT)
+        )
+    }
+
+    @Test
+    fun testInvalidate() {
+        U.getDisplayInfo(context)
+        U.getDisplayInfo(context, true)
+        cache.invalidate(Display.DEFAULT_DISPLAY)
+        Assert.assertNull(cache.get(context, Display.DEFAULT_DISPLAY, DisplayInfoCache.VARIANT_DEFAULT))
+        Assert.assertNull(cache.get(context, Display.DEFAULT_DISPLAY, DisplayInfoCache.VARIANT_TASKBAR))
+    }
+
+    @Test
+    fun testPreferenceChangeClearsCache() {
+        U.getDisplayInfo(context)
+        U.getSharedPreferences(context).edit().putString(PREF_DISPLAY_DENSITY, "320").commit()
+        Assert.assertNull(cache.get(context, Display.DEFAULT_DISPLAY, DisplayInfoCache.VARIANT_DEFAULT))
+    }
+
+    @Test
+    fun testUnrelatedPreferenceChangeKeepsCache() {
+        U.getDisplayInfo(context)
+        U.getSharedPreferences(context).edit().putBoolean("test_key", true).commit()
+        Assert.assertNotNull(cache.get(context, Display.DEFAULT_DISPLAY, DisplayInfoCache.VARIANT_DEFAULT))
+    }
+
+    @Test
+    fun testAffectsDisplayInfo() {
+        Assert.assertTrue(DisplayInfoCache.affectsDisplayInfo(PREF_DISPLAY_DENSITY))
+        Assert.assertTrue(DisplayInfoCache.affectsDisplayInfo(PREF_DESKTOP_MODE))
+        Assert.assertTrue(DisplayInfoCache.affectsDisplayInfo(PREF_AUTO_HIDE_NAVBAR_DESKTOP_MODE))
+        Assert.assertFalse(DisplayInfoCache.affectsDisplayInfo(PREF_MAX_NUM_OF_RECENTS))
+        Assert.assertFalse(DisplayInfoCache.affectsDisplayInfo("test_key"))
+    }
+}
@@ -0,0 +1,90 @@
+package com.farmerbb.taskbar.util
+
+import android.content.Context
+import android.content.pm.PackageInfo
+import android.graphics.Bitmap
+import android.graphics.drawable.BitmapDrawable
+import androidx.test.core.app.ApplicationProvider
+import com.farmerbb.taskbar.R
+import com.farmerbb.taskbar.util.Constants.PREF_ICON_PACK
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows
+
+@RunWith(RobolectricTestRunner::class)
+class IconCacheTest {
+    private lateinit var context: Context
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+    }
+
+    @Test
+    fun testGetSizeBucket() {
+        Assert.assertEquals(16, IconCache.getSizeBucket(0))
+        Assert.assertEquals(16, IconCache.getSizeBucket(1))
+        Assert.assertEquals(16, IconCache.getSizeBucket(16))
+        Assert.assertEquals(32, IconCache.getSizeBucket(17))
+        Assert.assertEquals(160, IconCache.getSizeBucket(158))
+    }
+
+    @Test
+    fun testGetIconSize() {
+        val size = context.resources.getDimensionPixelSize(R.dimen.tb_icon_size)
+        val iconSize = IconCache.getIconSize(context)
+        Assert.assertTrue(iconSize >= size)
+        Assert.assertTrue(iconSize < size + 16)
+        Assert.assertEquals(0, iconSize % 16)
+    }
+
+    @Test
+    fun testEvictPackage() {
+        val cache = IconCache.getInstance(context)
+        val icon = BitmapDrawable(context.resources, Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888))
+        val appKey = IconCache.getIconKey("com.example/.Main", 0, 48)
+        val otherSizeKey = IconCache.getIconKey("com.example/.Main", 0, 64)
+        val otherUserKey = IconCache.getIconKey("com.example/.Main", 10, 48)
+        val otherAppKey = IconCache.getIconKey("com.example.other/.Main", 0, 48)
+
+        for (key in listOf(appKey, otherSizeKey, otherUserKey, otherAppKey)) {
+            cache.putCachedIcon(context, key, icon)
+        }
+
+        Assert.assertEquals(2, cache.evictPackage("com.example", 0))
+        Assert.assertNull(cache.getCachedIcon(appKey))
+        Assert.assertNull(cache.getCachedIcon(otherSizeKey))
+        Assert.assertNotNull(cache.getCachedIcon(otherUserKey))
+        Assert.assertNotNull(cache.getCachedIcon(otherAppKey))
+        cache.clearCache()
+    }
+
+    @Test
+    fun testIconPackMissingFallsBackOnce() {
+        val iconPackPackage = "com.test.iconpack"
+        val shadowPackageManager = Shadows.shadowOf(context.packageManager)
+        shadowPackageManager.installPackage(PackageInfo().apply { packageName = iconPackPackage })
+        U.getSharedPreferences(context).edit().putString(PREF_ICON_PACK, iconPackPackage).apply()
+
+        val cache = IconCache.getInstance(context)
+        cache.clearCache()
+        val generation = cache.getGeneration(context)
+        Assert.assertEquals(iconPackPackage, generation.iconPackPackage)
+
+        shadowPackageManager.removePackage(iconPackPackage)
+        Assert.assertTrue(cache.onIconPackMissing(context, generation))
+        Assert.assertFalse(cache.onIconPackMissing(context, generation))
+
+        Assert.assertEquals(context.packageName, cache.getGeneration(context).iconPackPackage)
+        Assert.assertEquals(
+            context.packageName,
+            U.getSharedPreferences(context).getString(PREF_ICON_PACK, null)
+        )
+
+        U.getSharedPreferences(context).edit().remove(PREF_ICON_PACK).apply()
+        cache.clearCache()
+    }
+}
@@ -1,9 +1,13 @@
 package com.farmerbb.taskbar.util
 
+import android.app.Application
 import android.content.ComponentName
 import android.content.Context
+import android.content.Intent
 import android.content.IntentFilter
 import android.content.pm.PackageManager
+import android.net.Uri
+import android.os.Looper
 import androidx.test.core.app.ApplicationProvider
 import java.util.function.Consumer
 import org.junit.Assert
@@ -63,14 +67,51 @@ class IconPackManagerTest {
     }
 
     @Test
-    fun testGetIconPack() {
-        val iconPack = iconPackManager.getIconPack(context.packageName)
-        Assert.assertNotNull(iconPack)
-        Assert.assertEquals(context.packageName, iconPack.packageName)
-        Assert.assertSame(iconPack, iconPackManager.getIconPack(context.packageName))
-        iconPackManager.nullify()
-        val newIconPack = iconPackManager.getIconPack(context.packageName)
-        Assert.assertEquals(context.packageName, newIconPack.packageName)
-        Assert.assertNotSame(iconPack, newIconPack)
+    fun testGetCachedIconPacks() {
+        iconPackManager.invalidateIconPacks()
+        val shadowPackageManager = Shadows.shadowOf(context.packageManager)
+        val first = ComponentName("com.test.iconpack1", "com.test.iconpack1.Activity")
+        val second = ComponentName("com.test.iconpack2", "com.test.iconpack2.Activity")
+        shadowPackageManager.addActivityIfNotPresent(first)
+        shadowPackageManager.addIntentFilterForActivity(first, IntentFilter("org.adw.launcher.THEMES"))
+        Assert.assertEquals(1, iconPackManager.getCachedIconPacks(context).size)
+
+        shadowPackageManager.addActivityIfNotPresent(second)
+        shadowPackageManager.addIntentFilterForActivity(second, IntentFilter("org.adw.launcher.THEMES"))
+        Assert.assertEquals(1, iconPackManager.getCachedIconPacks(context).size)
+
+        val intent = Intent(Intent.ACTION_PACKAGE_ADDED, Uri.parse("package:" + second.packageName))
+        context.sendBroadcast(intent)
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        val iconPacks = iconPackManager.getCachedIconPacks(context)
+        Assert.assertEquals(2, iconPacks.size)
+        Assert.assertTrue(iconPacks[0].name <= iconPacks[1].name)
+
+        shadowPackageManager.removeActivity(first)
+        shadowPackageManager.removeActivity(second)
+        iconPackManager.invalidateIconPacks()
+    }
+
+    @Test
+    fun testUnregisterReceiver() {
+        iconPackManager.invalidateIconPacks()
+        val shadowPackageManager = Shadows.shadowOf(context.packageManager)
+        val first = ComponentName("com.test.iconpack1", "com.test.iconpack1.Activity")
+        shadowPackageManager.addActivityIfNotPresent(first)
+        shadowPackageManager.addIntentFilterForActivity(first, IntentFilter("org.adw.launcher.THEMES"))
+        Assert.assertEquals(1, iconPackManager.getCachedIconPacks(context).size)
+
+        val receiverCount = Shadows.shadowOf(context as Application).registeredReceivers.size
+        iconPackManager.unregisterReceiver()
+        Assert.assertEquals(
+            receiverCount - 1,
+            Shadows.shadowOf(context as Application).registeredReceivers.size
+        )
+
+        // The cached list is dropped along with the receiver
+        shadowPackageManager.removeActivity(first)
+        Assert.assertTrue(iconPackManager.getCachedIconPacks(context).isEmpty())
+        iconPackManager.unregisterReceiver()
+        iconPackManager.invalidateIconPacks()
     }
 }
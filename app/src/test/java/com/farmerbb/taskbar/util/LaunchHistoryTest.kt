@@ -0,0 +1,104 @@
+package com.farmerbb.taskbar.util
+
+import android.content.ComponentName
+import android.content.Context
+import android.content.pm.ShortcutInfo
+import androidx.test.core.app.ApplicationProvider
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+class LaunchHistoryTest {
+    private lateinit var context: Context
+    private lateinit var history: LaunchHistory
+    private lateinit var entry: AppEntry
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        history = LaunchHistory.getInstance(context)
+        history.clear()
+        entry = createEntry("TestActivity")
+    }
+
+    @After
+    fun tearDown() {
+        history.clear()
+    }
+
+    @Test
+    fun testGetInstance() {
+        Assert.assertNotNull(history)
+        for (i in 1..20) {
+            Assert.assertEquals(history, LaunchHistory.getInstance(context))
+        }
+    }
+
+    @Test
+    fun testPendingLaunchesCount() {
+        Assert.assertEquals(0.0, history.getScore(entry), 0.0)
+        history.recordLaunch(entry)
+        Assert.assertEquals(1.0, history.getScore(entry), 0.01)
+        Assert.assertEquals(0, history.recordCount)
+    }
+
+    @Test
+    fun testFlushWritesLaunches() {
+        history.recordLaunch(entry)
+        history.recordLaunch(entry)
+        history.flush()
+        Assert.assertEquals(2, history.recordCount)
+        Assert.assertEquals(2.0, history.getScore(entry), 0.01)
+        Assert.assertEquals(0.0, history.getScore(createEntry("OtherActivity")), 0.0)
+    }
+
+    @Test
+    fun testLogIsCompacted() {
+        val other = createEntry("OtherActivity")
+        for (i in 0..LaunchHistory.MAX_RECORDS) {
+            history.recordLaunch(if (i % 2 == 0) entry else other)
+        }
+        history.flush()
+        Assert.assertEquals(2, history.recordCount)
+        Assert.assertTrue(history.getScore(entry) > history.getScore(other))
+    }
+
+    @Test
+    fun testShortcutLaunchesAreRankedSeparately() {
+        val shortcut = ShortcutInfo.Builder(context, "test_shortcut").build()
+        val key = LaunchHistory.getKey(context, entry, shortcut)
+        Assert.assertTrue(key.endsWith("/test_shortcut"))
+        Assert.assertNotEquals(LaunchHistory.getKey(context, entry, null), key)
+
+        history.recordLaunch(entry, shortcut)
+        Assert.assertEquals(0.0, history.getScore(entry), 0.0)
+        history.recordLaunch(entry)
+        Assert.assertEquals(1.0, history.getScore(entry), 0.01)
+    }
+
+    @Test
+    @Config(sdk = [24])
+    fun testGetKeyBeforeShortcuts() {
+        Assert.assertEquals(
+            entry.componentName + ":" + entry.getUserId(context),
+            LaunchHistory.getKey(context, entry, null)
+        )
+    }
+
+    private fun createEntry(activityName: String): AppEntry {
+        val entry = AppEntry(
+            context.packageName,
+            ComponentName(context.packageName, activityName).flattenToString(),
+            activityName,
+            null,
+            false
+        )
+        entry.setUserId(0)
+        return entry
+    }
+}
@@ -0,0 +1,87 @@
+package com.farmerbb.taskbar.util
+
+import android.content.ComponentName
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.farmerbb.taskbar.util.Constants.PREF_LAUNCH_GAMES_FULLSCREEN
+import com.farmerbb.taskbar.util.Constants.PREF_WINDOW_SIZE
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class LaunchPlanCacheTest {
+    private lateinit var context: Context
+    private lateinit var cache: LaunchPlanCache
+    private lateinit var componentName: String
+    private lateinit var entry: AppEntry
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        cache = LaunchPlanCache.getInstance()
+        componentName = ComponentName(context.packageName, "TestActivity").flattenToString()
+        entry = AppEntry(context.packageName, componentName, "Test", null, false)
+    }
+
+    @After
+    fun tearDown() {
+        cache.clearCache()
+        SavedWindowSizes.getInstance(context).clear(context)
+        U.getSharedPreferences(context).edit()
+            .remove(PREF_WINDOW_SIZE)
+            .remove(PREF_LAUNCH_GAMES_FULLSCREEN)
+            .apply()
+    }
+
+    @Test
+    fun testGetInstance() {
+        Assert.assertNotNull(cache)
+        for (i in 1..20) {
+            Assert.assertEquals(cache, LaunchPlanCache.getInstance())
+        }
+    }
+
+    @Test
+    fun testGetPlanIsCached() {
+        Assert.assertFalse(cache.hasPlan(componentName))
+        val plan = cache.getPlan(context, entry)
+        Assert.assertTrue(cache.hasPlan(componentName))
+        Assert.assertSame(plan, cache.getPlan(context, entry))
+    }
+
+    @Test
+    fun testGetPlanResolvesAgainWhenGamePrefChanges() {
+        val plan = cache.getPlan(context, entry)
+        Assert.assertEquals(U.getApplicationType(context, entry), plan.applicationType)
+        U.getSharedPreferences(context).edit().putBoolean(PREF_LAUNCH_GAMES_FULLSCREEN, false).apply()
+        Assert.assertNotSame(plan, cache.getPlan(context, entry))
+    }
+
+    @Test
+    fun testInvalidate() {
+        cache.getPlan(context, entry)
+        cache.invalidate("com.example.other")
+        Assert.assertTrue(cache.hasPlan(componentName))
+        cache.invalidate(context.packageName)
+        Assert.assertFalse(cache.hasPlan(componentName))
+    }
+
+    @Test
+    fun testWindowSize() {
+        val plan = cache.getPlan(context, entry)
+        Assert.assertEquals("standard", plan.getWindowSize(context))
+        U.getSharedPreferences(context).edit().putString(PREF_WINDOW_SIZE, "large").apply()
+        Assert.assertEquals("large", plan.getWindowSize(context))
+
+        SavedWindowSizes.getInstance(context).setWindowSize(context, context.packageName, "phone_size")
+        Assert.assertFalse(cache.hasPlan(componentName))
+        Assert.assertEquals(
+            "phone_size",
+            cache.getPlan(context, entry).getWindowSize(context)
+        )
+    }
+}
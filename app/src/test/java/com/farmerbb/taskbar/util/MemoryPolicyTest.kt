@@ -0,0 +1,105 @@
+package com.farmerbb.taskbar.util
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MemoryPolicyTest {
+    private lateinit var context: Context
+    private lateinit var policy: MemoryPolicy
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        policy = MemoryPolicy.getInstance(context)
+        policy.reset()
+    }
+
+    @After
+    fun tearDown() {
+        policy.reset()
+    }
+
+    @Test
+    fun testGetTier() {
+        Assert.assertEquals(MemoryPolicy.TIER_NONE, MemoryPolicy.getTier(0))
+        Assert.assertEquals(
+            MemoryPolicy.TIER_SHRINK,
+            MemoryPolicy.getTier(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE)
+        )
+        Assert.assertEquals(
+            MemoryPolicy.TIER_NONE,
+            MemoryPolicy.getTier(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+        )
+        Assert.assertEquals(
+            MemoryPolicy.TIER_NONE,
+            MemoryPolicy.getTier(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+        )
+        Assert.assertEquals(
+            MemoryPolicy.TIER_SHRINK_MORE,
+            MemoryPolicy.getTier(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+        )
+        Assert.assertEquals(
+            MemoryPolicy.TIER_SHRINK_MORE,
+            MemoryPolicy.getTier(ComponentCallbacks2.TRIM_MEMORY_MODERATE)
+        )
+        Assert.assertEquals(
+            MemoryPolicy.TIER_EVICT,
+            MemoryPolicy.getTier(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+        )
+        Assert.assertEquals(
+            MemoryPolicy.TIER_EVICT,
+            MemoryPolicy.getTier(ComponentCallbacks2.TRIM_MEMORY_COMPLETE)
+        )
+    }
+
+    @Test
+    fun testGetRetainFraction() {
+        Assert.assertEquals(1f, MemoryPolicy.getRetainFraction(MemoryPolicy.TIER_NONE), 0f)
+        Assert.assertEquals(0.5f, MemoryPolicy.getRetainFraction(MemoryPolicy.TIER_SHRINK), 0f)
+        Assert.assertEquals(0.25f, MemoryPolicy.getRetainFraction(MemoryPolicy.TIER_SHRINK_MORE), 0f)
+        Assert.assertEquals(0f, MemoryPolicy.getRetainFraction(MemoryPolicy.TIER_EVICT), 0f)
+    }
+
+    @Test
+    fun testOnTrimMemory() {
+        val tiers = mutableListOf<Int>()
+        val trimmable = MemoryPolicy.Trimmable { tier -> tiers.add(tier) }
+        policy.register(trimmable)
+        policy.register(trimmable)
+
+        policy.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+        policy.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+        Assert.assertEquals(
+            listOf(MemoryPolicy.TIER_SHRINK_MORE, MemoryPolicy.TIER_SHRINK_MORE),
+            tiers
+        )
+        Assert.assertEquals(2L, policy.getTrimCount(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW))
+        Assert.assertTrue(policy.getTotalBytes(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) >= 0)
+        Assert.assertTrue(policy.trimStats.contains("RUNNING_LOW"))
+
+        policy.unregister(trimmable)
+        policy.onLowMemory()
+        Assert.assertEquals(2, tiers.size)
+        Assert.assertEquals(1L, policy.getTrimCount(ComponentCallbacks2.TRIM_MEMORY_COMPLETE))
+    }
+
+    @Test
+    fun testOnTrimMemoryIgnoresBackgroundLevels() {
+        val tiers = mutableListOf<Int>()
+        policy.register(MemoryPolicy.Trimmable { tier -> tiers.add(tier) })
+
+        policy.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+        policy.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+        Assert.assertTrue(tiers.isEmpty())
+        Assert.assertEquals(0L, policy.getTrimCount(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN))
+        Assert.assertTrue(policy.trimStats.isEmpty())
+    }
+}
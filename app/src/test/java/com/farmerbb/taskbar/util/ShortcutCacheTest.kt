@@ -0,0 +1,104 @@
+package com.farmerbb.taskbar.util
+
+import android.content.ComponentName
+import android.content.Context
+import android.content.pm.ShortcutInfo
+import android.os.Looper
+import android.os.Process
+import androidx.test.core.app.ApplicationProvider
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows
+
+@RunWith(RobolectricTestRunner::class)
+class ShortcutCacheTest {
+    private lateinit var context: Context
+    private lateinit var cache: ShortcutCache
+    private lateinit var entry: AppEntry
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        cache = ShortcutCache.getInstance()
+        entry = AppEntry(
+            context.packageName,
+            ComponentName(context.packageName, "TestActivity").flattenToString(),
+            "Test",
+            null,
+            false
+        )
+    }
+
+    @After
+    fun tearDown() {
+        cache.clearCache()
+    }
+
+    @Test
+    fun testGetInstance() {
+        Assert.assertNotNull(cache)
+        for (i in 1..20) {
+            Assert.assertEquals(cache, ShortcutCache.getInstance())
+        }
+    }
+
+    @Test
+    fun testGetShortcutsLoadsInBackground() {
+        val user = Process.myUserHandle()
+        Assert.assertNull(cache.getCachedShortcuts(context, context.packageName, user))
+        var loaded: List<ShortcutInfo>? = null
+        Assert.assertTrue(cache.getShortcuts(context, entry) { loaded = it }.isEmpty())
+        loadShortcuts()
+        Assert.assertNotNull(loaded)
+        Assert.assertNotNull(cache.getCachedShortcuts(context, context.packageName, user))
+    }
+
+    @Test
+    fun testClearCacheNotifiesListeners() {
+        cache.getShortcuts(context, entry, null)
+        loadShortcuts()
+        val dropped = mutableListOf<String>()
+        val listener = ShortcutCache.Listener { packageName, _, shortcuts ->
+            if (shortcuts == null) dropped.add(packageName)
+        }
+        cache.addListener(listener)
+        cache.clearCache()
+        cache.removeListener(listener)
+        Assert.assertEquals(listOf(context.packageName), dropped)
+        Assert.assertNull(cache.getCachedShortcuts(context, context.packageName, Process.myUserHandle()))
+    }
+
+    @Test
+    fun testInvalidate() {
+        val user = Process.myUserHandle()
+        cache.getShortcuts(context, entry, null)
+        loadShortcuts()
+        cache.invalidate("com.example.other", user)
+        Assert.assertNotNull(cache.getCachedShortcuts(context, context.packageName, user))
+        cache.invalidate(context.packageName, user)
+        Assert.assertNull(cache.getCachedShortcuts(context, context.packageName, user))
+    }
+
+    @Test
+    fun testInvalidComponent() {
+        val invalidEntry = AppEntry(context.packageName, "invalid", "Test", null, false)
+        Assert.assertTrue(cache.getShortcuts(context, invalidEntry, null).isEmpty())
+    }
+
+    private fun loadShortcuts() {
+        val user = Process.myUserHandle()
+        val deadline = System.currentTimeMillis() + 5000
+        while (cache.getCachedShortcuts(context, context.packageName, user) == null
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+
+        // Give the worker thread a moment to post its result before draining the main looper
+        Thread.sleep(100)
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+    }
+}
@@ -0,0 +1,96 @@
+package com.farmerbb.taskbar.util
+
+import android.content.ComponentName
+import android.content.Context
+import android.content.Intent
+import android.content.pm.ShortcutInfo
+import androidx.test.core.app.ApplicationProvider
+import com.farmerbb.taskbar.util.ShortcutSearchIndex.MATCH_CONTAINS
+import com.farmerbb.taskbar.util.ShortcutSearchIndex.MATCH_NONE
+import com.farmerbb.taskbar.util.ShortcutSearchIndex.MATCH_PREFIX
+import com.farmerbb.taskbar.util.ShortcutSearchIndex.MATCH_WORD_PREFIX
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class ShortcutSearchIndexTest {
+    private lateinit var context: Context
+    private lateinit var index: ShortcutSearchIndex
+    private lateinit var activity: ComponentName
+    private lateinit var activityKeys: Set<String>
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        index = ShortcutSearchIndex.getInstance()
+        activity = ComponentName(TEST_PACKAGE, "TestActivity")
+        activityKeys = setOf(ShortcutSearchIndex.getActivityKey(activity.flattenToString(), 0))
+    }
+
+    @After
+    fun tearDown() {
+        index.onShortcutsChanged(TEST_PACKAGE, 0, null)
+    }
+
+    @Test
+    fun testGetMatchQuality() {
+        Assert.assertEquals(MATCH_PREFIX, ShortcutSearchIndex.getMatchQuality("new message", "new"))
+        Assert.assertEquals(MATCH_WORD_PREFIX, ShortcutSearchIndex.getMatchQuality("new message", "mes"))
+        Assert.assertEquals(MATCH_CONTAINS, ShortcutSearchIndex.getMatchQuality("new message", "ssa"))
+        Assert.assertEquals(MATCH_NONE, ShortcutSearchIndex.getMatchQuality("new message", "call"))
+        Assert.assertEquals(MATCH_NONE, ShortcutSearchIndex.getMatchQuality(null, "call"))
+    }
+
+    @Test
+    fun testSearchRanksResults() {
+        index.onShortcutsChanged(TEST_PACKAGE, 0, listOf(
+            createShortcut("1", "Compose message", "Compose a new message"),
+            createShortcut("2", "Messages", "Open messages"),
+            createShortcut("3", "Contacts", "Send a message to a contact")
+        ))
+
+        val results = index.search("Message", activityKeys, 10)
+        Assert.assertEquals(listOf("2", "1", "3"), results.map { it.shortcut.id })
+        Assert.assertEquals(MATCH_PREFIX, results[0].matchQuality)
+        Assert.assertEquals(MATCH_WORD_PREFIX, results[1].matchQuality)
+        Assert.assertEquals(MATCH_CONTAINS, results[2].matchQuality)
+        Assert.assertEquals(1, index.search("message", activityKeys, 1).size)
+    }
+
+    @Test
+    fun testSearchIsLimitedToActivities() {
+        index.onShortcutsChanged(TEST_PACKAGE, 0, listOf(createShortcut("1", "Messages", null)))
+        Assert.assertTrue(index.search("messages", emptySet(), 10).isEmpty())
+        Assert.assertEquals(1, index.search("messages", activityKeys, 10).size)
+    }
+
+    @Test
+    fun testIndexIsUpdated() {
+        index.onShortcutsChanged(TEST_PACKAGE, 0, listOf(createShortcut("1", "Messages", null)))
+        Assert.assertEquals(1, index.search("messages", activityKeys, 10).size)
+
+        index.onShortcutsChanged(TEST_PACKAGE, 0, listOf(createShortcut("2", "Calls", null)))
+        Assert.assertTrue(index.search("messages", activityKeys, 10).isEmpty())
+        Assert.assertEquals(1, index.search("calls", activityKeys, 10).size)
+
+        index.onShortcutsChanged(TEST_PACKAGE, 0, null)
+        Assert.assertTrue(index.search("calls", activityKeys, 10).isEmpty())
+    }
+
+    private fun createShortcut(id: String, shortLabel: String, longLabel: String?): ShortcutInfo {
+        val builder = ShortcutInfo.Builder(context, id)
+            .setActivity(activity)
+            .setShortLabel(shortLabel)
+            .setIntent(Intent(Intent.ACTION_VIEW))
+        if (longLabel != null) builder.setLongLabel(longLabel)
+        return builder.build()
+    }
+
+    companion object {
+        private const val TEST_PACKAGE = "com.example.shortcuts"
+    }
+}
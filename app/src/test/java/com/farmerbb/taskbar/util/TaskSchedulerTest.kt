@@ -0,0 +1,114 @@
+package com.farmerbb.taskbar.util
+
+import android.os.Looper
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+@RunWith(RobolectricTestRunner::class)
+class TaskSchedulerTest {
+    private lateinit var scheduler: TaskScheduler
+
+    @Before
+    fun setUp() {
+        scheduler = TaskScheduler.getInstance()
+    }
+
+    @Test
+    fun testGetInstance() {
+        Assert.assertNotNull(scheduler)
+        for (i in 1..20) {
+            Assert.assertEquals(scheduler, TaskScheduler.getInstance())
+        }
+    }
+
+    @Test
+    fun testLaneIsReused() {
+        Assert.assertSame(scheduler.lane("test"), scheduler.lane("test"))
+        Assert.assertNotSame(scheduler.lane("test"), scheduler.lane("test_other"))
+    }
+
+    @Test
+    fun testResultIsDeliveredOnMainThread() {
+        val latch = CountDownLatch(1)
+        var result: String? = null
+        var deliveredOnMainThread = false
+        scheduler.io().submit({
+            latch.countDown()
+            "result"
+        }) {
+            result = it
+            deliveredOnMainThread = Looper.myLooper() == Looper.getMainLooper()
+        }
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS))
+        waitForDelivery()
+        Assert.assertEquals("result", result)
+        Assert.assertTrue(deliveredOnMainThread)
+    }
+
+    @Test
+    fun testCancelledResultIsDropped() {
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        var delivered = false
+        val token = scheduler.lane("test_cancel").submit({
+            started.countDown()
+            release.await(5, TimeUnit.SECONDS)
+            "result"
+        }) { delivered = true }
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS))
+        token.cancel()
+        release.countDown()
+        waitForDelivery()
+        Assert.assertFalse(delivered)
+        Assert.assertTrue(token.isCancelled)
+    }
+
+    @Test
+    fun testCancelledTaskDoesNotRun() {
+        val lane = scheduler.lane("test_skip")
+        val release = CountDownLatch(1)
+        lane.execute { release.await(5, TimeUnit.SECONDS) }
+        val ran = AtomicBoolean(false)
+        val token = lane.execute { ran.set(true) }
+        token.cancel()
+        release.countDown()
+        val done = CountDownLatch(1)
+        lane.execute { done.countDown() }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS))
+        Assert.assertFalse(ran.get())
+    }
+
+    @Test
+    fun testThrowIfCancelled() {
+        val token = TaskScheduler.WorkToken()
+        token.throwIfCancelled()
+        token.cancel()
+        try {
+            token.throwIfCancelled()
+            Assert.fail()
+        } catch (e: java.util.concurrent.CancellationException) {
+            // Expected
+        }
+    }
+
+    @Test
+    fun testQueueStatsIncludeLanes() {
+        scheduler.lane("test_stats")
+        val stats = scheduler.queueStats
+        Assert.assertTrue(stats.contains("TaskScheduler.io"))
+        Assert.assertTrue(stats.contains("TaskScheduler.test_stats"))
+    }
+
+    private fun waitForDelivery() {
+        // Give the worker thread a moment to post its result before draining the main looper
+        Thread.sleep(100)
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+    }
+}
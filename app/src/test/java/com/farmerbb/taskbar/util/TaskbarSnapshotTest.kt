@@ -0,0 +1,70 @@
+package com.farmerbb.taskbar.util
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+@RunWith(RobolectricTestRunner::class)
+class TaskbarSnapshotTest {
+    private lateinit var context: Context
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+    }
+
+    @Test
+    fun testWriteAndRead() {
+        val entries = listOf(
+            TaskbarSnapshot.Entry("com.a", "com.a/.Main", "A", 0L, true, "com.a/.Main:0@48"),
+            TaskbarSnapshot.Entry("com.b", "com.b/.Main", "B", 10L, false, "com.b/.Main:10@48")
+        )
+
+        val bytes = ByteArrayOutputStream()
+        TaskbarSnapshot.write(DataOutputStream(bytes), entries)
+        val result = TaskbarSnapshot.read(DataInputStream(ByteArrayInputStream(bytes.toByteArray())))
+
+        Assert.assertEquals(2, result.size)
+        Assert.assertEquals("com.a", result[0].packageName)
+        Assert.assertEquals("com.a/.Main", result[0].componentName)
+        Assert.assertEquals("A", result[0].label)
+        Assert.assertEquals(0L, result[0].userId)
+        Assert.assertTrue(result[0].pinned)
+        Assert.assertEquals("com.a/.Main:0@48", result[0].iconKey)
+        Assert.assertEquals(10L, result[1].userId)
+        Assert.assertFalse(result[1].pinned)
+    }
+
+    @Test
+    fun testReadIgnoresOtherVersions() {
+        val bytes = ByteArrayOutputStream()
+        val output = DataOutputStream(bytes)
+        output.writeInt(-1)
+        output.writeInt(1)
+
+        val result = TaskbarSnapshot.read(DataInputStream(ByteArrayInputStream(bytes.toByteArray())))
+        Assert.assertTrue(result.isEmpty())
+    }
+
+    @Test
+    fun testSaveAndLoad() {
+        Assert.assertTrue(TaskbarSnapshot.load(context, 42).isEmpty())
+
+        val entry = TaskbarSnapshot.Entry("com.a", "com.a/.Main", "A", 0L, false, "key")
+        TaskbarSnapshot.save(context, 42, listOf(entry))
+
+        val result = TaskbarSnapshot.load(context, 42)
+        Assert.assertEquals(1, result.size)
+        Assert.assertEquals("com.a", result[0].packageName)
+        Assert.assertTrue(context.filesDir.list()!!.contains("TaskbarSnapshot_42"))
+        Assert.assertTrue(TaskbarSnapshot.load(context, 43).isEmpty())
+    }
+}
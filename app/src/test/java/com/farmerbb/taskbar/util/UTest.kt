@@ -11,7 +11,10 @@ import android.content.Context
 import android.content.Intent
 import android.content.IntentFilter
 import android.content.pm.PackageManager
+import android.graphics.Bitmap
 import android.graphics.Color
+import android.graphics.drawable.BitmapDrawable
+import android.graphics.drawable.ColorDrawable
 import android.provider.Settings
 import android.view.WindowManager
 import android.widget.Toast
@@ -991,6 +994,22 @@ class UTest {
         Assert.assertTrue(receiver.onReceived)
     }
 
+    @Test
+    fun testRasterizeDrawable() {
+        val small = BitmapDrawable(context.resources, Bitmap.createBitmap(50, 50, Bitmap.Config.ARGB_8888))
+        Assert.assertSame(small, U.rasterizeDrawable(context, small, 100))
+
+        val large = BitmapDrawable(context.resources, Bitmap.createBitmap(400, 200, Bitmap.Config.ARGB_8888))
+        val rasterized = U.rasterizeDrawable(context, large, 100)
+        Assert.assertEquals(100, rasterized.bitmap.width)
+        Assert.assertEquals(50, rasterized.bitmap.height)
+
+        val color = U.rasterizeDrawable(context, ColorDrawable(Color.RED), 100)
+        Assert.assertEquals(100, color.bitmap.width)
+        Assert.assertEquals(100, color.bitmap.height)
+        Assert.assertEquals(Bitmap.Config.RGB_565, color.bitmap.config)
+    }
+
     private class TestBroadcastReceiver : BroadcastReceiver() {
         var onReceived = false
         override fun onReceive(context: Context, intent: Intent) {
@@ -0,0 +1,135 @@
+package com.farmerbb.taskbar.util
+
+import android.content.ComponentName
+import android.content.Context
+import android.content.pm.ActivityInfo
+import android.graphics.Bitmap
+import android.graphics.Color
+import android.graphics.ColorMatrix
+import android.graphics.drawable.BitmapDrawable
+import android.os.Looper
+import androidx.test.core.app.ApplicationProvider
+import com.farmerbb.taskbar.Constants.TEST_NAME
+import com.farmerbb.taskbar.Constants.TEST_PACKAGE
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows
+import org.robolectric.shadows.AppWidgetProviderInfoBuilder
+
+@RunWith(RobolectricTestRunner::class)
+class WidgetPreviewCacheTest {
+    private lateinit var context: Context
+    private lateinit var cache: WidgetPreviewCache
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        cache = WidgetPreviewCache.getInstance(context)
+        TaskScheduler.setRunInline(true)
+    }
+
+    @After
+    fun tearDown() {
+        TaskScheduler.setRunInline(false)
+        cache.clearCache()
+    }
+
+    @Test
+    fun testGetKey() {
+        val provider = ComponentName(TEST_PACKAGE, TEST_NAME)
+        Assert.assertEquals(
+            provider.flattenToString() + ":100x200",
+            WidgetPreviewCache.getKey(provider, 100, 200)
+        )
+        Assert.assertNotEquals(
+            WidgetPreviewCache.getKey(provider, 100, 200),
+            WidgetPreviewCache.getKey(provider, 200, 100)
+        )
+    }
+
+    @Test
+    fun testLoadPreviewCachesResult() {
+        val provider = ComponentName(context.packageName, TEST_NAME)
+        var loaded: BitmapDrawable? = null
+        cache.loadPreview(context, newProviderInfo(provider), 100, 100) { loaded = it }
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+
+        val cached = cache.getPreview(provider, 100, 100)
+        Assert.assertNotNull(cached)
+        Assert.assertSame(cached, loaded)
+
+        // A cache hit is delivered right away instead of going through the lane
+        var hit: BitmapDrawable? = null
+        cache.loadPreview(context, newProviderInfo(provider), 100, 100) { hit = it }
+        Assert.assertSame(cached, hit)
+
+        // Previews are keyed by size, so a different cell size is a miss
+        Assert.assertNull(cache.getPreview(provider, 200, 200))
+    }
+
+    @Test
+    fun testTrimMemoryEvictsPreviews() {
+        val provider = ComponentName(context.packageName, TEST_NAME)
+        cache.loadPreview(context, newProviderInfo(provider), 100, 100) {}
+        Shadows.shadowOf(Looper.getMainLooper()).idle()
+        Assert.assertNotNull(cache.getPreview(provider, 100, 100))
+
+        cache.trimMemory(MemoryPolicy.TIER_NONE)
+        Assert.assertNotNull(cache.getPreview(provider, 100, 100))
+        cache.trimMemory(MemoryPolicy.TIER_EVICT)
+        Assert.assertNull(cache.getPreview(provider, 100, 100))
+    }
+
+    @Test
+    fun testRenderDesaturatedOnlyScalesDown() {
+        val bitmap = Bitmap.createBitmap(200, 100, Bitmap.Config.ARGB_8888)
+        val drawable = BitmapDrawable(context.resources, bitmap)
+
+        val scaled = cache.renderDesaturated(context, drawable, 100, 100)
+        Assert.assertEquals(100, scaled.bitmap.width)
+        Assert.assertEquals(50, scaled.bitmap.height)
+
+        val unscaled = cache.renderDesaturated(context, drawable, 400, 400)
+        Assert.assertEquals(200, unscaled.bitmap.width)
+        Assert.assertEquals(100, unscaled.bitmap.height)
+    }
+
+    @Test
+    fun testDesaturationMatrixProducesGray() {
+        val matrix = WidgetPreviewCache.newDesaturationMatrix()
+        for (color in intArrayOf(Color.RED, Color.GREEN, Color.BLUE, Color.rgb(40, 120, 200))) {
+            val result = applyMatrix(matrix, color)
+            Assert.assertEquals(result[0], result[1], 0.001f)
+            Assert.assertEquals(result[1], result[2], 0.001f)
+            Assert.assertEquals(Color.alpha(color).toFloat(), result[3], 0.001f)
+        }
+    }
+
+    private fun applyMatrix(matrix: ColorMatrix, color: Int): FloatArray {
+        val m = matrix.array
+        val input = floatArrayOf(
+            Color.red(color).toFloat(),
+            Color.green(color).toFloat(),
+            Color.blue(color).toFloat(),
+            Color.alpha(color).toFloat()
+        )
+        return FloatArray(4) { row ->
+            m[row * 5] * input[0] + m[row * 5 + 1] * input[1] +
+                m[row * 5 + 2] * input[2] + m[row * 5 + 3] * input[3] + m[row * 5 + 4]
+        }
+    }
+
+    private fun newProviderInfo(provider: ComponentName) = AppWidgetProviderInfoBuilder
+        .newBuilder()
+        .setProviderInfo(ActivityInfo().apply {
+            packageName = provider.packageName
+            name = provider.className
+            applicationInfo = context.applicationInfo
+        })
+        .build()
+        .apply { this.provider = provider }
+}